@@ -0,0 +1,186 @@
+package com.bericotech.dropwizard.nagios.client;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Queries {@code NagiosCheckTask}s and turns their responses into plugin results, exactly like
+ * {@code plugin/check_url.py} does.
+ *
+ * Connections are kept alive by the JDK's HTTP client and reused by later checks against the same
+ * application, so one long-running client (see {@link CheckGateway}) avoids a TCP (and TLS)
+ * handshake per check.  The client has no dependencies besides the JDK, to start quickly.
+ */
+public class CheckClient {
+
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([^;\"\\s]+)", Pattern.CASE_INSENSITIVE);
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    // Socket factories by key-cert file, so that TLS sessions are resumed too.
+    private final ConcurrentMap<String, SSLSocketFactory> socketFactories = new ConcurrentHashMap<String, SSLSocketFactory>();
+
+    /**
+     * Execute a check given by {@code check_url.py} arguments.
+     * @param args Command line arguments.
+     * @return Result, with exit code 2 for invalid arguments and 0 for {@code --help}.
+     */
+    public PluginResult check(String... args) {
+
+        try {
+
+            return check(CheckOptions.parse(args));
+
+        } catch (CheckOptions.UsageException e) {
+
+            return PluginResult.usage(e.exitCode, e.getMessage());
+        }
+    }
+
+    PluginResult check(CheckOptions options) {
+
+        try {
+
+            return query(options);
+
+        } catch (IOException e) {
+
+            return new PluginResult(PluginResult.UNKNOWN, "Error making request; " + e);
+
+        } catch (GeneralSecurityException e) {
+
+            return new PluginResult(PluginResult.UNKNOWN, "Error making request; " + e);
+        }
+    }
+
+    private PluginResult query(CheckOptions options) throws IOException, GeneralSecurityException {
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(options.url()).openConnection();
+
+        if (options.useSslAuth() && connection instanceof HttpsURLConnection) {
+
+            ((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory(options.keycert));
+        }
+
+        String method = options.method.toUpperCase(Locale.ROOT);
+
+        connection.setRequestMethod(method);
+        connection.setUseCaches(false);
+        connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(options.timeoutSeconds));
+        connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(options.timeoutSeconds));
+
+        if (options.useBasicAuth()) {
+
+            // requests encodes the credentials as Latin-1.
+            connection.setRequestProperty("Authorization", "Basic "
+                    + Pem.encodeBase64((options.user + ":" + options.password).getBytes(ISO_8859_1)));
+        }
+
+        if (method.equals("POST") || method.equals("PUT")) {
+
+            // Like requests, send an empty body with Content-Length: 0.
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(0);
+
+            OutputStream body = connection.getOutputStream();
+
+            body.close();
+        }
+
+        int statusCode = connection.getResponseCode();
+
+        InputStream in = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+
+        // Reading the whole response returns the connection to the keep-alive cache.
+        String text = in == null ? "" : new String(Pem.readFully(in), charset(connection.getContentType()));
+
+        return interpret(statusCode, text);
+    }
+
+    private SSLSocketFactory socketFactory(String keyCert) throws IOException, GeneralSecurityException {
+
+        SSLSocketFactory factory = socketFactories.get(keyCert);
+
+        if (factory == null) {
+
+            factory = Pem.socketFactory(new File(keyCert));
+
+            SSLSocketFactory existing = socketFactories.putIfAbsent(keyCert, factory);
+
+            if (existing != null) factory = existing;
+        }
+
+        return factory;
+    }
+
+    /**
+     * Interpret a response the way {@code check_url.py} does: everything before the first "-" is
+     * the state, everything after it the summary.
+     * @param statusCode HTTP status code.
+     * @param body Response body.
+     * @return Plugin result.
+     */
+    static PluginResult interpret(int statusCode, String body) {
+
+        if (statusCode > 300) {
+
+            return new PluginResult(PluginResult.UNKNOWN, "Error making request; status code: " + statusCode);
+        }
+
+        String statusCheck = strip(body);
+
+        int dash = statusCheck.indexOf('-');
+
+        // Python's status_check[:-1] when there is no dash.
+        String status = strip(statusCheck.substring(0, dash >= 0 ? dash : Math.max(statusCheck.length() - 1, 0)));
+
+        String message = strip(statusCheck.substring(dash + 1));
+
+        if (status.startsWith("OK")) return new PluginResult(PluginResult.OK, message);
+        if (status.startsWith("WARNING")) return new PluginResult(PluginResult.WARNING, message);
+        if (status.startsWith("CRITICAL")) return new PluginResult(PluginResult.CRITICAL, message);
+
+        return new PluginResult(PluginResult.UNKNOWN, message);
+    }
+
+    private static Charset charset(String contentType) {
+
+        if (contentType != null) {
+
+            Matcher charset = CHARSET.matcher(contentType);
+
+            if (charset.find() && Charset.isSupported(charset.group(1))) return Charset.forName(charset.group(1));
+        }
+
+        // requests' default for text responses without a charset.
+        return ISO_8859_1;
+    }
+
+    /**
+     * Python's {@code str.strip()}.
+     */
+    static String strip(String text) {
+
+        int start = 0;
+        int end = text.length();
+
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+
+        return text.substring(start, end);
+    }
+}
@@ -0,0 +1,224 @@
+package com.bericotech.dropwizard.nagios.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running {@link CheckClient} that Nagios reaches through the {@code plugin/check_url} shim,
+ * so a check costs a local socket round trip instead of starting an interpreter, and connections
+ * to the applications stay alive between checks.
+ *
+ * The gateway only listens on the loopback interface.  Each connection carries one check: the
+ * number of arguments and then the {@code check_url.py} arguments, each terminated by a NUL byte.
+ * The gateway answers with the exit code on the first line followed by the plugin output, and
+ * closes the connection.
+ */
+public class CheckGateway implements Closeable {
+
+    /**
+     * Port the gateway and the shim use if none is given.
+     */
+    public static final int DEFAULT_PORT = 5699;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Guards against garbage on the port.
+    private static final int MAX_ARGUMENTS = 256;
+
+    private static final int MAX_ARGUMENT_LENGTH = 65536;
+
+    private final CheckClient client;
+
+    private final ServerSocket serverSocket;
+
+    private final ExecutorService workers;
+
+    private final int requestTimeoutMillis;
+
+    /**
+     * Listen on the given loopback port.
+     * @param client Client executing the checks.
+     * @param port Port to listen on; 0 for any free port.
+     * @param threads Number of checks executed concurrently.
+     * @throws IOException if the port can't be bound.
+     */
+    public CheckGateway(CheckClient client, int port, int threads) throws IOException {
+
+        this.client = client;
+        this.requestTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(10);
+        this.serverSocket = new ServerSocket();
+
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), threads * 4);
+
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "check-gateway-" + count.getAndIncrement());
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Port the gateway listens on.
+     * @return Local port.
+     */
+    public int getPort() {
+
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept checks until the gateway is closed.
+     */
+    public void serve() {
+
+        while (!serverSocket.isClosed()) {
+
+            final Socket socket;
+
+            try {
+
+                socket = serverSocket.accept();
+
+            } catch (IOException e) {
+
+                if (serverSocket.isClosed()) return;
+
+                continue;
+            }
+
+            try {
+
+                workers.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        handle(socket);
+                    }
+                });
+
+            } catch (RejectedExecutionException e) {
+
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+
+        try {
+
+            socket.setSoTimeout(requestTimeoutMillis);
+
+            PluginResult result;
+
+            try {
+
+                result = client.check(readArguments(new BufferedInputStream(socket.getInputStream())));
+
+            } catch (IOException e) {
+
+                result = new PluginResult(PluginResult.UNKNOWN, "Invalid request to the check gateway; " + e);
+            }
+
+            OutputStream out = socket.getOutputStream();
+
+            out.write((result.getExitCode() + "\n" + result.getOutput() + "\n").getBytes(UTF_8));
+            out.flush();
+
+        } catch (IOException e) {
+
+            // The shim gave up; nothing to answer to.
+
+        } finally {
+
+            closeQuietly(socket);
+        }
+    }
+
+    static String[] readArguments(InputStream in) throws IOException {
+
+        int count;
+
+        try {
+
+            count = Integer.parseInt(readField(in));
+
+        } catch (NumberFormatException e) {
+
+            throw new IOException("expected the number of arguments");
+        }
+
+        if (count < 0 || count > MAX_ARGUMENTS) throw new IOException("too many arguments: " + count);
+
+        String[] args = new String[count];
+
+        for (int i = 0; i < count; i++) args[i] = readField(in);
+
+        return args;
+    }
+
+    private static String readField(InputStream in) throws IOException {
+
+        ByteArrayOutputStream field = new ByteArrayOutputStream();
+
+        for (int b; (b = in.read()) != 0; ) {
+
+            if (b == -1) throw new EOFException("request ended early");
+
+            if (field.size() == MAX_ARGUMENT_LENGTH) throw new IOException("argument too long");
+
+            field.write(b);
+        }
+
+        return new String(field.toByteArray(), UTF_8);
+    }
+
+    /**
+     * Stop accepting checks; checks in progress are completed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        serverSocket.close();
+
+        workers.shutdown();
+    }
+
+    private static void closeQuietly(Socket socket) {
+
+        try {
+
+            socket.close();
+
+        } catch (IOException e) {
+
+            // Already closed.
+        }
+    }
+}
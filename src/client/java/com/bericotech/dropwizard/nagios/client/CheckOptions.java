@@ -0,0 +1,144 @@
+package com.bericotech.dropwizard.nagios.client;
+
+/**
+ * Command line options of {@code check_url.py}, parsed the way its optparse parser does
+ * ({@code -H host} or {@code -Hhost}, later options override earlier ones).
+ */
+final class CheckOptions {
+
+    static final String USAGE = "Usage: check_url [options]\n"
+            + "\n"
+            + "Options:\n"
+            + "  -h, --help         show this help message and exit\n"
+            + "  -H HOST            Host to connect to.\n"
+            + "  -P PORT            Port on the host.\n"
+            + "  -U RELPATH         Relative path and query params.\n"
+            + "  -m METHOD          HTTP Method (POST, GET, PUT, DELETE).\n"
+            + "  -u USER            Username (if using basic auth).\n"
+            + "  -p PASSWORD        Password (if using basic auth).\n"
+            + "  -k KEYCERT         Key-cert (PEM with both private key and cert, if using mutual auth).\n"
+            + "  -K USESSL          Use SSL - any value means true (Unnecessary if key-cert is specified)\n"
+            + "  --timeout=SECONDS  Timeout to connect and to read the response (default 60).";
+
+    String host = "localhost";
+
+    String port = "80";
+
+    String relpath = "/";
+
+    String method = "POST";
+
+    String user;
+
+    String password;
+
+    String keycert;
+
+    String usessl;
+
+    int timeoutSeconds = 60;
+
+    /**
+     * Thrown for {@code --help} (exit code 0) and invalid command lines (exit code 2).
+     */
+    static final class UsageException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final int exitCode;
+
+        UsageException(String message, int exitCode) {
+
+            super(message);
+
+            this.exitCode = exitCode;
+        }
+    }
+
+    static CheckOptions parse(String[] args) throws UsageException {
+
+        CheckOptions options = new CheckOptions();
+
+        for (int i = 0; i < args.length; i++) {
+
+            String arg = args[i];
+
+            if (arg.equals("--")) break;
+
+            if (arg.equals("-h") || arg.equals("--help")) throw new UsageException(USAGE, 0);
+
+            if (arg.startsWith("--timeout")) {
+
+                String value;
+
+                if (arg.startsWith("--timeout=")) value = arg.substring("--timeout=".length());
+                else if (arg.equals("--timeout") && i + 1 < args.length) value = args[++i];
+                else throw usageError(arg.equals("--timeout") ? "--timeout option requires an argument" : "no such option: " + arg);
+
+                try {
+
+                    options.timeoutSeconds = Integer.parseInt(value);
+
+                } catch (NumberFormatException e) {
+
+                    throw usageError("option --timeout: invalid integer value: '" + value + "'");
+                }
+
+                continue;
+            }
+
+            // Positional arguments are accepted and ignored, like the script does.
+            if (arg.length() < 2 || arg.charAt(0) != '-') continue;
+
+            char option = arg.charAt(1);
+
+            if ("HPUmupkK".indexOf(option) < 0) throw usageError("no such option: " + arg.substring(0, 2));
+
+            String value;
+
+            if (arg.length() > 2) value = arg.substring(2);
+            else if (i + 1 < args.length) value = args[++i];
+            else throw usageError("-" + option + " option requires an argument");
+
+            switch (option) {
+                case 'H': options.host = value; break;
+                case 'P': options.port = value; break;
+                case 'U': options.relpath = value; break;
+                case 'm': options.method = value; break;
+                case 'u': options.user = value; break;
+                case 'p': options.password = value; break;
+                case 'k': options.keycert = value; break;
+                default: options.usessl = value;
+            }
+        }
+
+        return options;
+    }
+
+    private static UsageException usageError(String message) {
+
+        return new UsageException(USAGE.substring(0, USAGE.indexOf('\n')) + "\n\ncheck_url: error: " + message, 2);
+    }
+
+    boolean useBasicAuth() {
+
+        return user != null && password != null;
+    }
+
+    boolean useSsl() {
+
+        return keycert != null || usessl != null;
+    }
+
+    boolean useSslAuth() {
+
+        return keycert != null;
+    }
+
+    String url() {
+
+        String path = relpath.startsWith("/") ? relpath.substring(1) : relpath;
+
+        return (useSsl() ? "https" : "http") + "://" + host + ":" + port + "/" + path;
+    }
+}
@@ -0,0 +1,80 @@
+package com.bericotech.dropwizard.nagios.client;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Command line entry point, a drop-in replacement of {@code plugin/check_url.py}:
+ *
+ * <pre>
+ * java -jar dropwizard-nagios-client.jar -u admin -p admin -H localhost -P 11112 -U tasks/passing-task
+ * </pre>
+ *
+ * prints the same output and exits with the same code.  To avoid starting a JVM per check, run it
+ * once as a gateway and point the Nagios command at the {@code plugin/check_url} shim instead:
+ *
+ * <pre>
+ * java -jar dropwizard-nagios-client.jar --gateway [--port 5699] [--threads 16]
+ * </pre>
+ */
+public final class CheckUrl {
+
+    private CheckUrl() {}
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length > 0 && args[0].equals("--gateway")) {
+
+            gateway(args);
+
+            return;
+        }
+
+        PluginResult result = new CheckClient().check(args);
+
+        PrintStream out = new PrintStream(System.out, true, "UTF-8");
+
+        out.println(result.getOutput());
+
+        System.exit(result.getExitCode());
+    }
+
+    private static void gateway(String[] args) throws IOException {
+
+        int port = CheckGateway.DEFAULT_PORT;
+        int threads = 16;
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+
+            if (args[i].equals("--port")) port = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown gateway option " + args[i]);
+        }
+
+        // The JDK keeps 5 idle connections per application by default; keep one per worker.
+        if (System.getProperty("http.maxConnections") == null) {
+
+            System.setProperty("http.maxConnections", Integer.toString(threads));
+        }
+
+        final CheckGateway gateway = new CheckGateway(new CheckClient(), port, threads);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    gateway.close();
+
+                } catch (IOException e) {
+
+                    // Exiting anyway.
+                }
+            }
+        });
+
+        gateway.serve();
+    }
+}
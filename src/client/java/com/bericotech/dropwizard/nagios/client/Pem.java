@@ -0,0 +1,224 @@
+package com.bericotech.dropwizard.nagios.client;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the key-cert file of {@code check_url.py -k}: a PEM file with the client certificate chain
+ * and its unencrypted private key, in PKCS#8 ({@code BEGIN PRIVATE KEY}) or PKCS#1
+ * ({@code BEGIN RSA PRIVATE KEY}) form.  Also Base64 for Basic auth, as the client has no dependencies.
+ */
+final class Pem {
+
+    private static final Pattern BLOCK = Pattern.compile(
+            "-----BEGIN ([A-Z ]+)-----([A-Za-z0-9+/=\\s]+)-----END \\1-----");
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    // AlgorithmIdentifier of rsaEncryption, to wrap a PKCS#1 key into PKCS#8.
+    private static final byte[] RSA_ALGORITHM = {
+            0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01, 0x05, 0x00 };
+
+    private Pem() {}
+
+    static SSLSocketFactory socketFactory(File keyCert) throws IOException, GeneralSecurityException {
+
+        String pem = new String(readFully(new FileInputStream(keyCert)), Charset.forName("US-ASCII"));
+
+        List<Certificate> chain = new ArrayList<Certificate>();
+
+        PrivateKey key = null;
+
+        CertificateFactory certificates = CertificateFactory.getInstance("X.509");
+
+        Matcher block = BLOCK.matcher(pem);
+
+        while (block.find()) {
+
+            byte[] der = decodeBase64(block.group(2));
+
+            if (block.group(1).equals("CERTIFICATE")) {
+
+                chain.add(certificates.generateCertificate(new ByteArrayInputStream(der)));
+
+            } else if (block.group(1).equals("PRIVATE KEY")) {
+
+                key = privateKey(der);
+
+            } else if (block.group(1).equals("RSA PRIVATE KEY")) {
+
+                key = privateKey(sequence(new byte[] { 0x02, 0x01, 0x00 }, RSA_ALGORITHM, octetString(der)));
+            }
+        }
+
+        if (key == null || chain.isEmpty()) {
+
+            throw new GeneralSecurityException(keyCert + " does not contain an unencrypted private key and a certificate");
+        }
+
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("client", key, new char[0], chain.toArray(new Certificate[chain.size()]));
+
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+
+        keyManagers.init(keyStore, new char[0]);
+
+        SSLContext context = SSLContext.getInstance("TLS");
+
+        context.init(keyManagers.getKeyManagers(), null, null);
+
+        return context.getSocketFactory();
+    }
+
+    private static PrivateKey privateKey(byte[] pkcs8) throws GeneralSecurityException {
+
+        GeneralSecurityException failure = null;
+
+        for (String algorithm : new String[] { "RSA", "EC", "DSA" }) {
+
+            try {
+
+                return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+
+            } catch (GeneralSecurityException e) {
+
+                failure = e;
+            }
+        }
+
+        throw failure;
+    }
+
+    private static byte[] octetString(byte[] content) {
+
+        return tagged(0x04, content);
+    }
+
+    private static byte[] sequence(byte[]... elements) {
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        for (byte[] element : elements) content.write(element, 0, element.length);
+
+        return tagged(0x30, content.toByteArray());
+    }
+
+    private static byte[] tagged(int tag, byte[] content) {
+
+        ByteArrayOutputStream der = new ByteArrayOutputStream(content.length + 6);
+
+        der.write(tag);
+
+        if (content.length < 0x80) {
+
+            der.write(content.length);
+
+        } else {
+
+            int bytes = content.length < 0x100 ? 1 : content.length < 0x10000 ? 2 : 3;
+
+            der.write(0x80 | bytes);
+
+            for (int i = bytes - 1; i >= 0; i--) der.write(content.length >>> (8 * i));
+        }
+
+        der.write(content, 0, content.length);
+
+        return der.toByteArray();
+    }
+
+    static String encodeBase64(byte[] data) {
+
+        StringBuilder encoded = new StringBuilder((data.length + 2) / 3 * 4);
+
+        for (int i = 0; i < data.length; i += 3) {
+
+            int bits = (data[i] & 0xff) << 16
+                    | (i + 1 < data.length ? (data[i + 1] & 0xff) << 8 : 0)
+                    | (i + 2 < data.length ? data[i + 2] & 0xff : 0);
+
+            encoded.append(ALPHABET.charAt(bits >>> 18));
+            encoded.append(ALPHABET.charAt(bits >>> 12 & 0x3f));
+            encoded.append(i + 1 < data.length ? ALPHABET.charAt(bits >>> 6 & 0x3f) : '=');
+            encoded.append(i + 2 < data.length ? ALPHABET.charAt(bits & 0x3f) : '=');
+        }
+
+        return encoded.toString();
+    }
+
+    static byte[] decodeBase64(String text) {
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(text.length() * 3 / 4);
+
+        int bits = 0;
+        int count = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+
+            int value = ALPHABET.indexOf(text.charAt(i));
+
+            // Skips line breaks and padding.
+            if (value < 0) continue;
+
+            bits = bits << 6 | value;
+
+            if (++count % 4 == 0) {
+
+                decoded.write(bits >>> 16);
+                decoded.write(bits >>> 8);
+                decoded.write(bits);
+            }
+        }
+
+        if (count % 4 == 3) {
+
+            decoded.write(bits >>> 10);
+            decoded.write(bits >>> 2);
+
+        } else if (count % 4 == 2) {
+
+            decoded.write(bits >>> 4);
+        }
+
+        return decoded.toByteArray();
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+
+        try {
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+            byte[] buffer = new byte[4096];
+
+            for (int read; (read = in.read(buffer)) != -1; ) data.write(buffer, 0, read);
+
+            return data.toByteArray();
+
+        } finally {
+
+            in.close();
+        }
+    }
+}
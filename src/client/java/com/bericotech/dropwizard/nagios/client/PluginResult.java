@@ -0,0 +1,68 @@
+package com.bericotech.dropwizard.nagios.client;
+
+/**
+ * Output and exit code of one plugin invocation, rendered like {@code check_url.py} (pynag's
+ * {@code PluginHelper}) renders them: {@code "<State> - <summary>"}.
+ */
+public final class PluginResult {
+
+    public static final int OK = 0;
+
+    public static final int WARNING = 1;
+
+    public static final int CRITICAL = 2;
+
+    public static final int UNKNOWN = 3;
+
+    // pynag's state_text.
+    private static final String[] STATE_TEXT = { "OK", "Warning", "Critical", "Unknown" };
+
+    private final int exitCode;
+
+    private final String output;
+
+    /**
+     * Result with the given state and summary.
+     * @param exitCode Plugin return code (0 OK, 1 WARNING, 2 CRITICAL, 3 UNKNOWN).
+     * @param summary Summary; may span lines (long output) and contain perf data.
+     */
+    public PluginResult(int exitCode, String summary) {
+
+        this(CheckClient.strip(STATE_TEXT[exitCode] + " - " + summary), exitCode);
+    }
+
+    private PluginResult(String output, int exitCode) {
+
+        this.exitCode = exitCode;
+        this.output = output;
+    }
+
+    /**
+     * Result of an invalid command line or {@code --help}, with the usage text as output.
+     */
+    static PluginResult usage(int exitCode, String usage) {
+
+        return new PluginResult(usage, exitCode);
+    }
+
+    /**
+     * Exit code of the plugin.
+     * @return Plugin return code.
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Output of the plugin, without the final line break.
+     * @return Plugin output.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return exitCode + " " + output;
+    }
+}
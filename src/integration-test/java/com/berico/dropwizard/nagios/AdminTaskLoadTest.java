@@ -0,0 +1,390 @@
+package com.berico.dropwizard.nagios;
+
+import com.berico.dropwizard.nagios.checktasks.SlowTask;
+import com.bericotech.dropwizard.nagios.LatencyHistogram;
+import com.bericotech.dropwizard.nagios.Level;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load harness for the admin tasks of {@link TestService}:  pollers POST to the tasks at a fixed
+ * rate, picking them from a weighted mix of the passing, slow and failing checks of the checktasks
+ * package, and the harness reports throughput, latency percentiles, error rates and the saturation
+ * of the admin thread pool, which executes the tasks.
+ *
+ * The load is configured with system properties, e.g.
+ * {@code gradle integTest -Dload.test.concurrency=64 -Dload.test.mix=slow-task=1}:
+ *
+ * <pre>
+ * load.test.concurrency  Number of pollers (16).
+ * load.test.rate         Polls per second of each poller, 0 to poll back to back (10).
+ * load.test.duration     Seconds of load (10).
+ * load.test.mix          Weights of the tasks (passing-task=6,slow-task=3,exception-raising-task=1).
+ * load.test.slowMillis   Delay of slow-task in milliseconds (250).
+ * </pre>
+ *
+ * Latencies are measured from the time a poll was due rather than sent, so that a poller falling
+ * behind its rate (because the admin threads are all busy) shows up in the percentiles.
+ */
+public class AdminTaskLoadTest {
+
+    private int    CONCURRENCY = Integer.parseInt(System.getProperty("load.test.concurrency", "16"));
+    private double RATE        = Double.parseDouble(System.getProperty("load.test.rate", "10"));
+    private int    DURATION    = Integer.parseInt(System.getProperty("load.test.duration", "10"));
+    private String MIX         = System.getProperty("load.test.mix", "passing-task=6,slow-task=3,exception-raising-task=1");
+    private long   SLOW_MILLIS = Long.parseLong(System.getProperty("load.test.slowMillis",
+                                                                   Long.toString(SlowTask.DEFAULT_DELAY_MILLIS)));
+
+    // Admin port of load.yml; differs from server.yml so that both services can run in one JVM.
+    private static final int PORT = 11122;
+
+    private static final long SAMPLE_MILLIS = 10;
+
+    private static TestServiceThread serverRootThread = null;
+
+    @BeforeClass
+    public static void setup() throws InterruptedException {
+
+        serverRootThread = new TestServiceThread("load.yml");
+
+        serverRootThread.start();
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+        while (!serverRootThread.isLaunched() && System.nanoTime() < deadline) Thread.sleep(10);
+
+        assertTrue("The service did not start", serverRootThread.isLaunched());
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+
+        serverRootThread.testService.stop();
+    }
+
+    @Test
+    public void admin_tasks_are_served_under_load() throws Exception {
+
+        final List<String> mix = parseMix(MIX);
+
+        final Map<String, TaskStats> stats = new LinkedHashMap<String, TaskStats>();
+
+        for (String task : mix) {
+
+            if (!stats.containsKey(task)) stats.put(task, new TaskStats());
+        }
+
+        final QueuedThreadPool adminPool = serverRootThread.testService.getAdminThreadPool();
+
+        // Acceptor and selector threads of the connector count as busy without any polls.
+        final PoolSampler sampler = new PoolSampler(adminPool, adminPool.getBusyThreads());
+
+        ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor();
+
+        ExecutorService pollers = Executors.newFixedThreadPool(CONCURRENCY);
+
+        final long start = System.nanoTime();
+
+        final long end = start + TimeUnit.SECONDS.toNanos(DURATION);
+
+        final long interval = RATE > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / RATE) : 0;
+
+        try {
+
+            sampling.scheduleAtFixedRate(sampler, 0, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+            for (int i = 0; i < CONCURRENCY; i++) {
+
+                // Spread the first polls over one interval, so that the pollers don't fire in lockstep.
+                final long offset = interval * i / CONCURRENCY;
+
+                pollers.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        long due = start + offset;
+
+                        while (due < end && !Thread.currentThread().isInterrupted()) {
+
+                            long now = System.nanoTime();
+
+                            if (due > now) {
+
+                                try {
+
+                                    TimeUnit.NANOSECONDS.sleep(due - now);
+
+                                } catch (InterruptedException e) {
+
+                                    return;
+                                }
+                            }
+
+                            if (interval == 0) due = System.nanoTime();
+
+                            String task = mix.get(ThreadLocalRandom.current().nextInt(mix.size()));
+
+                            stats.get(task).record(poll(task), System.nanoTime() - due);
+
+                            due += interval;
+                        }
+                    }
+                });
+            }
+
+            pollers.shutdown();
+
+            assertTrue("Pollers did not finish", pollers.awaitTermination(DURATION + 60, TimeUnit.SECONDS));
+
+        } finally {
+
+            pollers.shutdownNow();
+
+            sampling.shutdownNow();
+        }
+
+        double elapsed = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.println(report(stats, sampler, elapsed));
+
+        long polls = 0;
+
+        long errors = 0;
+
+        for (TaskStats task : stats.values()) {
+
+            polls += task.getPolls();
+
+            errors += task.errors.get();
+        }
+
+        assertTrue("No polls completed", polls > 0);
+        assertEquals("Polls failed without a Nagios response", 0, errors);
+    }
+
+    /**
+     * Execute a task.
+     * @return Level of the response, or null if the request failed or the response is not Nagios output.
+     */
+    private Level poll(String task) {
+
+        try {
+
+            URL url = new URL("http://localhost:" + PORT + "/tasks/" + task + "?delay=" + SLOW_MILLIS);
+
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+            connection.setRequestMethod("POST");
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+
+                drain(connection.getErrorStream());
+
+                return null;
+            }
+
+            String body;
+
+            try (InputStream in = connection.getInputStream()) {
+
+                body = new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+            }
+
+            return Level.tolevel(body.split(" - ", 2)[0]);
+
+        } catch (IOException | IllegalArgumentException e) {
+
+            return null;
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+
+        if (in == null) return;
+
+        try {
+
+            ByteStreams.exhaust(in);
+
+        } finally {
+
+            in.close();
+        }
+    }
+
+    private static List<String> parseMix(String mix) {
+
+        ImmutableList.Builder<String> tasks = ImmutableList.builder();
+
+        for (Map.Entry<String, String> entry : Splitter.on(',').trimResults().withKeyValueSeparator('=').split(mix).entrySet()) {
+
+            for (int i = Integer.parseInt(entry.getValue().trim()); i > 0; i--) tasks.add(entry.getKey().trim());
+        }
+
+        return tasks.build();
+    }
+
+    private String report(Map<String, TaskStats> stats, PoolSampler sampler, double elapsed) {
+
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("%d pollers at %s polls/s each for %ds, admin pool of %d threads%n",
+                CONCURRENCY, RATE > 0 ? RATE : "max", DURATION, sampler.pool.getMaxThreads()));
+
+        report.append(String.format("%-24s %7s %8s %8s %8s %8s %8s %7s %7s %7s %7s %7s%n",
+                "task", "polls", "polls/s", "p50 ms", "p95 ms", "p99 ms", "max ms",
+                "OK", "WARNING", "CRIT", "UNKNOWN", "errors"));
+
+        long polls = 0;
+
+        long notOk = 0;
+
+        long errors = 0;
+
+        for (Map.Entry<String, TaskStats> entry : stats.entrySet()) {
+
+            TaskStats task = entry.getValue();
+
+            LatencyHistogram latency = task.latency;
+
+            report.append(String.format("%-24s %7d %8.1f %8.1f %8.1f %8.1f %8.1f %7d %7d %7d %7d %7d%n",
+                    entry.getKey(), task.getPolls(), task.getPolls() / elapsed,
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(95)),
+                    millis(latency.getValueAtPercentile(99)), millis(latency.getMax()),
+                    task.levels.get(Level.OK.ordinal()), task.levels.get(Level.WARNING.ordinal()),
+                    task.levels.get(Level.CRITICAL.ordinal()), task.levels.get(Level.UNKNOWN.ordinal()),
+                    task.errors.get()));
+
+            polls += task.getPolls();
+
+            notOk += task.getPolls() - task.errors.get() - task.levels.get(Level.OK.ordinal());
+
+            errors += task.errors.get();
+        }
+
+        report.append(String.format("Throughput %.1f polls/s; %.2f%% not OK, %.2f%% failed without a Nagios response%n",
+                polls / elapsed, percent(notOk, polls), percent(errors, polls)));
+
+        report.append(sampler.report());
+
+        return report.toString();
+    }
+
+    private static double millis(long nanos) {
+
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static double percent(long count, long total) {
+
+        return total == 0 ? 0 : count * 100.0 / total;
+    }
+
+    /**
+     * Outcomes and latencies of the polls of one task.
+     */
+    private class TaskStats {
+
+        // Longer than any run, so that every poll is in the snapshot.
+        final LatencyHistogram latency = new LatencyHistogram(DURATION + 3600, TimeUnit.SECONDS);
+
+        final AtomicLongArray levels = new AtomicLongArray(Level.values().length);
+
+        final AtomicLong errors = new AtomicLong();
+
+        void record(Level level, long nanos) {
+
+            latency.record(nanos);
+
+            if (level == null) errors.incrementAndGet();
+            else levels.incrementAndGet(level.ordinal());
+        }
+
+        long getPolls() {
+
+            return latency.getCount();
+        }
+    }
+
+    /**
+     * Samples the busy threads and queued jobs of the admin thread pool.
+     */
+    private static class PoolSampler implements Runnable {
+
+        final QueuedThreadPool pool;
+
+        final int baseline;
+
+        private final List<int[]> samples = new ArrayList<int[]>();
+
+        PoolSampler(QueuedThreadPool pool, int baseline) {
+
+            this.pool = pool;
+            this.baseline = baseline;
+        }
+
+        @Override
+        public synchronized void run() {
+
+            samples.add(new int[] { pool.getBusyThreads(), pool.getThreads(), pool.getQueueSize() });
+        }
+
+        synchronized String report() {
+
+            long busy = 0;
+
+            int maxBusy = 0;
+
+            int maxThreads = 0;
+
+            int maxQueued = 0;
+
+            int saturated = 0;
+
+            for (int[] sample : samples) {
+
+                busy += sample[0];
+
+                maxBusy = Math.max(maxBusy, sample[0]);
+
+                maxThreads = Math.max(maxThreads, sample[1]);
+
+                maxQueued = Math.max(maxQueued, sample[2]);
+
+                // Every thread busy, or jobs waiting for one.
+                if (sample[0] >= pool.getMaxThreads() || sample[2] > 0) saturated++;
+            }
+
+            return String.format("Admin threads: %.1f busy on average, %d at most, of %d started and %d max "
+                            + "(%d busy when idle); saturated in %.1f%% of %d samples, %d jobs queued at most%n",
+                    samples.isEmpty() ? 0.0 : busy / (double) samples.size(), maxBusy, maxThreads,
+                    pool.getMaxThreads(), baseline, percent(saturated, samples.size()), samples.size(), maxQueued);
+        }
+    }
+}
@@ -8,19 +8,34 @@ import com.google.common.io.Resources;
 import io.dropwizard.Application;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.lifecycle.ServerLifecycleListener;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import java.util.List;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.hibernate.validator.constraints.NotEmpty;
 
 public class TestService extends Application<TestService.TestConfiguration> {
 
+    private volatile Server server;
+
     @Override
     public void run(TestConfiguration configuration, Environment environment) throws Exception {
 
+        environment.lifecycle().addServerLifecycleListener(new ServerLifecycleListener() {
+
+            @Override
+            public void serverStarted(Server server) {
+
+                TestService.this.server = server;
+            }
+        });
+
         for (NagiosCheckTask checkTask : configuration.getCheckTasks()){
 
             environment.admin().addTask(checkTask);
@@ -34,6 +49,31 @@ public class TestService extends Application<TestService.TestConfiguration> {
         environment.jersey().register(FakeResource.class);
     }
 
+    /**
+     * The thread pool of the admin connector, which executes the tasks.
+     * @return Admin thread pool, or null before the server started.
+     */
+    public QueuedThreadPool getAdminThreadPool() {
+
+        if (server == null) return null;
+
+        for (Connector connector : server.getConnectors()) {
+
+            if ("admin".equals(connector.getName())) return (QueuedThreadPool) connector.getExecutor();
+        }
+
+        return null;
+    }
+
+    /**
+     * Stop the Jetty server, releasing its ports.
+     * @throws Exception if the server fails to stop.
+     */
+    public void stop() throws Exception {
+
+        if (server != null) server.stop();
+    }
+
     public static void main(String[] args) throws Exception {
 
         new TestService().run("server", Resources.getResource("server.yml").getPath());
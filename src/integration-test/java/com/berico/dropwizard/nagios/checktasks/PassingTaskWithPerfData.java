@@ -6,7 +6,7 @@ import com.google.common.collect.ImmutableMultimap;
 public class PassingTaskWithPerfData extends NagiosCheckTask {
 
     public static final String TASKNAME = "passing-task-with-perf";
-    public static final String MESSAGE = "success | ttl=100 | ttl2=100s;110;120;54;108";
+    public static final String MESSAGE = "success | ttl=100 ttl2=100s;110;120;54;108";
 
     public PassingTaskWithPerfData() {
         super(TASKNAME);
@@ -0,0 +1,33 @@
+package com.berico.dropwizard.nagios.checktasks;
+
+import com.bericotech.dropwizard.nagios.Level;
+import com.bericotech.dropwizard.nagios.MessagePayload;
+import com.bericotech.dropwizard.nagios.MessagePayloadBuilder;
+import com.bericotech.dropwizard.nagios.NagiosCheckTask;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMultimap;
+
+/**
+ * Passes after holding the admin thread for the number of milliseconds in the "delay" parameter,
+ * like a check of a slow backend.
+ */
+public class SlowTask extends NagiosCheckTask {
+
+    public static final String TASKNAME = "slow-task";
+    public static final String MESSAGE = "slow success";
+    public static final long DEFAULT_DELAY_MILLIS = 250;
+
+    public SlowTask() {
+        super(TASKNAME);
+    }
+
+    @Override
+    public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+        Optional<String> delay = getParameter(requestParameters, "delay");
+
+        Thread.sleep(delay.isPresent() ? Long.parseLong(delay.get()) : DEFAULT_DELAY_MILLIS);
+
+        return new MessagePayloadBuilder().withLevel(Level.OK).withMessage(MESSAGE).build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+
+import java.io.Writer;
+
+/**
+ * Checks and payloads shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * A typical payload:  a short message and three perf data of different types.
+     */
+    static MessagePayload payload() {
+
+        return new MessagePayloadBuilder()
+                .withLevel(Level.OK)
+                .withMessage("Connection pool has 12 active connections")
+                .withPerfData(
+                        PerfDatum.builder("active", 12).warn(50).critical(100).min(0).max(128).build(),
+                        PerfDatum.builder("tte", 0.00125).uom(PerfDatum.UOM.Seconds).warn(1.0).critical(2.5).build(),
+                        PerfDatum.builder("bytes", 123456789L).uom(PerfDatum.UOM.Bytes).build())
+                .build();
+    }
+
+    /**
+     * A check that builds a fresh {@link #payload()} on every execution, like real checks do.
+     */
+    static NagiosCheckTask task() {
+
+        return new NagiosCheckTask("benchmark") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return payload();
+            }
+        };
+    }
+
+    /**
+     * Discards what is written, so benchmarks measure rendering rather than buffer growth.
+     */
+    static final class NullWriter extends Writer {
+
+        long written;
+
+        @Override
+        public void write(int c) {
+            written++;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public Writer append(char c) {
+            written++;
+            return this;
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            written += csq.length();
+            return this;
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) {
+            written += end - start;
+            return this;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,84 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one poll:  {@link NagiosCheckTask#execute} end to end, executing the check and writing
+ * its result as plain text or JSON.  The multi-threaded variants share one task, like concurrent
+ * polls on the admin connector do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckTaskBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Task {
+
+        NagiosCheckTask task;
+
+        final ImmutableMultimap<String, String> text = ImmutableMultimap.of();
+
+        final ImmutableMultimap<String, String> json = ImmutableMultimap.of("o", "json");
+
+        @Setup
+        public void setUp() {
+
+            task = BenchmarkFixtures.task();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Output {
+
+        final BenchmarkFixtures.NullWriter writer = new BenchmarkFixtures.NullWriter();
+
+        final PrintWriter pw = new PrintWriter(writer);
+    }
+
+    @Benchmark
+    public long executeText(Task task, Output output) throws Exception {
+
+        task.task.execute(task.text, output.pw);
+
+        return output.writer.written;
+    }
+
+    @Benchmark
+    public long executeJson(Task task, Output output) throws Exception {
+
+        task.task.execute(task.json, output.pw);
+
+        return output.writer.written;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long executeText_4threads(Task task, Output output) throws Exception {
+
+        return executeText(task, output);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long executeJson_4threads(Task task, Output output) throws Exception {
+
+        return executeJson(task, output);
+    }
+}
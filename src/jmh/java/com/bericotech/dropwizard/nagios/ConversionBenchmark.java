@@ -0,0 +1,59 @@
+package com.bericotech.dropwizard.nagios;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the helpers checks call to produce perf data and levels:  {@link Conversion#nsToS}
+ * and {@link Level#evaluate}, with boxed numbers or pre-parsed {@link Threshold}s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+    // Not constants, so the JIT can't fold the computations.
+    private long nanos = 1234567L;
+
+    private Integer value = 75;
+
+    private Integer warn = 50;
+
+    private Integer critical = 100;
+
+    private long primitiveValue = 75;
+
+    private Threshold warnThreshold = Threshold.above(50);
+
+    private Threshold criticalThreshold = Threshold.above(100);
+
+    @Benchmark
+    public double nsToS() {
+
+        return Conversion.nsToS(nanos);
+    }
+
+    @Benchmark
+    public Level evaluate() {
+
+        return Level.evaluate(value, warn, critical);
+    }
+
+    @Benchmark
+    public Level evaluateThreshold() {
+
+        return Level.evaluate(primitiveValue, warnThreshold, criticalThreshold);
+    }
+}
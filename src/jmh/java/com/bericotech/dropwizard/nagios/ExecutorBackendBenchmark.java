@@ -0,0 +1,133 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for 1,000 concurrent slow checks (each blocking for 10ms, like a JDBC or HTTP probe) executed
+ * by a {@link NagiosBatchTask} on each execution backend:  virtual threads (which fall back to the
+ * default pool below JDK 21; run on the multi-release jar to compare), the default pool of platform
+ * threads, and a fixed pool of 64 platform threads, like a bounded admin connector.  With
+ * {@code pinned}, the checks block inside {@code synchronized}, which pins virtual threads to their
+ * carriers (see {@link CheckExecutors#enablePinningDiagnostics}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBackendBenchmark {
+
+    @Param({"virtual", "platform", "fixed64"})
+    public String backend;
+
+    @Param({"false", "true"})
+    public boolean pinned;
+
+    @Param("1000")
+    public int checks;
+
+    @Param("10")
+    public int blockMillis;
+
+    private ExecutorService executor;
+
+    private NagiosBatchTask batch;
+
+    private final ImmutableMultimap<String, String> all = ImmutableMultimap.of();
+
+    @Setup
+    public void setUp() {
+
+        switch (backend) {
+
+            case "virtual":
+
+                executor = CheckExecutors.virtualThreadExecutor();
+
+                break;
+
+            case "platform":
+
+                executor = CheckExecutors.defaultExecutor();
+
+                break;
+
+            default:
+
+                executor = Executors.newFixedThreadPool(64);
+        }
+
+        NagiosCheckRegistry registry = new NagiosCheckRegistry();
+
+        for (int i = 0; i < checks; i++) registry.register(new BlockingTask("check-" + i, blockMillis, pinned));
+
+        batch = new NagiosBatchTask("benchmark", registry, executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        // The shared executors stay up.
+        if (backend.equals("fixed64")) executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Map<String, CheckResult> checkAll() {
+
+        return batch.checkAll(all);
+    }
+
+    static final class BlockingTask extends NagiosCheckTask {
+
+        private final long blockMillis;
+
+        private final boolean pinned;
+
+        // One lock per check, so pinned checks don't contend with each other.
+        private final Object lock = new Object();
+
+        BlockingTask(String name, long blockMillis, boolean pinned) {
+
+            super(name);
+
+            this.blockMillis = blockMillis;
+            this.pinned = pinned;
+        }
+
+        @Override
+        public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Exception {
+
+            if (pinned) {
+
+                synchronized (lock) {
+
+                    Thread.sleep(blockMillis);
+                }
+
+            } else {
+
+                Thread.sleep(blockMillis);
+            }
+
+            return BenchmarkFixtures.payload();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.health.HealthCheck;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a Nagios check executed as a Dropwizard {@link HealthCheck} (e.g. by the admin
+ * healthcheck servlet).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HealthCheckWrapperBenchmark {
+
+    private final HealthCheckWrapper wrapper = new HealthCheckWrapper(BenchmarkFixtures.task());
+
+    @Benchmark
+    public HealthCheck.Result check() throws Exception {
+
+        return wrapper.check();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public HealthCheck.Result check_4threads() throws Exception {
+
+        return wrapper.check();
+    }
+}
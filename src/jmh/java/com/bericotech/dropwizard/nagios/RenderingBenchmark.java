@@ -0,0 +1,125 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering a result that is already available (e.g. from a {@link CheckResultStore}):
+ * the legacy message string, perf data, Nagios plugin output and JSON.  {@link #objectMapperJson}
+ * and {@link #objectMapperJsonPayload} are the baselines {@link JsonOutput} replaced, writing the
+ * same result (with its age) and payload as {@link #jsonOutput} and {@link #jsonOutputPayload}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderingBenchmark {
+
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    private final MessagePayload payload = BenchmarkFixtures.payload();
+
+    private final CheckResult result = new CheckResult(payload);
+
+    private final PerfDatum datum = payload.getPerfData().get(1);
+
+    private final BenchmarkFixtures.NullWriter writer = new BenchmarkFixtures.NullWriter();
+
+    @Benchmark
+    public String getMessage() {
+
+        return payload.getMessage();
+    }
+
+    @Benchmark
+    public String perfDatumToString() {
+
+        return datum.toString();
+    }
+
+    @Benchmark
+    public long perfDatumAppendTo() throws IOException {
+
+        datum.appendTo(writer);
+
+        return writer.written;
+    }
+
+    @Benchmark
+    public long pluginOutput() throws IOException {
+
+        PluginOutput.write(result, writer);
+
+        return writer.written;
+    }
+
+    @Benchmark
+    public long jsonOutput() throws IOException {
+
+        JsonOutput.write(result, writer);
+
+        return writer.written;
+    }
+
+    /**
+     * The result with its age, written the way tasks did before {@link JsonOutput}.
+     */
+    @Benchmark
+    public long objectMapperJson() throws IOException {
+
+        ObjectNode node = OM.valueToTree(result.getPayload());
+
+        node.put("age", result.getAgeInSeconds());
+
+        if (result.isStale()) node.put("stale", true);
+
+        OM.writeValue(writer, node);
+
+        return writer.written;
+    }
+
+    @Benchmark
+    public long jsonOutputPayload() throws IOException {
+
+        JsonOutput.write(payload, writer);
+
+        return writer.written;
+    }
+
+    @Benchmark
+    public long objectMapperJsonPayload() throws IOException {
+
+        OM.writeValue(writer, payload);
+
+        return writer.written;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long pluginOutput_4threads() throws IOException {
+
+        return pluginOutput();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long jsonOutput_4threads() throws IOException {
+
+        return jsonOutput();
+    }
+}
@@ -0,0 +1,176 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A check whose probe completes asynchronously, e.g. with a non-blocking HTTP or database client,
+ * so that no thread waits while it is in flight:
+ *
+ * <pre>
+ * public class UpstreamCheck extends AsyncNagiosCheckTask {
+ *
+ *     public ListenableFuture&lt;MessagePayload&gt; performCheckAsync(ImmutableMultimap&lt;String, String&gt; requestParameters) {
+ *
+ *         return Futures.transform(client.ping(), toPayload, MoreExecutors.directExecutor());
+ *     }
+ * }
+ * </pre>
+ *
+ * {@link NagiosCheckServlet} serves these checks with Servlet 3 async requests, so that hundreds of
+ * them can be outstanding on a handful of container threads.  Failures of the future are reported as
+ * {@link #DEFAULT_LEVEL_FOR_TASK_ERROR}, like exceptions of synchronous checks, and the timeout of
+ * the task cancels the future and reports {@link #DEFAULT_LEVEL_FOR_TASK_TIMEOUT}.
+ *
+ * Everything else (the task servlet, batches, schedulers) executes the check synchronously, waiting
+ * for the future.  So do async polls of checks with a result store, dependencies, a bulkhead or a
+ * circuit breaker, which only have a synchronous implementation; async polls of other checks are not
+ * coalesced with concurrent ones.
+ */
+public abstract class AsyncNagiosCheckTask extends NagiosCheckTask {
+
+    /**
+     * Create a new task with the given name.
+     * @param name Name of the task.
+     */
+    protected AsyncNagiosCheckTask(String name) {
+
+        super(name);
+    }
+
+    /**
+     * Start the check.  Neither this method nor the future should block.
+     * @param requestParameters Query or Form parameters submitted to the HTTP servlet.
+     * @return Future outcome of the check.
+     * @throws Throwable if the check could not be started; reported like a failed future.
+     */
+    public abstract ListenableFuture<MessagePayload> performCheckAsync(
+            ImmutableMultimap<String, String> requestParameters) throws Throwable;
+
+    /**
+     * Wait for the outcome of {@link #performCheckAsync(ImmutableMultimap)}.
+     */
+    @Override
+    public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+        Future<MessagePayload> future = performCheckAsync(requestParameters);
+
+        try {
+
+            return future.get();
+
+        } catch (InterruptedException e) {
+
+            future.cancel(true);
+
+            throw e;
+
+        } catch (ExecutionException e) {
+
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Obtain the result of the check without waiting for it.  The future never fails:  errors are
+     * reported as {@link #DEFAULT_LEVEL_FOR_TASK_ERROR} results.  While a {@link CheckWarmup} warms
+     * the task up, the future holds its warming-up result, as polls do.
+     * @param requestParameters Query or Form parameters submitted to the HTTP servlet.
+     * @return Future result of the check.
+     */
+    public ListenableFuture<CheckResult> checkAsync(ImmutableMultimap<String, String> requestParameters) {
+
+        CheckWarmup warmup = getWarmup();
+
+        if (warmup != null) return Futures.immediateFuture(warmup.warmingUpResult(this));
+
+        if (getResultStore() != null || !getDependencies().isEmpty()
+                || getBulkhead() != null || getCircuitBreaker() != null) {
+
+            return Futures.immediateFuture(check(requestParameters));
+        }
+
+        long timeout;
+
+        try {
+
+            timeout = getTimeoutNanos(requestParameters);
+
+        } catch (NumberFormatException e) {
+
+            return Futures.immediateFuture(new CheckResult(errorPayload(e)));
+        }
+
+        final CheckMetrics metrics = getMetrics();
+
+        final long start = System.nanoTime();
+
+        ListenableFuture<MessagePayload> probe;
+
+        try {
+
+            probe = performCheckAsync(requestParameters);
+
+        } catch (Throwable t) {
+
+            probe = Futures.immediateFailedFuture(t);
+        }
+
+        final ListenableFuture<MessagePayload> started = probe;
+
+        if (timeout > 0) probe = Futures.withTimeout(probe, timeout, TimeUnit.NANOSECONDS, CheckExecutors.timeoutScheduler());
+
+        ListenableFuture<CheckResult> result = Futures.transform(probe, new Function<MessagePayload, CheckResult>() {
+
+            @Override
+            public CheckResult apply(MessagePayload payload) {
+
+                return new CheckResult(payload);
+            }
+
+        }, MoreExecutors.directExecutor());
+
+        result = Futures.catching(result, Throwable.class, new Function<Throwable, CheckResult>() {
+
+            @Override
+            public CheckResult apply(Throwable t) {
+
+                if (t instanceof TimeoutException) {
+
+                    started.cancel(true);
+
+                    return new CheckResult(timeoutPayload(System.nanoTime() - start));
+                }
+
+                if (metrics != null) metrics.recordError();
+
+                return new CheckResult(errorPayload(t));
+            }
+
+        }, MoreExecutors.directExecutor());
+
+        if (metrics == null) return result;
+
+        final ListenableFuture<CheckResult> measured = result;
+
+        measured.addListener(new Runnable() {
+
+            @Override
+            public void run() {
+
+                metrics.recordExecution(System.nanoTime() - start, Futures.getUnchecked(measured).getPayload().getLevel());
+            }
+
+        }, MoreExecutors.directExecutor());
+
+        return measured;
+    }
+}
@@ -0,0 +1,350 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many checks execute at once, so that a burst of slow checks can't take every thread
+ * of the admin connector (which also serves other tasks, metrics and thread dumps).
+ *
+ * A check executes if fewer than the global limit of checks, and fewer than its own limit of
+ * executions of the same check, are running.  Otherwise it waits in a bounded queue for up to the
+ * maximum wait, where {@link Priority#HIGH} checks are admitted before {@link Priority#NORMAL} ones;
+ * {@link Priority#LOW} checks never wait.  A check that is not admitted reports
+ * {@link NagiosCheckTask#DEFAULT_LEVEL_FOR_TASK_REJECTION} ("rejected: saturated") without executing.
+ *
+ * Share one bulkhead between the tasks it should protect the connector from:
+ *
+ * <pre>
+ * CheckBulkhead bulkhead = new CheckBulkhead(8, 16, 5, TimeUnit.SECONDS);
+ * bulkhead.setDefaultCheckLimit(2);
+ * dbTask.setBulkhead(bulkhead);
+ * dbTask.setPriority(CheckBulkhead.Priority.HIGH);
+ * cleanupTask.setBulkhead(bulkhead);
+ * cleanupTask.setPriority(CheckBulkhead.Priority.LOW);
+ * </pre>
+ *
+ * Only executions are limited; results served from a result store, and polls joining an
+ * execution in flight, don't take a slot.
+ */
+public class CheckBulkhead {
+
+    /**
+     * Lane of a check in the queue of the bulkhead.
+     */
+    public enum Priority {
+
+        /**
+         * Critical-path checks; admitted before all others.
+         */
+        HIGH,
+
+        /**
+         * Admitted once no high-priority check is waiting.
+         */
+        NORMAL,
+
+        /**
+         * Housekeeping checks; executed only if a slot is free right away, never queued.
+         */
+        LOW
+    }
+
+    private final int maxConcurrent;
+
+    private final int maxQueued;
+
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Lanes of waiting checks, in order of admission.  Guarded by lock.
+    private final Map<Priority, Deque<Waiter>> lanes = new EnumMap<Priority, Deque<Waiter>>(Priority.class);
+
+    // Guarded by lock.
+    private final Map<String, Integer> runningByCheck = new HashMap<String, Integer>();
+
+    // Guarded by lock.
+    private int running = 0;
+
+    // Guarded by lock.
+    private int queued = 0;
+
+    private final ConcurrentMap<String, Integer> checkLimits = new ConcurrentHashMap<String, Integer>();
+
+    private volatile int defaultCheckLimit = Integer.MAX_VALUE;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Limit concurrent executions of checks.
+     * @param maxConcurrent Number of checks executing at once.
+     * @param maxQueued Number of checks waiting for a slot; beyond that, checks are rejected.
+     * @param maxWait Time a check waits for a slot before it is rejected.
+     * @param unit Unit of the maximum wait.
+     */
+    public CheckBulkhead(int maxConcurrent, int maxQueued, long maxWait, TimeUnit unit) {
+
+        Preconditions.checkArgument(maxConcurrent > 0, "maxConcurrent must be positive");
+        Preconditions.checkArgument(maxQueued >= 0, "maxQueued must not be negative");
+
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+
+        for (Priority priority : Priority.values()) lanes.put(priority, new ArrayDeque<Waiter>());
+    }
+
+    /**
+     * Limit concurrent executions of every check without a limit of its own (unlimited by default,
+     * i.e. only the global limit applies).
+     * @param limit Executions of one check at once.
+     */
+    public void setDefaultCheckLimit(int limit) {
+
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
+
+        this.defaultCheckLimit = limit;
+    }
+
+    /**
+     * Limit concurrent executions of one check.
+     * @param checkName Name of the check.
+     * @param limit Executions of the check at once.
+     */
+    public void setCheckLimit(String checkName, int limit) {
+
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
+
+        checkLimits.put(checkName, limit);
+    }
+
+    /**
+     * Wait for a slot to execute the check, unless the check has to be rejected.  Every successful
+     * call must be followed by {@link #release(String)}.
+     * @param checkName Name of the check.
+     * @param priority Lane of the check.
+     * @return true if the check may execute, false if it was rejected.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean acquire(String checkName, Priority priority) throws InterruptedException {
+
+        lock.lock();
+
+        try {
+
+            // Waiting checks are never eligible (see admitWaiting), so eligibility alone is fair.
+            if (isEligible(checkName)) {
+
+                admit(checkName);
+
+                return true;
+            }
+
+            if (priority == Priority.LOW || queued >= maxQueued || maxWaitNanos <= 0) {
+
+                rejected.incrementAndGet();
+
+                return false;
+            }
+
+            Waiter waiter = new Waiter(checkName, lock.newCondition());
+
+            lanes.get(priority).addLast(waiter);
+
+            queued++;
+
+            long remaining = maxWaitNanos;
+
+            try {
+
+                while (!waiter.admitted && remaining > 0) {
+
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+
+            } catch (InterruptedException e) {
+
+                if (waiter.admitted) {
+
+                    release(checkName);
+
+                } else {
+
+                    dequeue(priority, waiter);
+                }
+
+                throw e;
+            }
+
+            if (waiter.admitted) return true;
+
+            dequeue(priority, waiter);
+
+            rejected.incrementAndGet();
+
+            return false;
+
+        } finally {
+
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the slot of a check that completed, admitting waiting checks.
+     * @param checkName Name of the check.
+     */
+    public void release(String checkName) {
+
+        lock.lock();
+
+        try {
+
+            running--;
+
+            int count = runningByCheck.get(checkName) - 1;
+
+            if (count == 0) runningByCheck.remove(checkName); else runningByCheck.put(checkName, count);
+
+            admitWaiting();
+
+        } finally {
+
+            lock.unlock();
+        }
+    }
+
+    private void admitWaiting() {
+
+        for (Priority priority : Priority.values()) {
+
+            Iterator<Waiter> waiters = lanes.get(priority).iterator();
+
+            while (running < maxConcurrent && waiters.hasNext()) {
+
+                Waiter waiter = waiters.next();
+
+                if (isEligible(waiter.checkName)) {
+
+                    waiters.remove();
+
+                    queued--;
+
+                    admit(waiter.checkName);
+
+                    waiter.admitted = true;
+                    waiter.condition.signal();
+                }
+            }
+        }
+    }
+
+    private void dequeue(Priority priority, Waiter waiter) {
+
+        if (lanes.get(priority).remove(waiter)) queued--;
+    }
+
+    private boolean isEligible(String checkName) {
+
+        if (running >= maxConcurrent) return false;
+
+        Integer count = runningByCheck.get(checkName);
+
+        return count == null || count < getCheckLimit(checkName);
+    }
+
+    private void admit(String checkName) {
+
+        running++;
+
+        Integer count = runningByCheck.get(checkName);
+
+        runningByCheck.put(checkName, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Limit of concurrent executions of one check.
+     * @param checkName Name of the check.
+     * @return Its own limit, or the default limit.
+     */
+    public int getCheckLimit(String checkName) {
+
+        Integer limit = checkLimits.get(checkName);
+
+        return limit == null ? defaultCheckLimit : limit;
+    }
+
+    /**
+     * Number of checks executing.
+     * @return Running checks.
+     */
+    public int getRunningCount() {
+
+        lock.lock();
+
+        try {
+
+            return running;
+
+        } finally {
+
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of checks waiting for a slot.
+     * @return Queued checks.
+     */
+    public int getQueuedCount() {
+
+        lock.lock();
+
+        try {
+
+            return queued;
+
+        } finally {
+
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of checks rejected since the bulkhead was created.
+     * @return Rejected checks.
+     */
+    public long getRejectedCount() {
+
+        return rejected.get();
+    }
+
+    private static final class Waiter {
+
+        final String checkName;
+
+        final Condition condition;
+
+        // Guarded by the bulkhead's lock.
+        boolean admitted = false;
+
+        Waiter(String checkName, Condition condition) {
+
+            this.checkName = checkName;
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops executing a check whose downstream is clearly broken, so that polls don't each wait for
+ * the full connect or read timeout of the probe before reporting the failure again.
+ *
+ * The breaker counts consecutive failed executions, i.e. results at or above the failure level
+ * (CRITICAL by default, which includes errors and timeouts unless their default levels were
+ * changed).  After the threshold it opens:  polls get the last failure immediately, without
+ * executing the check.  Once the backoff has passed, a single poll executes the check as a trial
+ * (half-open) while the others still get the last failure.  A successful trial closes the breaker;
+ * a failed one opens it again, doubling the backoff up to the maximum.
+ *
+ * <pre>
+ * task.setCircuitBreaker(new CheckCircuitBreaker(3, 10, 300, TimeUnit.SECONDS));
+ * </pre>
+ *
+ * Results of a check with a breaker carry its state ({@code breaker_state}: 0 closed, 1 open,
+ * 2 half-open) and the number of times it opened ({@code breaker_trips}) as perf data.
+ */
+public class CheckCircuitBreaker {
+
+    /**
+     * State of a breaker; the ordinal is reported as {@code breaker_state}.
+     */
+    public enum State {
+
+        /**
+         * Executions are allowed.
+         */
+        CLOSED,
+
+        /**
+         * Executions are skipped until the backoff passed.
+         */
+        OPEN,
+
+        /**
+         * A trial execution is running.
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long initialBackoffNanos;
+
+    private final long maxBackoffNanos;
+
+    private volatile Level failureLevel = Level.CRITICAL;
+
+    // Guarded by this.
+    private State state = State.CLOSED;
+
+    // Guarded by this.
+    private int consecutiveFailures = 0;
+
+    // Guarded by this.
+    private long backoffNanos;
+
+    // Value of System.nanoTime() once a trial may run.  Guarded by this.
+    private long retryAtNanos;
+
+    // Guarded by this.
+    private MessagePayload lastFailure;
+
+    // Guarded by this.
+    private long trips = 0;
+
+    /**
+     * Open after consecutive failures, and retry with exponential backoff.
+     * @param failureThreshold Number of consecutive failures opening the breaker.
+     * @param initialBackoff Time the breaker stays open before the first trial.
+     * @param maxBackoff Upper bound of the time between trials.
+     * @param unit Unit of the backoffs.
+     */
+    public CheckCircuitBreaker(int failureThreshold, long initialBackoff, long maxBackoff, TimeUnit unit) {
+
+        Preconditions.checkArgument(failureThreshold > 0, "failureThreshold must be positive");
+        Preconditions.checkArgument(initialBackoff > 0, "initialBackoff must be positive");
+        Preconditions.checkArgument(maxBackoff >= initialBackoff, "maxBackoff must not be less than initialBackoff");
+
+        this.failureThreshold = failureThreshold;
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+        this.backoffNanos = initialBackoffNanos;
+    }
+
+    /**
+     * Whether the check may execute now.  Opens the breaker for a trial if the backoff has passed;
+     * the caller must then report the outcome with {@link #record(MessagePayload)}.
+     * @return true if the check may execute, false if the last failure should be reported instead.
+     */
+    public synchronized boolean allowExecution() {
+
+        switch (state) {
+
+            case CLOSED:
+
+                return true;
+
+            case OPEN:
+
+                if (System.nanoTime() - retryAtNanos < 0) return false;
+
+                state = State.HALF_OPEN;
+
+                return true;
+
+            default:
+
+                // A trial is already running.
+                return false;
+        }
+    }
+
+    /**
+     * Record the outcome of an execution allowed by {@link #allowExecution()}.
+     * @param payload Outcome of the check.
+     */
+    public synchronized void record(MessagePayload payload) {
+
+        if (Level.worst(payload.getLevel(), failureLevel) != payload.getLevel()) {
+
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            backoffNanos = initialBackoffNanos;
+
+            return;
+        }
+
+        lastFailure = payload;
+
+        if (state == State.HALF_OPEN) {
+
+            backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+
+            open();
+
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+
+            trips++;
+
+            open();
+        }
+    }
+
+    private void open() {
+
+        state = State.OPEN;
+        retryAtNanos = System.nanoTime() + backoffNanos;
+    }
+
+    /**
+     * Results at or above this level count as failures; CRITICAL by default.
+     * @param failureLevel Lowest level of failures.
+     */
+    public void setFailureLevel(Level failureLevel) {
+
+        this.failureLevel = failureLevel;
+    }
+
+    /**
+     * Results at or above this level count as failures.
+     * @return Lowest level of failures.
+     */
+    public Level getFailureLevel() {
+
+        return failureLevel;
+    }
+
+    /**
+     * Current state of the breaker.
+     * @return State.
+     */
+    public synchronized State getState() {
+
+        return state;
+    }
+
+    /**
+     * The latest failure, reported while the breaker is open.
+     * @return Last failure, or null if there was none.
+     */
+    public synchronized MessagePayload getLastFailure() {
+
+        return lastFailure;
+    }
+
+    /**
+     * Number of times the breaker opened after consecutive failures (failed trials not included).
+     * @return Trips.
+     */
+    public synchronized long getTripCount() {
+
+        return trips;
+    }
+
+    /**
+     * State and trips of the breaker as perf data.
+     * @return {@code breaker_state} and {@code breaker_trips}.
+     */
+    public synchronized List<PerfDatum> getPerfData() {
+
+        return ImmutableList.of(
+                PerfDatum.builder("breaker_state", state.ordinal()).min(0).max(State.HALF_OPEN.ordinal()).build(),
+                PerfDatum.builder("breaker_trips", trips).uom(PerfDatum.UOM.Counter).build());
+    }
+}
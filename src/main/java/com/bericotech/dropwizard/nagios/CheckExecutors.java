@@ -0,0 +1,122 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors that checks run on when they are not executed on the polling thread (e.g. to enforce a timeout).
+ *
+ * On JDK 21 and later, {@link #virtualThreadExecutor()} runs each check on a virtual thread, so that
+ * blocking JDBC or HTTP probes don't each hold a platform thread; on older runtimes it falls back to
+ * the {@link #defaultExecutor()}.  The jar is a multi-release jar for this purpose, and the rest of
+ * the library still runs on Java 7.
+ */
+public final class CheckExecutors {
+
+    /**
+     * Prefix of the names of the virtual threads checks run on, followed by a counter.
+     */
+    public static final String VIRTUAL_THREAD_PREFIX = "nagios-check-virtual-";
+
+    private CheckExecutors() {}
+
+    private static class DefaultExecutorHolder {
+
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-check-%d").build());
+    }
+
+    private static class VirtualThreadExecutorHolder {
+
+        static final ExecutorService EXECUTOR = VirtualThreads.isSupported()
+                ? VirtualThreads.newExecutor(VIRTUAL_THREAD_PREFIX)
+                : defaultExecutor();
+    }
+
+    private static class TimeoutSchedulerHolder {
+
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-check-timeouts").build());
+    }
+
+    /**
+     * The executor shared by all tasks that don't supply their own:  an unbounded pool of daemon threads.
+     * @return Shared executor.
+     */
+    public static ExecutorService defaultExecutor() {
+
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Whether the runtime supports virtual threads (JDK 21 and later, using the multi-release jar).
+     * @return true if {@link #virtualThreadExecutor()} runs checks on virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+
+        return VirtualThreads.isSupported();
+    }
+
+    /**
+     * An executor starting a virtual thread per check, shared by all tasks using it, or the
+     * {@link #defaultExecutor()} if the runtime doesn't support virtual threads.  Checks only run on
+     * their task's executor if a timeout applies (see {@link NagiosCheckTask#setTimeout}), or if the
+     * executor is passed to a {@link NagiosBatchTask}.
+     * @return Shared executor.
+     */
+    public static ExecutorService virtualThreadExecutor() {
+
+        return VirtualThreadExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Log a warning, with the stack trace, whenever a check blocks for longer than the threshold on a
+     * virtual thread of the {@link #virtualThreadExecutor()} while the thread is pinned to its carrier
+     * (e.g. inside {@code synchronized}), where it holds the carrier like a platform thread would.
+     * Uses Flight Recorder's {@code jdk.VirtualThreadPinned} event; enabling the diagnostics again
+     * replaces the threshold.  Without virtual threads there is nothing to diagnose.
+     *
+     * The events are streamed on a non-daemon thread, which keeps the JVM from exiting until the
+     * diagnostics are disabled again ({@link #disablePinningDiagnostics()}); {@link PinningDiagnostics}
+     * does both with the lifecycle of the application.
+     * @param threshold Shortest pinning reported, e.g. 20 milliseconds.
+     * @param unit Unit of the threshold.
+     * @return true if the diagnostics were enabled, false if the runtime doesn't support virtual threads.
+     */
+    public static boolean enablePinningDiagnostics(long threshold, TimeUnit unit) {
+
+        return VirtualThreads.startPinningDiagnostics(unit.toNanos(threshold), VIRTUAL_THREAD_PREFIX);
+    }
+
+    /**
+     * Stop logging pinned checks, ending the thread the diagnostics run on.
+     * @return true if the diagnostics were enabled.
+     */
+    public static boolean disablePinningDiagnostics() {
+
+        return VirtualThreads.stopPinningDiagnostics();
+    }
+
+    /**
+     * Number of times checks were reported as pinned since the diagnostics were enabled.
+     * @return Pinned checks.
+     */
+    public static long getPinnedCount() {
+
+        return VirtualThreads.getPinnedCount();
+    }
+
+    /**
+     * The scheduler enforcing the deadlines of asynchronous checks ({@link AsyncNagiosCheckTask}):
+     * a single daemon thread, which only cancels checks and never executes them.
+     * @return Shared scheduler.
+     */
+    public static ScheduledExecutorService timeoutScheduler() {
+
+        return TimeoutSchedulerHolder.SCHEDULER;
+    }
+}
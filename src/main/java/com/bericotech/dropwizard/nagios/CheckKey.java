@@ -0,0 +1,105 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Identifies one execution of a check:  the name of the task plus a canonical form of the
+ * request parameters it was executed with.  Parameters that only control how a check is
+ * executed or rendered (like the timeout or output format) are not part of the key, so a JSON
+ * poller and a text poller share the same result.  Polls sharing an execution still wait for it
+ * no longer than their own timeout.
+ */
+public final class CheckKey {
+
+    /**
+     * Request parameters that do not influence the outcome of a check.
+     */
+    public static final ImmutableSet<String> CONTROL_PARAMETERS = ImmutableSet.of("o", "timeout");
+
+    private final String taskName;
+
+    private final ImmutableListMultimap<String, String> parameters;
+
+    private final int hashCode;
+
+    private CheckKey(String taskName, ImmutableListMultimap<String, String> parameters) {
+
+        this.taskName = taskName;
+        this.parameters = parameters;
+        this.hashCode = 31 * taskName.hashCode() + parameters.hashCode();
+    }
+
+    /**
+     * Build the key for a task executed with the supplied request parameters.
+     * @param taskName Name of the task.
+     * @param requestParameters Query or Form parameters submitted to the HTTP servlet.
+     * @return Canonical key.
+     */
+    public static CheckKey of(String taskName, ImmutableMultimap<String, String> requestParameters) {
+
+        Preconditions.checkNotNull(taskName);
+
+        if (requestParameters.isEmpty()) return new CheckKey(taskName, ImmutableListMultimap.<String, String>of());
+
+        ImmutableListMultimap.Builder<String, String> canonical = ImmutableListMultimap.builder();
+
+        canonical.orderKeysBy(Ordering.<String>natural());
+
+        for (Map.Entry<String, Collection<String>> parameter : requestParameters.asMap().entrySet()) {
+
+            if (!CONTROL_PARAMETERS.contains(parameter.getKey())) {
+
+                canonical.putAll(parameter.getKey(), parameter.getValue());
+            }
+        }
+
+        return new CheckKey(taskName, canonical.build());
+    }
+
+    /**
+     * Name of the task.
+     * @return Name of the task.
+     */
+    public String getTaskName() {
+        return taskName;
+    }
+
+    /**
+     * Request parameters relevant to the outcome of the check, ordered by name.
+     * @return Canonical parameters.
+     */
+    public ImmutableListMultimap<String, String> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) return true;
+
+        if (!(obj instanceof CheckKey)) return false;
+
+        CheckKey other = (CheckKey) obj;
+
+        return hashCode == other.hashCode
+                && taskName.equals(other.taskName)
+                && parameters.equals(other.parameters);
+    }
+
+    @Override
+    public String toString() {
+        return parameters.isEmpty() ? taskName : taskName + parameters;
+    }
+}
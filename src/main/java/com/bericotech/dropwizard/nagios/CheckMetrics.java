@@ -0,0 +1,118 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of one check, registered in the application's {@link MetricRegistry} (and so reported to
+ * Graphite etc. like any other metric):
+ *
+ * <pre>
+ * nagios.&lt;check&gt;.executions        Timer of executions of the check (results served from a store aren't executions)
+ * nagios.&lt;check&gt;.level.&lt;level&gt;     Counter of executions per resulting level, e.g. nagios.disk.level.critical
+ * nagios.&lt;check&gt;.errors            Meter of exceptions thrown by the check
+ * nagios.&lt;check&gt;.rejections        Meter of executions rejected by a {@link CheckBulkhead}
+ * </pre>
+ *
+ * Counters and meters are backed by striped adders, so concurrent executions don't contend on them.
+ */
+public final class CheckMetrics {
+
+    /**
+     * Prefix of the names of all check metrics.
+     */
+    public static final String PREFIX = "nagios";
+
+    private final Timer executions;
+
+    private final Counter[] levels = new Counter[Level.values().length];
+
+    private final Meter errors;
+
+    private final Meter rejections;
+
+    /**
+     * Register (or look up, if already registered) the metrics of a check.
+     * @param registry Registry to register the metrics in.
+     * @param checkName Name of the check.
+     */
+    public CheckMetrics(MetricRegistry registry, String checkName) {
+
+        this.executions = registry.timer(MetricRegistry.name(PREFIX, checkName, "executions"));
+
+        for (Level level : Level.values()) {
+
+            levels[level.ordinal()] = registry.counter(
+                    MetricRegistry.name(PREFIX, checkName, "level", level.name().toLowerCase(Locale.ENGLISH)));
+        }
+
+        this.errors = registry.meter(MetricRegistry.name(PREFIX, checkName, "errors"));
+        this.rejections = registry.meter(MetricRegistry.name(PREFIX, checkName, "rejections"));
+    }
+
+    /**
+     * Record one execution of the check.
+     * @param elapsedNanos Duration of the execution.
+     * @param level Resulting level.
+     */
+    public void recordExecution(long elapsedNanos, Level level) {
+
+        executions.update(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (level != null) levels[level.ordinal()].inc();
+    }
+
+    /**
+     * Record an exception thrown by the check.
+     */
+    public void recordError() {
+
+        errors.mark();
+    }
+
+    /**
+     * Record an execution of the check rejected by a bulkhead.
+     */
+    public void recordRejection() {
+
+        rejections.mark();
+    }
+
+    /**
+     * Timer of executions of the check.
+     * @return Timer.
+     */
+    public Timer getExecutions() {
+        return executions;
+    }
+
+    /**
+     * Counter of executions resulting in the given level.
+     * @param level Level.
+     * @return Counter.
+     */
+    public Counter getLevelCount(Level level) {
+        return levels[level.ordinal()];
+    }
+
+    /**
+     * Meter of exceptions thrown by the check.
+     * @return Meter.
+     */
+    public Meter getErrors() {
+        return errors;
+    }
+
+    /**
+     * Meter of executions rejected by a bulkhead.
+     * @return Meter.
+     */
+    public Meter getRejections() {
+        return rejections;
+    }
+}
@@ -0,0 +1,125 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of one execution of a check, along with the time it was produced.  Results may
+ * be shared between requests (e.g. when served from a {@link CheckResultStore}), so they are
+ * immutable.
+ */
+public class CheckResult {
+
+    private final MessagePayload payload;
+
+    private final long timestampNanos;
+
+    private final boolean stale;
+
+    private final boolean storable;
+
+    /**
+     * Wrap a payload that was produced just now.
+     * @param payload Outcome of the check.
+     */
+    public CheckResult(MessagePayload payload) {
+
+        this(payload, System.nanoTime());
+    }
+
+    /**
+     * Wrap a payload that was produced at the given time.
+     * @param payload Outcome of the check.
+     * @param timestampNanos Value of {@link System#nanoTime()} when the payload was produced.
+     */
+    public CheckResult(MessagePayload payload, long timestampNanos) {
+
+        this(payload, timestampNanos, false, true);
+    }
+
+    private CheckResult(MessagePayload payload, long timestampNanos, boolean stale, boolean storable) {
+
+        this.payload = Preconditions.checkNotNull(payload);
+        this.timestampNanos = timestampNanos;
+        this.stale = stale;
+        this.storable = storable;
+    }
+
+    /**
+     * Wrap a payload that describes the poll rather than the check (e.g. a poll that gave up waiting
+     * for an execution in flight), and must not be kept by a {@link CheckResultStore}.
+     * @param payload Outcome of the poll.
+     * @return Result that is not storable.
+     */
+    static CheckResult unstorable(MessagePayload payload) {
+
+        return new CheckResult(payload, System.nanoTime(), false, false);
+    }
+
+    /**
+     * The outcome of the check.
+     * @return Message payload.
+     */
+    public MessagePayload getPayload() {
+        return payload;
+    }
+
+    /**
+     * Value of {@link System#nanoTime()} when the payload was produced.
+     * @return Timestamp in nanoseconds.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * How long ago the payload was produced.
+     * @param unit Unit of the returned age.
+     * @return Age of the result.
+     */
+    public long getAge(TimeUnit unit) {
+
+        return unit.convert(System.nanoTime() - timestampNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * How long ago the payload was produced, in seconds.
+     * @return Age of the result in seconds.
+     */
+    public double getAgeInSeconds() {
+
+        return Conversion.nsToS(System.nanoTime() - timestampNanos);
+    }
+
+    /**
+     * Whether the result is older than its time-to-live, and is only served until a refresh completes.
+     * @return true if the result is stale.
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Whether a {@link CheckResultStore} may keep the result and serve it to later polls.  Results
+     * that only describe one poll are not storable.
+     * @return true if the result may be stored.
+     */
+    public boolean isStorable() {
+        return storable;
+    }
+
+    /**
+     * A copy of this result, marked as stale.
+     * @return Stale result.
+     */
+    public CheckResult asStale() {
+
+        return stale ? this : new CheckResult(payload, timestampNanos, true, storable);
+    }
+
+    @Override
+    public String toString() {
+        return payload + "@" + timestampNanos + (stale ? " (stale)" : "");
+    }
+}
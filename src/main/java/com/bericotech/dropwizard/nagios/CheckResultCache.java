@@ -0,0 +1,146 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of recent {@link CheckResult}s.  When attached to a {@link NagiosCheckTask},
+ * polls arriving within the time-to-live of a previous result are answered from the cache
+ * instead of executing the check again.  A cache may be shared by several tasks, since the
+ * {@link CheckKey} includes the name of the task.
+ */
+public class CheckResultCache implements CheckResultStore {
+
+    /**
+     * Number of distinct results kept if no maximum size is supplied.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Cache<CheckKey, CheckResult> cache;
+
+    private final long ttlNanos;
+
+    /**
+     * Cache results for the given time, keeping at most {@link #DEFAULT_MAXIMUM_SIZE} results.
+     * @param ttl How long a result may be served after it was produced.
+     * @param unit Unit of the ttl.
+     */
+    public CheckResultCache(long ttl, TimeUnit unit) {
+
+        this(ttl, unit, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Cache results for the given time.
+     * @param ttl How long a result may be served after it was produced.
+     * @param unit Unit of the ttl.
+     * @param maximumSize Maximum number of results kept; the least recently used are evicted first.
+     */
+    public CheckResultCache(long ttl, TimeUnit unit, long maximumSize) {
+
+        this(ttl, unit, maximumSize, Ticker.systemTicker());
+    }
+
+    CheckResultCache(long ttl, TimeUnit unit, long maximumSize, Ticker ticker) {
+
+        Preconditions.checkArgument(ttl > 0, "ttl must be positive");
+        Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive");
+
+        this.ttlNanos = unit.toNanos(ttl);
+
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Return the cached result for the key, or execute the loader and cache its result if it is
+     * storable.  Concurrent callers asking for the same missing key share a single execution through
+     * the coalescing of the task (see {@link NagiosCheckTask#setCoalescingConcurrentChecks}), and
+     * each of them only waits for it as long as its own timeout.
+     * @param key Key of the check.
+     * @param loader Executes the check.
+     * @return Cached or freshly loaded result.
+     */
+    @Override
+    public CheckResult get(CheckKey key, Callable<CheckResult> loader) {
+
+        CheckResult cached = cache.getIfPresent(key);
+
+        if (cached != null) return cached;
+
+        CheckResult result;
+
+        try {
+
+            result = loader.call();
+
+        } catch (Exception e) {
+
+            Throwables.throwIfUnchecked(e);
+
+            throw new RuntimeException(e);
+        }
+
+        if (result.isStorable()) cache.put(key, result);
+
+        return result;
+    }
+
+    /**
+     * Return the cached result for the key, if it has not expired yet.
+     * @param key Key of the check.
+     * @return Cached result.
+     */
+    public Optional<CheckResult> getIfPresent(CheckKey key) {
+
+        return Optional.fromNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * Store a result, replacing any previous result for the key.
+     * @param key Key of the check.
+     * @param result Result of the check.
+     */
+    @Override
+    public void put(CheckKey key, CheckResult result) {
+
+        cache.put(key, result);
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    public void invalidateAll() {
+
+        cache.invalidateAll();
+    }
+
+    /**
+     * Approximate number of cached results.
+     * @return Number of cached results.
+     */
+    public long size() {
+
+        return cache.size();
+    }
+
+    /**
+     * How long a result may be served after it was produced.
+     * @param unit Unit of the returned ttl.
+     * @return Time-to-live.
+     */
+    public long getTtl(TimeUnit unit) {
+
+        return unit.convert(ttlNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,27 @@
+package com.bericotech.dropwizard.nagios;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Decides where the result of a {@link NagiosCheckTask} comes from when it is polled:  a cache
+ * of recent results, a snapshot kept up to date in the background, or a fresh execution.
+ */
+public interface CheckResultStore {
+
+    /**
+     * Return the stored result for the key, or use the loader to produce one.  Results that are not
+     * {@link CheckResult#isStorable() storable} are returned without being stored.
+     * @param key Key of the check.
+     * @param loader Executes the check.
+     * @return Result of the check.
+     */
+    CheckResult get(CheckKey key, Callable<CheckResult> loader);
+
+    /**
+     * Store a result, replacing any previous result for the key.  Callers only store
+     * {@link CheckResult#isStorable() storable} results.
+     * @param key Key of the check.
+     * @param result Result of the check.
+     */
+    void put(CheckKey key, CheckResult result);
+}
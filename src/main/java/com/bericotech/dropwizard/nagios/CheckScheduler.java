@@ -0,0 +1,344 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes {@link NagiosCheckTask}s in the background at a fixed interval, so that polls only
+ * read the latest snapshot and never wait on the probe.  A snapshot older than its time-to-live
+ * is still served, marked as stale, while a single asynchronous refresh runs.
+ *
+ * The scheduler is a Dropwizard {@link Managed} object; register it with the environment's
+ * lifecycle so it starts and stops with the application:
+ *
+ * <pre>
+ * CheckScheduler scheduler = new CheckScheduler();
+ * scheduler.schedule(task, 60, 180, TimeUnit.SECONDS);
+ * environment.admin().addTask(task);
+ * environment.lifecycle().manage(scheduler);
+ * </pre>
+ */
+public class CheckScheduler implements Managed, CheckResultStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckScheduler.class);
+
+    /**
+     * Number of threads executing checks if none is supplied.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Time stop() waits for checks in progress if no other is set.
+     */
+    public static final long DEFAULT_STOP_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Level reported for a scheduled check that has not completed its first run yet.
+     */
+    public static Level DEFAULT_LEVEL_FOR_PENDING_TASK = Level.UNKNOWN;
+
+    private final int threads;
+
+    // Replaced by start() once stop() shut it down.
+    private volatile ScheduledExecutorService executor;
+
+    private final ConcurrentMap<CheckKey, ScheduledCheck> checks = new ConcurrentHashMap<CheckKey, ScheduledCheck>();
+
+    private boolean started = false;
+
+    private volatile long stopTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_STOP_TIMEOUT_SECONDS);
+
+    /**
+     * Execute checks on {@link #DEFAULT_THREADS} threads.
+     */
+    public CheckScheduler() {
+
+        this(DEFAULT_THREADS);
+    }
+
+    /**
+     * Execute checks on the given number of threads.
+     * @param threads Number of threads executing checks.
+     */
+    public CheckScheduler(int threads) {
+
+        this.threads = threads;
+        this.executor = newExecutor(threads);
+    }
+
+    /**
+     * Set the time stop() waits for checks in progress to complete after interrupting them.
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of the timeout.
+     */
+    public void setStopTimeout(long timeout, TimeUnit unit) {
+
+        this.stopTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    private static ScheduledExecutorService newExecutor(int threads) {
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-scheduler-%d").build());
+
+        executor.setRemoveOnCancelPolicy(true);
+
+        return executor;
+    }
+
+    /**
+     * Execute the task without parameters in the background, and serve its snapshot to polls.
+     * @param task Task to execute.
+     * @param interval Time between the end of one execution and the start of the next.
+     * @param ttl Age after which a snapshot is considered stale.
+     * @param unit Unit of the interval and ttl.
+     */
+    public void schedule(NagiosCheckTask task, long interval, long ttl, TimeUnit unit) {
+
+        schedule(task, ImmutableMultimap.<String, String>of(), interval, ttl, unit);
+    }
+
+    /**
+     * Execute the task with the given parameters in the background, and serve its snapshot to polls
+     * with equivalent parameters.  Polls with other parameters execute the check as usual.
+     * @param task Task to execute.
+     * @param requestParameters Parameters supplied to the task.
+     * @param interval Time between the end of one execution and the start of the next.
+     * @param ttl Age after which a snapshot is considered stale.
+     * @param unit Unit of the interval and ttl.
+     */
+    public synchronized void schedule(
+            NagiosCheckTask task, ImmutableMultimap<String, String> requestParameters,
+            long interval, long ttl, TimeUnit unit) {
+
+        Preconditions.checkArgument(interval > 0, "interval must be positive");
+        Preconditions.checkArgument(ttl > 0, "ttl must be positive");
+
+        ScheduledCheck check = new ScheduledCheck(task, requestParameters, unit.toNanos(interval), unit.toNanos(ttl));
+
+        Preconditions.checkState(checks.putIfAbsent(check.key, check) == null, "%s is already scheduled", check.key);
+
+        task.setResultStore(this);
+
+        if (started) check.start();
+    }
+
+    /**
+     * Begin executing the scheduled checks.  Start times are spread randomly over the first
+     * interval, so that checks don't all fire at once after boot.  A stopped scheduler can be
+     * started again.
+     */
+    @Override
+    public synchronized void start() {
+
+        if (started) return;
+
+        if (executor.isShutdown()) executor = newExecutor(threads);
+
+        started = true;
+
+        for (ScheduledCheck check : checks.values()) {
+
+            check.start();
+        }
+    }
+
+    /**
+     * Stop executing checks, interrupting those in progress, and wait for them up to the stop timeout.
+     * Checks that ignore the interruption complete in the background.
+     * @throws Exception if interrupted while waiting for checks to stop.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+
+        started = false;
+
+        executor.shutdownNow();
+
+        if (!executor.awaitTermination(stopTimeoutNanos, TimeUnit.NANOSECONDS)) {
+
+            LOG.warn("Scheduled checks did not stop within {}ms; they are left to complete in the background",
+                    TimeUnit.NANOSECONDS.toMillis(stopTimeoutNanos));
+        }
+
+        // Refreshes discarded by shutdownNow() never ran, and would block those of the next start.  Those
+        // still executing reset their flag when they complete.
+        for (ScheduledCheck check : checks.values()) {
+
+            if (!check.executing) check.running.set(false);
+        }
+    }
+
+    /**
+     * Return the latest snapshot of a scheduled check, refreshing it asynchronously if it is stale.
+     * Checks that are not scheduled with equivalent parameters are executed by the loader.
+     * @param key Key of the check.
+     * @param loader Executes the check.
+     * @return Snapshot of the check.
+     */
+    @Override
+    public CheckResult get(CheckKey key, Callable<CheckResult> loader) {
+
+        ScheduledCheck check = checks.get(key);
+
+        if (check == null) {
+
+            try {
+
+                return loader.call();
+
+            } catch (Exception e) {
+
+                Throwables.throwIfUnchecked(e);
+
+                throw new RuntimeException(e);
+            }
+        }
+
+        CheckResult snapshot = check.snapshot;
+
+        if (snapshot == null) {
+
+            return new CheckResult(new MessagePayloadBuilder()
+                    .withLevel(DEFAULT_LEVEL_FOR_PENDING_TASK)
+                    .withMessage(String.format("%s has not completed its first scheduled run", key.getTaskName()))
+                    .build());
+        }
+
+        if (System.nanoTime() - snapshot.getTimestampNanos() > check.ttlNanos) {
+
+            check.refreshAsync();
+
+            return snapshot.asStale();
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Replace the snapshot of a scheduled check.  Results for checks that are not scheduled are ignored.
+     * @param key Key of the check.
+     * @param result Result of the check.
+     */
+    @Override
+    public void put(CheckKey key, CheckResult result) {
+
+        ScheduledCheck check = checks.get(key);
+
+        if (check != null) check.snapshot = result;
+    }
+
+    /**
+     * State of one scheduled check.
+     */
+    private class ScheduledCheck implements Runnable {
+
+        final NagiosCheckTask task;
+
+        final ImmutableMultimap<String, String> requestParameters;
+
+        final CheckKey key;
+
+        final long intervalNanos;
+
+        final long ttlNanos;
+
+        // Guards against more than one execution of the check at a time.
+        final AtomicBoolean running = new AtomicBoolean();
+
+        // Whether an execution is in progress, rather than only submitted.
+        volatile boolean executing;
+
+        volatile CheckResult snapshot;
+
+        ScheduledCheck(NagiosCheckTask task, ImmutableMultimap<String, String> requestParameters,
+                       long intervalNanos, long ttlNanos) {
+
+            this.task = task;
+            this.requestParameters = requestParameters;
+            this.key = CheckKey.of(task.getName(), requestParameters);
+            this.intervalNanos = intervalNanos;
+            this.ttlNanos = ttlNanos;
+        }
+
+        void start() {
+
+            long jitter = ThreadLocalRandom.current().nextLong(intervalNanos);
+
+            executor.scheduleWithFixedDelay(this, jitter, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void refreshAsync() {
+
+            if (!running.compareAndSet(false, true)) return;
+
+            try {
+
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        refresh();
+                    }
+                });
+
+            } catch (RejectedExecutionException e) {
+
+                running.set(false);
+
+                LOG.debug("Not refreshing {}, the scheduler is stopped", key);
+            }
+        }
+
+        @Override
+        public void run() {
+
+            if (running.compareAndSet(false, true)) refresh();
+        }
+
+        // Must only be called by the thread that set the running flag.
+        private void refresh() {
+
+            executing = true;
+
+            try {
+
+                // Don't execute the probe while a dependency is failing.
+                Optional<String> failing = task.getFailingDependency(new HashMap<NagiosCheckTask, CheckResult>());
+
+                CheckResult result = failing.isPresent() ? task.skippedResult(failing.get()) : task.runCheck(key, requestParameters);
+
+                // Keep serving the previous snapshot rather than a result that only describes this run.
+                if (result.isStorable()) snapshot = result;
+
+            } catch (RuntimeException e) {
+
+                LOG.warn("Scheduled execution of {} failed", key, e);
+
+            } finally {
+
+                executing = false;
+
+                running.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes every check of a {@link NagiosCheckRegistry} at startup, so that the first polls after a
+ * deploy don't pay for class loading, JIT compilation, connection pools and cold caches (and trip
+ * thresholds such as those of {@link NagiosTimedCheckTask}).
+ *
+ * The checks are warmed up in parallel, each executed the configured number of times without
+ * parameters, except that a check waits for the warm-up of the registered checks it polls (the
+ * children of a {@link CompositeNagiosCheckTask}) or depends on, which would otherwise report
+ * warming up to it.  The checks are submitted in that order too, so that a bounded executor
+ * doesn't starve.  The probes are executed directly, not through the bulkhead, circuit breaker, metrics
+ * or latency histogram of the task, and the first (cold) execution is not recorded anywhere.  The
+ * result of the last execution is stored in the task's result store, if it has one, unless it is
+ * the cold one:  with a single round, the checks are only warmed up.  Until a check is warm, polls
+ * (also those of {@link AsyncNagiosCheckTask#checkAsync}) report
+ * {@link #DEFAULT_LEVEL_FOR_WARMING_UP_TASK} with the progress as perf data, instead of executing
+ * the check:
+ *
+ * <pre>
+ * UNKNOWN - db warming up (round 2 of 3) | warmup_round=2;;;0;3 warmup_elapsed=1.5s
+ * </pre>
+ *
+ * The warm-up is a Dropwizard {@link Managed} object; register it after the checks, and it warms
+ * them up in the background when the application starts:
+ *
+ * <pre>
+ * environment.lifecycle().manage(new CheckWarmup(checks, 3));
+ * </pre>
+ */
+public class CheckWarmup implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckWarmup.class);
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    /**
+     * Number of executions of each check if none is supplied:  a cold one, and one whose result is stored.
+     */
+    public static final int DEFAULT_ROUNDS = 2;
+
+    /**
+     * Level reported for a check that is still warming up.
+     */
+    public static Level DEFAULT_LEVEL_FOR_WARMING_UP_TASK = Level.UNKNOWN;
+
+    private final NagiosCheckRegistry registry;
+
+    private final int rounds;
+
+    private final ExecutorService executor;
+
+    // Round in progress of each check still warming up.
+    private final ConcurrentMap<NagiosCheckTask, AtomicInteger> warming = new ConcurrentHashMap<NagiosCheckTask, AtomicInteger>();
+
+    // Counted down once the warm-up of each check ended, for the checks waiting for it.
+    private final ConcurrentMap<NagiosCheckTask, CountDownLatch> warm = new ConcurrentHashMap<NagiosCheckTask, CountDownLatch>();
+
+    // Guarded by this.
+    private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+    private volatile CountDownLatch remaining = new CountDownLatch(0);
+
+    private volatile long startNanos;
+
+    /**
+     * Execute each check {@link #DEFAULT_ROUNDS} times.
+     * @param registry Registry of the checks.
+     */
+    public CheckWarmup(NagiosCheckRegistry registry) {
+
+        this(registry, DEFAULT_ROUNDS);
+    }
+
+    /**
+     * Execute each check the given number of times, on a pool of daemon threads.
+     * @param registry Registry of the checks.
+     * @param rounds Executions of each check, the first of which is cold.
+     */
+    public CheckWarmup(NagiosCheckRegistry registry, int rounds) {
+
+        this(registry, rounds, Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-warmup-%d").build()));
+    }
+
+    /**
+     * Execute each check the given number of times on the supplied executor.
+     * @param registry Registry of the checks.
+     * @param rounds Executions of each check, the first of which is cold.
+     * @param executor Executes the checks in parallel.
+     */
+    public CheckWarmup(NagiosCheckRegistry registry, int rounds, ExecutorService executor) {
+
+        Preconditions.checkArgument(rounds > 0, "rounds must be positive");
+
+        this.registry = registry;
+        this.rounds = rounds;
+        this.executor = executor;
+    }
+
+    /**
+     * Begin warming up the checks registered so far.  Returns immediately.
+     */
+    @Override
+    public synchronized void start() {
+
+        ImmutableList<NagiosCheckTask> tasks = registry.getTasks();
+
+        // Prerequisites first.
+        List<NagiosCheckTask> ordered = new ArrayList<NagiosCheckTask>(tasks.size());
+
+        Set<NagiosCheckTask> registered = new HashSet<NagiosCheckTask>(tasks);
+
+        Set<NagiosCheckTask> visited = new HashSet<NagiosCheckTask>();
+
+        for (NagiosCheckTask task : tasks) order(task, registered, visited, ordered);
+
+        startNanos = System.nanoTime();
+
+        remaining = new CountDownLatch(ordered.size());
+
+        for (NagiosCheckTask task : ordered) {
+
+            warming.put(task, new AtomicInteger(1));
+            warm.put(task, new CountDownLatch(1));
+
+            task.setWarmup(this);
+        }
+
+        for (int i = 0; i < ordered.size(); i++) {
+
+            final NagiosCheckTask task = ordered.get(i);
+
+            // Only those submitted earlier, in case of a cycle through the children of composites.
+            final Set<NagiosCheckTask> awaited = new HashSet<NagiosCheckTask>();
+
+            collectPrerequisites(task, new HashSet<NagiosCheckTask>(ordered.subList(0, i)),
+                    new HashSet<NagiosCheckTask>(), awaited);
+
+            futures.add(executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    warm(task, awaited);
+                }
+            }));
+        }
+    }
+
+    // Checks whose results the check uses when it is executed.
+    private static List<NagiosCheckTask> prerequisites(NagiosCheckTask task) {
+
+        List<NagiosCheckTask> prerequisites = new ArrayList<NagiosCheckTask>(task.getDependencies());
+
+        if (task instanceof CompositeNagiosCheckTask) {
+
+            prerequisites.addAll(((CompositeNagiosCheckTask) task).getChildren());
+        }
+
+        return prerequisites;
+    }
+
+    private static void order(NagiosCheckTask task, Set<NagiosCheckTask> registered, Set<NagiosCheckTask> visited,
+                              List<NagiosCheckTask> ordered) {
+
+        if (!visited.add(task)) return;
+
+        for (NagiosCheckTask prerequisite : prerequisites(task)) order(prerequisite, registered, visited, ordered);
+
+        if (registered.contains(task)) ordered.add(task);
+    }
+
+    // Registered prerequisites among the candidates, also through prerequisites that are not registered.
+    private static void collectPrerequisites(NagiosCheckTask task, Set<NagiosCheckTask> candidates,
+                                             Set<NagiosCheckTask> visited, Set<NagiosCheckTask> collected) {
+
+        for (NagiosCheckTask prerequisite : prerequisites(task)) {
+
+            if (!visited.add(prerequisite)) continue;
+
+            if (candidates.contains(prerequisite)) {
+
+                collected.add(prerequisite);
+
+            } else {
+
+                collectPrerequisites(prerequisite, candidates, visited, collected);
+            }
+        }
+    }
+
+    /**
+     * Stop warming up, interrupting checks in progress.  Checks that are not warm yet are executed
+     * by polls again.
+     */
+    @Override
+    public synchronized void stop() {
+
+        for (Future<?> future : futures) future.cancel(true);
+
+        futures.clear();
+
+        for (NagiosCheckTask task : warming.keySet()) finish(task);
+    }
+
+    private void warm(NagiosCheckTask task, Set<NagiosCheckTask> awaited) {
+
+        try {
+
+            CheckKey key = CheckKey.of(task.getName(), NO_PARAMETERS);
+
+            for (NagiosCheckTask prerequisite : awaited) warm.get(prerequisite).await();
+
+            AtomicInteger round = warming.get(task);
+
+            // Stopped before the warm-up of the task began.
+            if (round == null) return;
+
+            CheckResult result = null;
+
+            for (int i = 1; i <= rounds && isWarming(task, round); i++) {
+
+                round.set(i);
+
+                CheckResult executed = task.warmUp(i == 1);
+
+                // The cold result is not representative of the check.
+                if (i > 1) result = executed;
+            }
+
+            CheckResultStore store = task.getResultStore();
+
+            // A check interrupted by stop() may have reported an error, which is not worth keeping.
+            if (result != null && result.isStorable() && store != null && isWarming(task, round)) {
+
+                store.put(key, result);
+            }
+
+            LOG.debug("Warmed up {}: {}", task.getName(), result);
+
+        } catch (InterruptedException e) {
+
+            LOG.debug("Warm-up of {} stopped while waiting for its prerequisites", task.getName());
+
+        } catch (RuntimeException e) {
+
+            LOG.warn("Warm-up of {} failed", task.getName(), e);
+
+        } finally {
+
+            finish(task);
+        }
+    }
+
+    // False once stop() ended the warm-up of the task.
+    private boolean isWarming(NagiosCheckTask task, AtomicInteger round) {
+
+        return warming.get(task) == round && !Thread.currentThread().isInterrupted();
+    }
+
+    private void finish(NagiosCheckTask task) {
+
+        if (warming.remove(task) == null) return;
+
+        task.setWarmup(null);
+
+        warm.get(task).countDown();
+
+        remaining.countDown();
+    }
+
+    /**
+     * Result of polls of a check that is still warming up.
+     * @param task A check warming up.
+     * @return Warming-up result.
+     */
+    CheckResult warmingUpResult(NagiosCheckTask task) {
+
+        AtomicInteger round = warming.get(task);
+
+        int current = round == null ? rounds : round.get();
+
+        return new CheckResult(new MessagePayloadBuilder()
+                .withLevel(DEFAULT_LEVEL_FOR_WARMING_UP_TASK)
+                .withMessage(String.format("%s warming up (round %d of %d)", task.getName(), current, rounds))
+                .withPerfData(
+                        PerfDatum.builder("warmup_round", current).min(0).max(rounds).build(),
+                        PerfDatum.builder("warmup_elapsed", Conversion.nsToS(System.nanoTime() - startNanos))
+                                .uom(PerfDatum.UOM.Seconds).build())
+                .build());
+    }
+
+    /**
+     * Whether every check that was warming up is warm (or the warm-up was stopped).
+     * @return true once the warm-up completed.
+     */
+    public boolean isComplete() {
+
+        return remaining.getCount() == 0;
+    }
+
+    /**
+     * Wait for the warm-up to complete, e.g. before reporting the application as ready.
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of the timeout.
+     * @return true if the warm-up completed, false if the timeout elapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+
+        return remaining.await(timeout, unit);
+    }
+
+    /**
+     * Number of executions of each check.
+     * @return Rounds.
+     */
+    public int getRounds() {
+
+        return rounds;
+    }
+}
@@ -0,0 +1,162 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Delivers passive check results by writing {@code PROCESS_SERVICE_CHECK_RESULT} commands to the
+ * external command file (a FIFO, usually {@code /usr/local/nagios/var/rw/nagios.cmd}) of a Nagios
+ * running on the same host:
+ *
+ * <pre>
+ * [1514764800] PROCESS_SERVICE_CHECK_RESULT;web-01;disk;1;WARNING - 10% free | free=10%;20;10
+ * </pre>
+ *
+ * The timestamp is the time the check was executed.  Line breaks of long output are escaped as
+ * "\n", which Nagios unescapes.  A batch is written with a single write, so that commands of
+ * concurrent writers aren't interleaved (up to the pipe's atomic write size).
+ *
+ * Opening a FIFO blocks until Nagios reads from it, so the command file is written on a separate
+ * thread, and a batch is given up once it hasn't been written within the timeout (e.g. while Nagios
+ * is down).  The blocked write still completes once Nagios reads the command file again, so such a
+ * batch is reported as in flight ({@link DeliveryInFlightException}) and not retried, which would
+ * deliver its results twice.  While that write is still blocked, further batches fail immediately
+ * instead of blocking another thread, and are retried.
+ */
+public class CommandFileSink implements PassiveCheckSink {
+
+    /**
+     * Time a batch may take to be written, if no other timeout is supplied.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private final File commandFile;
+
+    private final long timeoutNanos;
+
+    private final ExecutorService writer = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-command-file-%d").build());
+
+    // The last write; guarded by this.
+    private Future<?> lastWrite;
+
+    /**
+     * Write to the given command file, waiting at most {@link #DEFAULT_TIMEOUT_MILLIS} for each batch.
+     * @param commandFile External command file (or FIFO) of Nagios.
+     */
+    public CommandFileSink(File commandFile) {
+
+        this(commandFile, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write to the given command file.
+     * @param commandFile External command file (or FIFO) of Nagios.
+     * @param timeout Time a batch may take to be written.
+     * @param unit Unit of the timeout.
+     */
+    public CommandFileSink(File commandFile, long timeout, TimeUnit unit) {
+
+        Preconditions.checkArgument(timeout > 0, "timeout must be positive");
+
+        this.commandFile = commandFile;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public void submit(List<PassiveCheckResult> results) throws IOException {
+
+        StringBuilder commands = new StringBuilder(results.size() * 128);
+
+        for (PassiveCheckResult result : results) {
+
+            commands.append('[')
+                    .append(TimeUnit.MILLISECONDS.toSeconds(result.getCheckTimeMillis()))
+                    .append("] PROCESS_SERVICE_CHECK_RESULT;")
+                    .append(escape(result.getHostName())).append(';')
+                    .append(escape(result.getServiceName())).append(';')
+                    .append(result.getReturnCode()).append(';')
+                    .append(escape(result.getOutput()))
+                    .append('\n');
+        }
+
+        final byte[] bytes = commands.toString().getBytes(Charsets.UTF_8);
+
+        Future<?> write;
+
+        synchronized (this) {
+
+            if (lastWrite != null && !lastWrite.isDone()) {
+
+                throw new IOException(String.format("A write to %s is still blocked; is Nagios reading it?", commandFile));
+            }
+
+            write = writer.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+
+                    // Appending also works for FIFOs; opening blocks until Nagios reads the command file.
+                    OutputStream out = new FileOutputStream(commandFile, true);
+
+                    try {
+
+                        out.write(bytes);
+
+                    } finally {
+
+                        out.close();
+                    }
+
+                    return null;
+                }
+            });
+
+            lastWrite = write;
+        }
+
+        try {
+
+            write.get(timeoutNanos, TimeUnit.NANOSECONDS);
+
+        } catch (TimeoutException e) {
+
+            // The write completes once Nagios opens the command file, so the batch must not be retried.
+            throw new DeliveryInFlightException(String.format("Could not write to %s within %sms; is Nagios reading it?",
+                    commandFile, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while writing to " + commandFile);
+
+        } catch (ExecutionException e) {
+
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static String escape(String field) {
+
+        return field.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "");
+    }
+}
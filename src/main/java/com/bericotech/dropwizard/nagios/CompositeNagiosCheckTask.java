@@ -0,0 +1,403 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * One check combining the levels of child checks, e.g. of the nodes of a replicated database or the
+ * partitions of a queue, with a {@link Policy}:
+ *
+ * <pre>
+ * // WARNING if fewer than 28, CRITICAL if fewer than 16 of the nodes are healthy (OK)
+ * new CompositeNagiosCheckTask("cassandra", CompositeNagiosCheckTask.quorum(28, 16), nodeChecks);
+ *
+ * CRITICAL - 12 of 32 healthy: node-3 CRITICAL, node-9 UNKNOWN (18 not awaited) | healthy=12;;;0;32 node-1.latency=0.003s ...
+ * </pre>
+ *
+ * The children are executed in parallel, and as soon as the results so far decide the level (e.g.
+ * enough nodes are down that the quorum can't be reached), the composite stops waiting for the rest.
+ * Children that haven't started are not executed, but those executing are not interrupted:  a child
+ * may share its result store, circuit breaker and metrics with other polls, which must not see an
+ * interruption caused by this composite.  The perf data of the children are reported with their
+ * name as prefix.
+ */
+public class CompositeNagiosCheckTask extends NagiosCheckTask {
+
+    /**
+     * Combines the levels of the children into the level of the composite.
+     */
+    public interface Policy {
+
+        /**
+         * Level of the composite, if the results so far decide it.
+         * @param tally Levels of the children that completed so far.
+         * @return Level once no pending child can change it; must be present once no child is pending.
+         */
+        Optional<Level> decide(Tally tally);
+    }
+
+    /**
+     * Number of children per level, and of children still pending.
+     */
+    public static final class Tally {
+
+        private final int[] counts;
+
+        private final int pending;
+
+        Tally(int[] counts, int pending) {
+
+            this.counts = counts.clone();
+            this.pending = pending;
+        }
+
+        /**
+         * Number of children that completed with the level.
+         * @param level A level.
+         * @return Count of the level.
+         */
+        public int getCount(Level level) {
+
+            return counts[level.ordinal()];
+        }
+
+        /**
+         * Number of healthy (OK) children.
+         * @return Healthy children.
+         */
+        public int getHealthy() {
+
+            return getCount(Level.OK);
+        }
+
+        /**
+         * Number of children still executing.
+         * @return Pending children.
+         */
+        public int getPending() {
+
+            return pending;
+        }
+
+        /**
+         * Number of children.
+         * @return All children.
+         */
+        public int getTotal() {
+
+            int total = pending;
+
+            for (int count : counts) total += count;
+
+            return total;
+        }
+    }
+
+    private final Policy policy;
+
+    private final ImmutableList<NagiosCheckTask> children;
+
+    private final ListeningExecutorService childExecutor;
+
+    /**
+     * Combine the children, executing them on {@link CheckExecutors#defaultExecutor()}.
+     * @param name Name of the task.
+     * @param policy Combines the levels of the children.
+     * @param children Child checks.
+     */
+    public CompositeNagiosCheckTask(String name, Policy policy, List<? extends NagiosCheckTask> children) {
+
+        this(name, policy, children, CheckExecutors.defaultExecutor());
+    }
+
+    /**
+     * Combine the children, executing them on the supplied executor.
+     * @param name Name of the task.
+     * @param policy Combines the levels of the children.
+     * @param children Child checks.
+     * @param childExecutor Executes the children in parallel.
+     */
+    public CompositeNagiosCheckTask(String name, Policy policy, List<? extends NagiosCheckTask> children,
+                                    ExecutorService childExecutor) {
+
+        super(name);
+
+        this.policy = Preconditions.checkNotNull(policy);
+        this.children = ImmutableList.copyOf(children);
+        this.childExecutor = MoreExecutors.listeningDecorator(childExecutor);
+    }
+
+    /**
+     * Checks combined by this check.
+     * @return Children of the check.
+     */
+    public ImmutableList<NagiosCheckTask> getChildren() {
+
+        return children;
+    }
+
+    /**
+     * The worst level of the children (CRITICAL as soon as one child is CRITICAL).
+     * @return Worst-of policy.
+     */
+    public static Policy worstOf() {
+
+        return new Policy() {
+
+            @Override
+            public Optional<Level> decide(Tally tally) {
+
+                if (tally.getCount(Level.CRITICAL) > 0) return Optional.of(Level.CRITICAL);
+
+                if (tally.getPending() > 0) return Optional.absent();
+
+                Level worst = Level.OK;
+
+                for (Level level : Level.values()) {
+
+                    if (tally.getCount(level) > 0) worst = Level.worst(worst, level);
+                }
+
+                return Optional.of(worst);
+            }
+        };
+    }
+
+    /**
+     * CRITICAL if fewer than the given number of children are healthy (OK), OK otherwise.
+     * @param minHealthy Healthy children needed.
+     * @return Quorum policy.
+     */
+    public static Policy quorum(int minHealthy) {
+
+        return quorum(minHealthy, minHealthy);
+    }
+
+    /**
+     * WARNING or CRITICAL if fewer than the given numbers of children are healthy (OK).
+     * @param warningBelow Healthy children needed to be OK.
+     * @param criticalBelow Healthy children needed to be better than CRITICAL.
+     * @return Quorum policy.
+     */
+    public static Policy quorum(final int warningBelow, final int criticalBelow) {
+
+        Preconditions.checkArgument(criticalBelow <= warningBelow, "criticalBelow must not exceed warningBelow");
+
+        return new HealthyCountPolicy() {
+
+            @Override
+            Level levelFor(int healthy, int total) {
+
+                return healthy < criticalBelow ? Level.CRITICAL : healthy < warningBelow ? Level.WARNING : Level.OK;
+            }
+        };
+    }
+
+    /**
+     * WARNING or CRITICAL if less than the given percentages of children are healthy (OK).
+     * @param warningBelow Percentage of healthy children needed to be OK.
+     * @param criticalBelow Percentage of healthy children needed to be better than CRITICAL.
+     * @return Percentage policy.
+     */
+    public static Policy percentage(final double warningBelow, final double criticalBelow) {
+
+        Preconditions.checkArgument(criticalBelow <= warningBelow, "criticalBelow must not exceed warningBelow");
+
+        return new HealthyCountPolicy() {
+
+            @Override
+            Level levelFor(int healthy, int total) {
+
+                double percentage = total == 0 ? 100 : healthy * 100.0 / total;
+
+                return percentage < criticalBelow ? Level.CRITICAL : percentage < warningBelow ? Level.WARNING : Level.OK;
+            }
+        };
+    }
+
+    /**
+     * A policy whose level only depends on the number of healthy children, and never gets worse as it grows.
+     * The level is decided once the pending children can't change it, whether they turn out healthy
+     * or not.
+     */
+    abstract static class HealthyCountPolicy implements Policy {
+
+        abstract Level levelFor(int healthy, int total);
+
+        @Override
+        public Optional<Level> decide(Tally tally) {
+
+            int total = tally.getTotal();
+
+            Level worstCase = levelFor(tally.getHealthy(), total);
+
+            if (worstCase == levelFor(tally.getHealthy() + tally.getPending(), total)) return Optional.of(worstCase);
+
+            return Optional.absent();
+        }
+    }
+
+    @Override
+    public MessagePayload performCheck(final ImmutableMultimap<String, String> requestParameters) throws InterruptedException {
+
+        if (children.isEmpty()) {
+
+            return new MessagePayloadBuilder().withLevel(Level.UNKNOWN).withMessage("No child checks").build();
+        }
+
+        Run run = new Run();
+
+        List<ListenableFuture<CheckResult>> futures = new ArrayList<ListenableFuture<CheckResult>>(children.size());
+
+        try {
+
+            for (int i = 0; i < children.size(); i++) {
+
+                final NagiosCheckTask child = children.get(i);
+
+                ListenableFuture<CheckResult> future = childExecutor.submit(new Callable<CheckResult>() {
+
+                    @Override
+                    public CheckResult call() {
+
+                        return child.check(requestParameters);
+                    }
+                });
+
+                futures.add(future);
+
+                future.addListener(run.completion(i, future), MoreExecutors.directExecutor());
+            }
+
+            run.await();
+
+        } finally {
+
+            // Children still executing can't change the outcome (or nobody waits for it any more).  They
+            // complete on their own, so that their stores and breakers only see their own outcome.
+            for (ListenableFuture<CheckResult> future : futures) future.cancel(false);
+        }
+
+        return run.payload();
+    }
+
+    /**
+     * The results of one execution of the composite.
+     */
+    private final class Run {
+
+        // Guarded by this.
+        private final CheckResult[] results = new CheckResult[children.size()];
+
+        // Guarded by this.
+        private final int[] counts = new int[Level.values().length];
+
+        // Guarded by this.
+        private int pending = children.size();
+
+        // Guarded by this.
+        private Level decided;
+
+        Runnable completion(final int index, final ListenableFuture<CheckResult> future) {
+
+            return new Runnable() {
+
+                @Override
+                public void run() {
+
+                    if (future.isCancelled()) return;
+
+                    CheckResult result;
+
+                    try {
+
+                        result = future.get();
+
+                    } catch (InterruptedException | ExecutionException e) {
+
+                        result = new CheckResult(errorPayload(e instanceof ExecutionException ? e.getCause() : e));
+                    }
+
+                    complete(index, result);
+                }
+            };
+        }
+
+        private synchronized void complete(int index, CheckResult result) {
+
+            // Later results don't change the outcome, and are not reported.
+            if (decided != null) return;
+
+            results[index] = result;
+
+            counts[result.getPayload().getLevel().ordinal()]++;
+
+            pending--;
+
+            Optional<Level> level = policy.decide(new Tally(counts, pending));
+
+            // Policies have to decide complete results; this one didn't, so the outcome is unknown.
+            if (!level.isPresent() && pending == 0) level = Optional.of(Level.UNKNOWN);
+
+            if (level.isPresent()) {
+
+                decided = level.get();
+
+                notifyAll();
+            }
+        }
+
+        synchronized void await() throws InterruptedException {
+
+            while (decided == null) wait();
+        }
+
+        synchronized MessagePayload payload() {
+
+            StringBuilder message = new StringBuilder();
+
+            message.append(counts[Level.OK.ordinal()]).append(" of ").append(children.size()).append(" healthy");
+
+            List<PerfDatum> perfData = new ArrayList<PerfDatum>();
+
+            perfData.add(PerfDatum.builder("healthy", counts[Level.OK.ordinal()]).min(0).max(children.size()).build());
+
+            int unhealthy = 0;
+
+            for (int i = 0; i < results.length; i++) {
+
+                if (results[i] == null) continue;
+
+                String name = children.get(i).getName();
+
+                MessagePayload payload = results[i].getPayload();
+
+                if (payload.getLevel() != Level.OK) {
+
+                    message.append(unhealthy++ == 0 ? ": " : ", ").append(name).append(' ').append(payload.getLevel().name());
+                }
+
+                for (PerfDatum datum : payload.getPerfData()) perfData.add(datum.withLabel(name + "." + datum.getLabel()));
+            }
+
+            if (pending > 0) message.append(" (").append(pending).append(" not awaited)");
+
+            return new MessagePayloadBuilder()
+                    .withLevel(decided)
+                    .withMessage(message.toString())
+                    .withPerfData(perfData)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.bericotech.dropwizard.nagios;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link PassiveCheckSink} that gave up waiting for a batch which may still be
+ * delivered, e.g. a write to a FIFO nobody reads yet.  The batch is neither delivered nor failed,
+ * and is not retried, since a retry could deliver the results twice.
+ */
+public class DeliveryInFlightException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Instantiate the exception with a description of the delivery in flight.
+     * @param message Description of the delivery.
+     */
+    public DeliveryInFlightException(String message) {
+
+        super(message);
+    }
+}
@@ -0,0 +1,201 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMultimap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports every {@link HealthCheck} of a Dropwizard {@link HealthCheckRegistry} as one Nagios check,
+ * the reverse of {@link HealthCheckWrapper}.  The health checks are executed in parallel on an
+ * executor of their own ({@link HealthCheckRegistry#runHealthChecks(java.util.concurrent.ExecutorService)}),
+ * {@link CheckExecutors#defaultExecutor()} unless another is set, and the result is cached for
+ * {@link #DEFAULT_CACHE_TTL_SECONDS} seconds, unless another result store is set.
+ *
+ * Unhealthy checks are reported at the level set with {@link #setUnhealthyLevel(Level)} (CRITICAL
+ * by default).  Checks wrapping a {@link NagiosCheckTask} keep their own level and perf data, the
+ * latter prefixed with the name of the health check:
+ *
+ * <pre>
+ * CRITICAL - 1 of 3 health checks unhealthy: db CRITICAL | health_checks=3;;;0 unhealthy=1;;;0 disk.free=10%
+ * db CRITICAL - connection refused
+ * deadlocks OK
+ * disk OK - plenty of space
+ * </pre>
+ */
+public class HealthCheckRegistryTask extends NagiosCheckTask {
+
+    /**
+     * Name of the task if none is supplied.
+     */
+    public static final String DEFAULT_NAME = "nagios-health-checks";
+
+    /**
+     * Time results are cached for, unless another result store is set.
+     */
+    public static final long DEFAULT_CACHE_TTL_SECONDS = 10;
+
+    private final HealthCheckRegistry registry;
+
+    private volatile Level unhealthyLevel = Level.CRITICAL;
+
+    private volatile ExecutorService healthCheckExecutor = CheckExecutors.defaultExecutor();
+
+    /**
+     * Report the health checks of the registry as the task {@link #DEFAULT_NAME}.
+     * @param registry Registry of the health checks, e.g. {@code environment.healthChecks()}.
+     */
+    public HealthCheckRegistryTask(HealthCheckRegistry registry) {
+
+        this(DEFAULT_NAME, registry);
+    }
+
+    /**
+     * Report the health checks of the registry.
+     * @param name Name of the task.
+     * @param registry Registry of the health checks, e.g. {@code environment.healthChecks()}.
+     */
+    public HealthCheckRegistryTask(String name, HealthCheckRegistry registry) {
+
+        super(name);
+
+        this.registry = registry;
+
+        setResultStore(new CheckResultCache(DEFAULT_CACHE_TTL_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Level reported for unhealthy checks that don't wrap a {@link NagiosCheckTask}.
+     * @param unhealthyLevel Level of unhealthy checks.
+     */
+    public void setUnhealthyLevel(Level unhealthyLevel) {
+
+        this.unhealthyLevel = unhealthyLevel;
+    }
+
+    /**
+     * Level reported for unhealthy checks that don't wrap a {@link NagiosCheckTask}.
+     * @return Level of unhealthy checks.
+     */
+    public Level getUnhealthyLevel() {
+
+        return unhealthyLevel;
+    }
+
+    /**
+     * Execute the health checks on the supplied executor.  Don't pass the task's own executor (see
+     * {@link #setExecutor}) if it is bounded:  with a timeout, the task holds one of its threads
+     * while it waits for the health checks, which could then wait for that thread in turn.
+     * @param healthCheckExecutor Executes the health checks in parallel.
+     */
+    public void setHealthCheckExecutor(ExecutorService healthCheckExecutor) {
+
+        this.healthCheckExecutor = Preconditions.checkNotNull(healthCheckExecutor);
+    }
+
+    /**
+     * Executor the health checks are executed on.
+     * @return Health check executor.
+     */
+    public ExecutorService getHealthCheckExecutor() {
+
+        return healthCheckExecutor;
+    }
+
+    @Override
+    public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+        SortedMap<String, HealthCheck.Result> results = registry.runHealthChecks(healthCheckExecutor);
+
+        if (results.isEmpty()) {
+
+            return new MessagePayloadBuilder()
+                    .withLevel(Level.UNKNOWN)
+                    .withMessage("No health checks are registered")
+                    .build();
+        }
+
+        Level worst = Level.OK;
+
+        List<PerfDatum> perfData = new ArrayList<PerfDatum>();
+
+        StringBuilder alerts = new StringBuilder();
+
+        StringBuilder longOutput = new StringBuilder();
+
+        int alerting = 0;
+
+        for (Map.Entry<String, HealthCheck.Result> entry : results.entrySet()) {
+
+            String name = entry.getKey();
+
+            HealthCheck.Result result = entry.getValue();
+
+            Level level = levelOf(result);
+
+            if (level != Level.OK) {
+
+                alerts.append(alerting++ == 0 ? ": " : ", ").append(name).append(' ').append(level.name());
+
+                worst = Level.worst(worst, level);
+            }
+
+            longOutput.append('\n').append(name).append(' ').append(level.name());
+
+            // The perf data of a wrapped check is reported with the others, not in its line.
+            String resultMessage = HealthCheckWrapper.baseMessage(result);
+
+            if (resultMessage != null && !resultMessage.isEmpty()) {
+
+                longOutput.append(" - ").append(resultMessage);
+            }
+
+            addPerfData(name, result, perfData);
+        }
+
+        String message = alerting == 0
+                ? String.format("%d health checks OK", results.size())
+                : String.format("%d of %d health checks unhealthy", alerting, results.size()) + alerts;
+
+        perfData.add(0, PerfDatum.builder("health_checks", results.size()).min(0).build());
+        perfData.add(1, PerfDatum.builder("unhealthy", alerting).min(0).build());
+
+        return new MessagePayloadBuilder()
+                .withLevel(worst)
+                .withMessage(message + longOutput)
+                .withPerfData(perfData)
+                .build();
+    }
+
+    private Level levelOf(HealthCheck.Result result) {
+
+        Map<String, Object> details = result.getDetails();
+
+        Object level = details == null ? null : details.get(HealthCheckWrapper.LEVEL_DETAIL);
+
+        if (level instanceof Level) return (Level) level;
+
+        return result.isHealthy() ? Level.OK : unhealthyLevel;
+    }
+
+    private static void addPerfData(String name, HealthCheck.Result result, List<PerfDatum> perfData) {
+
+        Map<String, Object> details = result.getDetails();
+
+        Object data = details == null ? null : details.get(HealthCheckWrapper.PERF_DATA_DETAIL);
+
+        if (!(data instanceof List)) return;
+
+        for (Object datum : (List<?>) data) {
+
+            if (datum instanceof PerfDatum) perfData.add(((PerfDatum) datum).withLabel(name + "." + ((PerfDatum) datum).getLabel()));
+        }
+    }
+}
@@ -3,8 +3,31 @@ package com.bericotech.dropwizard.nagios;
 import com.codahale.metrics.health.HealthCheck;
 import com.google.common.collect.ImmutableMultimap;
 
+/**
+ * Exposes a {@link NagiosCheckTask} as a Dropwizard {@link HealthCheck}.  The result is obtained
+ * through {@link NagiosCheckTask#check(ImmutableMultimap)}, so a result the task already holds (in a
+ * {@link CheckResultCache} or {@link CheckScheduler}) is reused instead of executing the probe again
+ * for {@code /healthcheck}.  The message of the result is the payload's message, perf data
+ * included; the level, perf data and message without perf data are also kept as the details
+ * {@value #LEVEL_DETAIL}, {@value #PERF_DATA_DETAIL} and {@value #BASE_MESSAGE_DETAIL} of the result.
+ */
 public class HealthCheckWrapper extends HealthCheck {
 
+    /**
+     * Detail of the result holding the {@link Level} of the check.
+     */
+    public static final String LEVEL_DETAIL = "level";
+
+    /**
+     * Detail of the result holding the perf data of the check, if it has any.
+     */
+    public static final String PERF_DATA_DETAIL = "perfData";
+
+    /**
+     * Detail of the result holding the message of the check without its perf data.
+     */
+    public static final String BASE_MESSAGE_DETAIL = "baseMessage";
+
     NagiosCheckTask checkTask;
     ImmutableMultimap<String, String> params = ImmutableMultimap.of();
 
@@ -27,24 +50,37 @@ public class HealthCheckWrapper extends HealthCheck {
     @Override
     protected Result check() throws Exception {
 
-        try {
+        MessagePayload mp = checkTask.check(params).getPayload();
 
-            MessagePayload mp = checkTask.performCheck(params);
+        ResultBuilder result = Result.builder()
+                .withMessage(mp.getMessage())
+                .withDetail(LEVEL_DETAIL, mp.getLevel())
+                .withDetail(BASE_MESSAGE_DETAIL, mp.getBaseMessage());
 
-            boolean isOk = mp.getLevel() == Level.OK;
+        if (!mp.getPerfData().isEmpty()) result.withDetail(PERF_DATA_DETAIL, mp.getPerfData());
 
-            if (isOk){
+        boolean isOk = mp.getLevel() == Level.OK;
 
-                return Result.healthy(mp.getMessage());
-            }
-            else {
+        if (isOk){
 
-                return Result.unhealthy(mp.getMessage());
-            }
-
-        } catch (Throwable throwable) {
+            return result.healthy().build();
+        }
+        else {
 
-            return Result.unhealthy(throwable);
+            return result.unhealthy().build();
         }
     }
+
+    /**
+     * Message of a result without perf data:  the {@value #BASE_MESSAGE_DETAIL} detail of a wrapped
+     * check, or the message of any other health check.
+     * @param result Result of a health check.
+     * @return Message without the perf data of a wrapped check.
+     */
+    static String baseMessage(Result result) {
+
+        Object baseMessage = result.getDetails() == null ? null : result.getDetails().get(BASE_MESSAGE_DETAIL);
+
+        return baseMessage instanceof String ? (String) baseMessage : result.getMessage();
+    }
 }
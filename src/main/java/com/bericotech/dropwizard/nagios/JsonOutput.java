@@ -0,0 +1,134 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes check results as JSON, directly to a {@link Writer} (like the servlet's PrintWriter).
+ *
+ * The fields are written by hand instead of through Jackson's bean serializers, so no serializer
+ * lookup or polymorphic handling of {@link PerfDatum}'s values happens per request, and primitive
+ * values are written without boxing.  The output is the same as serializing the
+ * {@link MessagePayload} with a plain {@link ObjectMapper}:
+ *
+ * <pre>
+ * {"level":"OK","message":"...","perfData":[{"label":...}],"baseMessage":"...","age":0.5}
+ * </pre>
+ */
+public final class JsonOutput {
+
+    private JsonOutput() {}
+
+    // Serializes perf data values that aren't numbers (strings, user supplied objects).
+    private static final ObjectMapper FALLBACK_MAPPER = new ObjectMapper();
+
+    private static final JsonFactory FACTORY = FALLBACK_MAPPER.getFactory().copy()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .setCodec(FALLBACK_MAPPER);
+
+    /**
+     * Write a payload as a JSON object.
+     * @param mp Payload to write.
+     * @param out Output to write to; it is flushed, but not closed.
+     * @throws IOException if the output does.
+     */
+    public static void write(MessagePayload mp, Writer out) throws IOException {
+
+        JsonGenerator gen = FACTORY.createGenerator(out);
+
+        write(mp, gen);
+
+        gen.close();
+    }
+
+    /**
+     * Write the result of a check as a JSON object, including the age of the result in seconds
+     * and, if it is stale, a "stale" flag.
+     * @param result Result to write.
+     * @param out Output to write to; it is flushed, but not closed.
+     * @throws IOException if the output does.
+     */
+    public static void write(CheckResult result, Writer out) throws IOException {
+
+        JsonGenerator gen = FACTORY.createGenerator(out);
+
+        write(result, gen);
+
+        gen.close();
+    }
+
+    /**
+     * Create a generator writing to the output, for documents that embed check results
+     * (see {@link #write(CheckResult, JsonGenerator)}).  Closing the generator does not close the output.
+     * @param out Output to write to.
+     * @return Generator writing to the output.
+     * @throws IOException if the output does.
+     */
+    public static JsonGenerator createGenerator(Writer out) throws IOException {
+
+        return FACTORY.createGenerator(out);
+    }
+
+    /**
+     * Write the result of a check as a JSON object, including its age and stale flag.
+     * @param result Result to write.
+     * @param gen Generator to write to.
+     * @throws IOException if the generator does.
+     */
+    public static void write(CheckResult result, JsonGenerator gen) throws IOException {
+
+        gen.writeStartObject();
+
+        writeFields(result.getPayload(), gen);
+
+        gen.writeNumberField("age", result.getAgeInSeconds());
+
+        if (result.isStale()) gen.writeBooleanField("stale", true);
+
+        gen.writeEndObject();
+    }
+
+    /**
+     * Write a payload as a JSON object.
+     * @param mp Payload to write.
+     * @param gen Generator to write to.
+     * @throws IOException if the generator does.
+     */
+    public static void write(MessagePayload mp, JsonGenerator gen) throws IOException {
+
+        gen.writeStartObject();
+
+        writeFields(mp, gen);
+
+        gen.writeEndObject();
+    }
+
+    private static void writeFields(MessagePayload mp, JsonGenerator gen) throws IOException {
+
+        Level level = mp.getLevel();
+
+        gen.writeFieldName("level");
+
+        if (level == null) gen.writeNull(); else gen.writeString(level.name());
+
+        gen.writeStringField("message", mp.getMessage());
+
+        gen.writeArrayFieldStart("perfData");
+
+        List<PerfDatum> perfData = mp.getPerfData();
+
+        for (int i = 0; i < perfData.size(); i++) {
+
+            perfData.get(i).writeTo(gen);
+        }
+
+        gen.writeEndArray();
+
+        gen.writeStringField("baseMessage", mp.getBaseMessage());
+    }
+}
@@ -0,0 +1,203 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free histogram of the durations of recent executions, in nanoseconds, with fixed memory.
+ *
+ * Durations are counted in log-linear buckets (like HdrHistogram):  exact below 64ns, and within
+ * 1/32 (about 3%) of the recorded value above; percentiles report the upper end of their bucket.
+ * Durations above {@link #MAX_TRACKABLE_NANOS} (about 18 minutes) are counted as that value.
+ *
+ * The histogram covers a sliding window:  recordings go to the current window, which replaces
+ * the previous one once it is older than the window length.  Snapshots include the current and
+ * the previous window, i.e. between one and two window lengths of executions.
+ */
+public final class LatencyHistogram {
+
+    // Number of bits of precision below the leading bit; 2^SUB_BUCKET_BITS sub-buckets per power of two.
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below this are counted exactly, one bucket each.
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    /**
+     * Greatest duration the histogram distinguishes; longer durations are counted as this.
+     */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    private static final int BUCKETS = bucketOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final long windowNanos;
+
+    private final AtomicReference<Windows> windows;
+
+    /**
+     * Create a histogram of the executions in the last window (to two windows).
+     * @param window Length of a window.
+     * @param unit Unit of the window.
+     */
+    public LatencyHistogram(long window, TimeUnit unit) {
+
+        Preconditions.checkArgument(window > 0, "window must be positive");
+
+        this.windowNanos = unit.toNanos(window);
+
+        this.windows = new AtomicReference<Windows>(new Windows(new Window(System.nanoTime()), new Window(0)));
+    }
+
+    /**
+     * Record the duration of an execution.
+     * @param nanos Duration in nanoseconds.
+     */
+    public void record(long nanos) {
+
+        current(System.nanoTime()).record(Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS));
+    }
+
+    /**
+     * Number of executions in the window.
+     * @return Number of executions.
+     */
+    public long getCount() {
+
+        Windows w = rotate(System.nanoTime());
+
+        return w.current.count.get() + w.previous.count.get();
+    }
+
+    /**
+     * Longest execution in the window.
+     * @return Duration in nanoseconds; zero if there were no executions.
+     */
+    public long getMax() {
+
+        Windows w = rotate(System.nanoTime());
+
+        return Math.max(w.current.max.get(), w.previous.max.get());
+    }
+
+    /**
+     * Duration that the given percentage of executions in the window did not exceed.
+     * @param percentile Percentile between 0 and 100, e.g. 99.
+     * @return Duration in nanoseconds (the upper end of its bucket, but no more than the maximum);
+     *         zero if there were no executions.
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+
+        Windows w = rotate(System.nanoTime());
+
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            total += w.current.buckets.get(i) + w.previous.buckets.get(i);
+        }
+
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            seen += w.current.buckets.get(i) + w.previous.buckets.get(i);
+
+            if (seen >= rank) return Math.min(highestValueOf(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    private Window current(long now) {
+
+        return rotate(now).current;
+    }
+
+    private Windows rotate(long now) {
+
+        while (true) {
+
+            Windows w = windows.get();
+
+            if (now - w.current.startNanos < windowNanos) return w;
+
+            // Two windows have passed without recordings; the previous window is outdated too.
+            Window previous = now - w.current.startNanos < 2 * windowNanos ? w.current : new Window(0);
+
+            Windows rotated = new Windows(new Window(now), previous);
+
+            if (windows.compareAndSet(w, rotated)) return rotated;
+        }
+    }
+
+    static int bucketOf(long value) {
+
+        if (value < LINEAR_LIMIT) return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int bucket) {
+
+        if (bucket < LINEAR_LIMIT) return bucket;
+
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+
+        long top = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+
+        return ((top + 1) << shift) - 1;
+    }
+
+    private static final class Windows {
+
+        final Window current;
+
+        final Window previous;
+
+        Windows(Window current, Window previous) {
+
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    private static final class Window {
+
+        final long startNanos;
+
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        final AtomicLong count = new AtomicLong();
+
+        final AtomicLong max = new AtomicLong();
+
+        Window(long startNanos) {
+
+            this.startNanos = startNanos;
+        }
+
+        void record(long nanos) {
+
+            buckets.incrementAndGet(bucketOf(nanos));
+
+            count.incrementAndGet();
+
+            long currentMax;
+
+            while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {}
+        }
+    }
+}
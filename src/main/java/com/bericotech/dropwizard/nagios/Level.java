@@ -74,6 +74,7 @@ public enum Level {
      * Evaluate the current criteria for it's level.
      *
      * This is a really simple helper function for a common evaluation task used with PerfDatum.
+     * For thresholds other than "greater than", see {@link Threshold}.
      *
      * @param currentValue Current Value
      * @param warningCriteria Warning Criteria
@@ -93,4 +94,64 @@ public enum Level {
 
         return Level.OK;
     }
-}
\ No newline at end of file
+
+    /**
+     * Evaluate a value against pre-parsed thresholds, without boxing.
+     *
+     * @param currentValue Current Value
+     * @param warning Warning threshold, or null for none
+     * @param critical Critical threshold, or null for none
+     * @return CRITICAL if the critical threshold alerts, otherwise WARNING if the warning threshold
+     *         alerts, otherwise OK
+     */
+    public static Level evaluate(double currentValue, Threshold warning, Threshold critical){
+
+        if (critical != null && critical.alerts(currentValue)){
+
+            return Level.CRITICAL;
+        }
+        else if (warning != null && warning.alerts(currentValue)){
+
+            return Level.WARNING;
+        }
+
+        return Level.OK;
+    }
+
+    /**
+     * Evaluate a value against pre-parsed thresholds, without boxing.
+     *
+     * @param currentValue Current Value
+     * @param warning Warning threshold, or null for none
+     * @param critical Critical threshold, or null for none
+     * @return CRITICAL if the critical threshold alerts, otherwise WARNING if the warning threshold
+     *         alerts, otherwise OK
+     */
+    public static Level evaluate(long currentValue, Threshold warning, Threshold critical){
+
+        return evaluate((double) currentValue, warning, critical);
+    }
+
+    /**
+     * Combine two levels into the more severe one, ranking OK &lt; UNKNOWN &lt; WARNING &lt; CRITICAL
+     * (the default state evaluation of Nagios' check_multi).
+     *
+     * @param first
+     *            a level
+     * @param second
+     *            another level
+     * @return the more severe level
+     */
+    public static Level worst(Level first, Level second) {
+        return severity(second) > severity(first) ? second : first;
+    }
+
+    private static int severity(Level level) {
+        switch (level) {
+            case OK: return 0;
+            case UNKNOWN: return 1;
+            case WARNING: return 2;
+            default: return 3;
+        }
+    }
+}
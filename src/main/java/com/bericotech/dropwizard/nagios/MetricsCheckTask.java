@@ -0,0 +1,384 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.lifecycle.Managed;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Checks metrics the application already publishes in a {@link MetricRegistry} against thresholds,
+ * without a hand-written task per metric.  Rules select metrics by a regular expression on their
+ * names, and apply warning and critical thresholds to one value per metric:
+ *
+ * <pre>
+ * Gauge       its value (must be a number)
+ * Counter     its count
+ * Histogram   the 99th percentile              (perf data label: name.p99)
+ * Meter       the one-minute rate per second   (perf data label: name.m1_rate)
+ * Timer       the 99th percentile, in seconds  (perf data label: name.p99)
+ * </pre>
+ *
+ * The level of the check is the worst level of all selected metrics, and every selected metric is
+ * reported as perf data.  Metrics are matched against the rules when they are registered (the task
+ * listens to the registry), so a poll only reads the selected metrics instead of walking the
+ * registry.  The first matching rule applies.
+ *
+ * <pre>
+ * MetricsCheckTask task = new MetricsCheckTask("db-metrics", environment.metrics())
+ *         .addRule("db\\.pool\\.active", Threshold.above(80), Threshold.above(95))
+ *         .addRule("db\\.query\\..*", Threshold.above(0.5), Threshold.above(2));
+ * environment.lifecycle().manage(task);
+ * </pre>
+ *
+ * The listener keeps the task reachable from the registry, so a task that is discarded before the
+ * registry must be stopped (or managed by the lifecycle, which stops it with the application).
+ */
+public class MetricsCheckTask extends NagiosCheckTask implements Managed {
+
+    private final MetricRegistry registry;
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<Rule>();
+
+    private final ConcurrentNavigableMap<String, Selected> selected = new ConcurrentSkipListMap<String, Selected>();
+
+    private final SelectionListener listener = new SelectionListener();
+
+    // Guarded by this.
+    private boolean listening;
+
+    /**
+     * Create a task without rules; add them with {@link #addRule(String, Threshold, Threshold)}.
+     * @param name Name of the task.
+     * @param registry Registry to select metrics from.
+     */
+    public MetricsCheckTask(String name, MetricRegistry registry) {
+
+        super(name);
+
+        this.registry = registry;
+
+        registry.addListener(listener);
+
+        listening = true;
+    }
+
+    /**
+     * Listen to the registry again after {@link #stop()}, selecting the metrics it holds now.
+     * The task listens from construction, so starting it is only needed after stopping it.
+     */
+    @Override
+    public synchronized void start() {
+
+        if (listening) return;
+
+        selected.clear();
+
+        // Also notifies the listener of the metrics already registered.
+        registry.addListener(listener);
+
+        listening = true;
+    }
+
+    /**
+     * Stop listening to the registry, so that the task can be discarded.  The metrics selected so
+     * far are still checked, but metrics registered or removed meanwhile are not noticed.
+     */
+    @Override
+    public synchronized void stop() {
+
+        if (!listening) return;
+
+        registry.removeListener(listener);
+
+        listening = false;
+    }
+
+    /**
+     * Check the metrics whose names match the regular expression.
+     * @param regex Regular expression the whole name must match.
+     * @param warning Warning threshold, or null for none.
+     * @param critical Critical threshold, or null for none.
+     * @return this.
+     */
+    public MetricsCheckTask addRule(String regex, Threshold warning, Threshold critical) {
+
+        return addRule(Pattern.compile(regex), warning, critical);
+    }
+
+    /**
+     * Check the metrics whose names match the pattern.
+     * @param pattern Pattern the whole name must match.
+     * @param warning Warning threshold, or null for none.
+     * @param critical Critical threshold, or null for none.
+     * @return this.
+     */
+    public MetricsCheckTask addRule(Pattern pattern, Threshold warning, Threshold critical) {
+
+        rules.add(new Rule(pattern, warning, critical));
+
+        // Metrics registered before the rule was added; later ones are matched by the listener.
+        for (Map.Entry<String, Metric> metric : registry.getMetrics().entrySet()) {
+
+            select(metric.getKey(), metric.getValue());
+        }
+
+        return this;
+    }
+
+    /**
+     * Names of the metrics the rules currently select.
+     * @return Selected names, in order.
+     */
+    public List<String> getSelectedMetrics() {
+
+        return new ArrayList<String>(selected.keySet());
+    }
+
+    /**
+     * Evaluate every selected metric against the thresholds of its rule.
+     * @param requestParameters Query or Form parameters submitted to the HTTP servlet (unused).
+     * @return The worst level of all metrics, with every metric as perf data.
+     */
+    @Override
+    public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+        if (selected.isEmpty()) {
+
+            return new MessagePayloadBuilder()
+                    .withLevel(Level.UNKNOWN)
+                    .withMessage("No metrics match the rules of " + getName())
+                    .build();
+        }
+
+        Level worst = Level.OK;
+
+        List<PerfDatum> perfData = new ArrayList<PerfDatum>(selected.size());
+
+        StringBuilder alerts = new StringBuilder();
+
+        int alerting = 0;
+
+        for (Selected metric : selected.values()) {
+
+            Level level = metric.read(perfData);
+
+            if (level != Level.OK) {
+
+                alerts.append(alerting++ == 0 ? ": " : ", ").append(metric.label).append(' ').append(level.name());
+
+                worst = Level.worst(worst, level);
+            }
+        }
+
+        String message = alerting == 0
+                ? String.format("%d metrics OK", perfData.size())
+                : String.format("%d of %d metrics alerting", alerting, perfData.size()) + alerts;
+
+        return new MessagePayloadBuilder()
+                .withLevel(worst)
+                .withMessage(message)
+                .withPerfData(perfData)
+                .build();
+    }
+
+    private void select(String name, Metric metric) {
+
+        if (selected.containsKey(name)) return;
+
+        for (Rule rule : rules) {
+
+            if (rule.pattern.matcher(name).matches()) {
+
+                selected.putIfAbsent(name, new Selected(name, metric, rule));
+
+                return;
+            }
+        }
+    }
+
+    private static final class Rule {
+
+        final Pattern pattern;
+
+        final Threshold warning;
+
+        final Threshold critical;
+
+        Rule(Pattern pattern, Threshold warning, Threshold critical) {
+
+            this.pattern = pattern;
+            this.warning = warning;
+            this.critical = critical;
+        }
+    }
+
+    /**
+     * A metric selected by a rule.
+     */
+    private static final class Selected {
+
+        final Metric metric;
+
+        final Rule rule;
+
+        // Label of the perf datum; the name of the metric plus the statistic read from it.
+        final String label;
+
+        Selected(String name, Metric metric, Rule rule) {
+
+            this.metric = metric;
+            this.rule = rule;
+
+            if (metric instanceof Timer || metric instanceof Histogram) this.label = name + ".p99";
+            else if (metric instanceof Meter) this.label = name + ".m1_rate";
+            else this.label = name;
+        }
+
+        /**
+         * Add the perf datum of the metric to the list, and evaluate it.
+         */
+        Level read(List<PerfDatum> perfData) {
+
+            PerfDatum.PerfDatumBuilder builder;
+
+            double value;
+
+            if (metric instanceof Timer) {
+
+                value = Conversion.nsToS((long) ((Timer) metric).getSnapshot().get99thPercentile());
+
+                builder = PerfDatum.builder(label, value).uom(PerfDatum.UOM.Seconds);
+
+            } else if (metric instanceof Histogram) {
+
+                value = ((Histogram) metric).getSnapshot().get99thPercentile();
+
+                builder = PerfDatum.builder(label, value);
+
+            } else if (metric instanceof Meter) {
+
+                value = ((Meter) metric).getOneMinuteRate();
+
+                builder = PerfDatum.builder(label, value);
+
+            } else if (metric instanceof Counter) {
+
+                long count = ((Counter) metric).getCount();
+
+                value = count;
+
+                builder = PerfDatum.builder(label, count).uom(PerfDatum.UOM.Counter);
+
+            } else {
+
+                Object gaugeValue = metric instanceof Gauge ? ((Gauge<?>) metric).getValue() : null;
+
+                if (isIntegral(gaugeValue)) {
+
+                    long longValue = ((Number) gaugeValue).longValue();
+
+                    value = longValue;
+
+                    builder = PerfDatum.builder(label, longValue);
+
+                } else if (gaugeValue instanceof Number) {
+
+                    value = ((Number) gaugeValue).doubleValue();
+
+                    builder = PerfDatum.builder(label, value);
+
+                } else {
+
+                    // Not a number; "U" is Nagios' notation for an undetermined value.
+                    perfData.add(PerfDatum.builder(label, (Object) "U").criteria(rule.warning, rule.critical).build());
+
+                    return Level.UNKNOWN;
+                }
+            }
+
+            perfData.add(builder.criteria(rule.warning, rule.critical).build());
+
+            return Level.evaluate(value, rule.warning, rule.critical);
+        }
+
+        private static boolean isIntegral(Object value) {
+
+            return value instanceof Integer || value instanceof Long || value instanceof Short
+                    || value instanceof Byte || value instanceof AtomicInteger || value instanceof AtomicLong
+                    || value instanceof BigInteger;
+        }
+    }
+
+    /**
+     * Matches metrics against the rules as they are added to and removed from the registry.
+     */
+    private class SelectionListener extends MetricRegistryListener.Base {
+
+        @Override
+        public void onGaugeAdded(String name, Gauge<?> gauge) {
+            select(name, gauge);
+        }
+
+        @Override
+        public void onGaugeRemoved(String name) {
+            selected.remove(name);
+        }
+
+        @Override
+        public void onCounterAdded(String name, Counter counter) {
+            select(name, counter);
+        }
+
+        @Override
+        public void onCounterRemoved(String name) {
+            selected.remove(name);
+        }
+
+        @Override
+        public void onHistogramAdded(String name, Histogram histogram) {
+            select(name, histogram);
+        }
+
+        @Override
+        public void onHistogramRemoved(String name) {
+            selected.remove(name);
+        }
+
+        @Override
+        public void onMeterAdded(String name, Meter meter) {
+            select(name, meter);
+        }
+
+        @Override
+        public void onMeterRemoved(String name) {
+            selected.remove(name);
+        }
+
+        @Override
+        public void onTimerAdded(String name, Timer timer) {
+            select(name, timer);
+        }
+
+        @Override
+        public void onTimerRemoved(String name) {
+            selected.remove(name);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes many {@link NagiosCheckTask}s in parallel and returns all of their results in one
+ * response, so a poller needs a single HTTP round trip per host instead of one per check.
+ *
+ * Checks are selected from a {@link NagiosCheckRegistry} by name ({@code checks=db,queue}) and/or
+ * by tag ({@code tag=storage}); without a selection, all registered checks are executed.  Any other
+ * parameters are passed on to every check.  Checks are executed in parallel, except that a check
+ * starts once the selected checks it depends on (see {@link NagiosCheckTask#setDependencies}) have
+ * completed, and is skipped if one of them is CRITICAL; independent branches run side by side.
+ * Dependencies are checked without parameters, so their results in the batch are only reused when
+ * the batch has no parameters to pass on.  The text output is compatible with Nagios' check_multi,
+ * and reports the worst level of all checks (see {@link Level#worst(Level, Level)}); {@code o=json}
+ * returns a JSON document instead.
+ */
+public class NagiosBatchTask extends Task {
+
+    /**
+     * Name of the task if none is supplied.
+     */
+    public static final String DEFAULT_NAME = "nagios-batch";
+
+    /**
+     * Parameter selecting checks by name (comma-separated or repeated).
+     */
+    public static final String CHECKS_PARAMETER = "checks";
+
+    /**
+     * Parameter selecting checks by tag (comma-separated or repeated).
+     */
+    public static final String TAG_PARAMETER = "tag";
+
+    private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private final NagiosCheckRegistry registry;
+
+    private final ListeningExecutorService executor;
+
+    /**
+     * Execute checks from the registry on an unbounded pool of daemon threads.
+     * @param registry Registry to select checks from.
+     */
+    public NagiosBatchTask(NagiosCheckRegistry registry) {
+
+        this(DEFAULT_NAME, registry, Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-batch-%d").build()));
+    }
+
+    /**
+     * Execute checks from the registry on the supplied executor.
+     * @param name Name of the task.
+     * @param registry Registry to select checks from.
+     * @param executor Executes the selected checks in parallel.
+     */
+    public NagiosBatchTask(String name, NagiosCheckRegistry registry, ExecutorService executor) {
+
+        super(name);
+
+        this.registry = registry;
+        this.executor = MoreExecutors.listeningDecorator(executor);
+    }
+
+    /**
+     * Execute the selected checks and print their results to the output buffer.
+     * @param requestParameters Request parameters.
+     * @param pw Output buffer.
+     * @throws Exception Should not be thrown unless the Dropwizard supplied PrintWriter errors.
+     */
+    @Override
+    public void execute(ImmutableMultimap<String, String> requestParameters, PrintWriter pw) throws Exception {
+
+        Map<String, CheckResult> results = checkAll(requestParameters);
+
+        Optional<String> output = NagiosCheckTask.getParameter(requestParameters, "o");
+
+        if (output.isPresent() && output.get().equalsIgnoreCase("json")) {
+
+            writeJson(results, pw);
+
+        } else {
+
+            writeCheckMulti(results, pw);
+        }
+    }
+
+    /**
+     * Execute the checks selected by the request parameters in parallel, each after the selected
+     * checks it depends on.
+     * @param requestParameters Request parameters; those not used for selection are passed on to the checks.
+     * @return Result of every selected check, by name.  Unknown names are reported as UNKNOWN.
+     */
+    public Map<String, CheckResult> checkAll(ImmutableMultimap<String, String> requestParameters) {
+
+        ImmutableMultimap<String, String> checkParameters = checkParameters(requestParameters);
+
+        Map<String, Optional<NagiosCheckTask>> selected = select(requestParameters);
+
+        List<NagiosCheckTask> tasks = new ArrayList<NagiosCheckTask>(selected.size());
+
+        for (Optional<NagiosCheckTask> task : selected.values()) {
+
+            if (task.isPresent()) tasks.add(task.get());
+        }
+
+        Batch batch = new Batch(tasks, checkParameters);
+
+        Map<String, Future<CheckResult>> futures = new LinkedHashMap<String, Future<CheckResult>>();
+
+        for (Map.Entry<String, Optional<NagiosCheckTask>> task : selected.entrySet()) {
+
+            futures.put(task.getKey(), task.getValue().isPresent() ? batch.schedule(task.getValue().get()) : null);
+        }
+
+        Map<String, CheckResult> results = new LinkedHashMap<String, CheckResult>();
+
+        for (Map.Entry<String, Future<CheckResult>> future : futures.entrySet()) {
+
+            results.put(future.getKey(), await(future.getKey(), future.getValue()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Schedules the checks of one request, each once the selected checks it depends on completed.
+     */
+    private final class Batch {
+
+        private final List<NagiosCheckTask> tasks;
+
+        private final ImmutableMultimap<String, String> checkParameters;
+
+        // Results of dependencies checked without parameters, which dependents use instead of
+        // checking them again; results of the batch's own checks are only added if they are too.
+        private final Map<NagiosCheckTask, CheckResult> results = new ConcurrentHashMap<NagiosCheckTask, CheckResult>();
+
+        // Only used by the requesting thread.
+        private final Map<NagiosCheckTask, ListenableFuture<CheckResult>> scheduled =
+                new HashMap<NagiosCheckTask, ListenableFuture<CheckResult>>();
+
+        Batch(List<NagiosCheckTask> tasks, ImmutableMultimap<String, String> checkParameters) {
+
+            this.tasks = tasks;
+            this.checkParameters = checkParameters;
+        }
+
+        ListenableFuture<CheckResult> schedule(final NagiosCheckTask task) {
+
+            ListenableFuture<CheckResult> future = scheduled.get(task);
+
+            if (future != null) return future;
+
+            List<ListenableFuture<CheckResult>> upstream = new ArrayList<ListenableFuture<CheckResult>>();
+
+            if (!task.getDependencies().isEmpty()) {
+
+                for (NagiosCheckTask other : tasks) {
+
+                    if (task.dependsOn(other)) upstream.add(schedule(other));
+                }
+            }
+
+            Callable<CheckResult> check = new Callable<CheckResult>() {
+
+                @Override
+                public CheckResult call() {
+
+                    CheckResult result = task.check(checkParameters, results);
+
+                    if (checkParameters.isEmpty()) results.put(task, result);
+
+                    return result;
+                }
+            };
+
+            future = upstream.isEmpty()
+                    ? executor.submit(check)
+                    : Futures.whenAllComplete(upstream).call(check, executor);
+
+            scheduled.put(task, future);
+
+            return future;
+        }
+    }
+
+    private Map<String, Optional<NagiosCheckTask>> select(ImmutableMultimap<String, String> requestParameters) {
+
+        Map<String, Optional<NagiosCheckTask>> selected = new LinkedHashMap<String, Optional<NagiosCheckTask>>();
+
+        List<String> names = split(requestParameters.get(CHECKS_PARAMETER));
+        List<String> tags = split(requestParameters.get(TAG_PARAMETER));
+
+        for (String name : names) {
+
+            selected.put(name, registry.get(name));
+        }
+
+        for (String tag : tags) {
+
+            for (NagiosCheckTask task : registry.getTasksTagged(tag)) {
+
+                selected.put(task.getName(), Optional.of(task));
+            }
+        }
+
+        if (names.isEmpty() && tags.isEmpty()) {
+
+            for (NagiosCheckTask task : registry.getTasks()) {
+
+                selected.put(task.getName(), Optional.of(task));
+            }
+        }
+
+        return selected;
+    }
+
+    private static List<String> split(Collection<String> values) {
+
+        List<String> split = new ArrayList<String>();
+
+        for (String value : values) {
+
+            for (String item : LIST_SPLITTER.split(value)) split.add(item);
+        }
+
+        return split;
+    }
+
+    private static ImmutableMultimap<String, String> checkParameters(ImmutableMultimap<String, String> requestParameters) {
+
+        ImmutableMultimap.Builder<String, String> checkParameters = ImmutableMultimap.builder();
+
+        for (Map.Entry<String, String> parameter : requestParameters.entries()) {
+
+            if (!parameter.getKey().equals(CHECKS_PARAMETER) && !parameter.getKey().equals(TAG_PARAMETER)) {
+
+                checkParameters.put(parameter);
+            }
+        }
+
+        return checkParameters.build();
+    }
+
+    private static CheckResult await(String name, Future<CheckResult> future) {
+
+        if (future == null) {
+
+            return new CheckResult(new MessagePayloadBuilder()
+                    .withLevel(Level.UNKNOWN)
+                    .withMessage(String.format("No check named '%s' is registered", name))
+                    .build());
+        }
+
+        try {
+
+            return Uninterruptibles.getUninterruptibly(future);
+
+        } catch (ExecutionException e) {
+
+            return new CheckResult(new MessagePayloadBuilder()
+                    .withLevel(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_ERROR)
+                    .withMessage(e.getCause().getMessage())
+                    .build());
+        }
+    }
+
+    private static Level worstLevel(Map<String, CheckResult> results) {
+
+        Level worst = Level.OK;
+
+        for (CheckResult result : results.values()) {
+
+            worst = Level.worst(worst, result.getPayload().getLevel());
+        }
+
+        return worst;
+    }
+
+    private void writeJson(Map<String, CheckResult> results, PrintWriter pw) throws IOException {
+
+        JsonGenerator gen = JsonOutput.createGenerator(pw);
+
+        gen.writeStartObject();
+        gen.writeStringField("level", worstLevel(results).name());
+        gen.writeObjectFieldStart("checks");
+
+        for (Map.Entry<String, CheckResult> result : results.entrySet()) {
+
+            gen.writeFieldName(result.getKey());
+
+            JsonOutput.write(result.getValue(), gen);
+        }
+
+        gen.writeEndObject();
+        gen.writeEndObject();
+        gen.close();
+    }
+
+    private void writeCheckMulti(Map<String, CheckResult> results, PrintWriter pw) throws IOException {
+
+        int[] counts = new int[Level.values().length];
+
+        for (CheckResult result : results.values()) {
+
+            counts[result.getPayload().getLevel().ordinal()]++;
+        }
+
+        // Summary line, with the perf data of every check labelled check_multi style.
+        pw.append(worstLevel(results).name()).append(" - ");
+        PluginOutput.appendLong(pw, results.size());
+        pw.append(" checks, ");
+        PluginOutput.appendLong(pw, counts[Level.CRITICAL.ordinal()]);
+        pw.append(" critical, ");
+        PluginOutput.appendLong(pw, counts[Level.WARNING.ordinal()]);
+        pw.append(" warning, ");
+        PluginOutput.appendLong(pw, counts[Level.UNKNOWN.ordinal()]);
+        pw.append(" unknown, ");
+        PluginOutput.appendLong(pw, counts[Level.OK.ordinal()]);
+        pw.append(" ok | check_multi::check_multi::plugins=");
+        PluginOutput.appendLong(pw, results.size());
+
+        for (Map.Entry<String, CheckResult> result : results.entrySet()) {
+
+            for (PerfDatum datum : result.getValue().getPayload().getPerfData()) {
+
+                pw.append(' ').append(result.getKey()).append("::").append(result.getKey()).append("::");
+
+                datum.appendTo(pw);
+            }
+        }
+
+        pw.append('\n');
+
+        // Long output:  one line per check.
+        int i = 0;
+
+        for (Map.Entry<String, CheckResult> result : results.entrySet()) {
+
+            MessagePayload mp = result.getValue().getPayload();
+
+            String message = String.valueOf(mp.getBaseMessage()).replace('\n', ' ');
+
+            pw.append('[');
+
+            if (++i < 10) pw.append(' ');
+
+            PluginOutput.appendLong(pw, i);
+            pw.append("] ").append(result.getKey()).append(' ').append(mp.getLevel().name()).append(" - ");
+            PluginOutput.appendText(pw, message, 0, message.length());
+            pw.append('\n');
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The set of {@link NagiosCheckTask}s known to the application, by name.  Components that work on
+ * several checks at once (like {@link NagiosBatchTask}) select their checks from the registry.
+ */
+public class NagiosCheckRegistry {
+
+    private final ConcurrentNavigableMap<String, NagiosCheckTask> tasks =
+            new ConcurrentSkipListMap<String, NagiosCheckTask>();
+
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * Create a registry that leaves the metrics of its tasks alone.
+     */
+    public NagiosCheckRegistry() {
+
+        this(null);
+    }
+
+    /**
+     * Create a registry that records the executions of every task added to it (see {@link CheckMetrics}).
+     * @param metricRegistry Registry to record in, e.g. {@code environment.metrics()}; null to not record.
+     */
+    public NagiosCheckRegistry(MetricRegistry metricRegistry) {
+
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * Add a task to the registry.
+     * @param task Task to add.
+     * @throws IllegalStateException if another task with the same name is registered.
+     */
+    public void register(NagiosCheckTask task) {
+
+        Preconditions.checkState(
+                tasks.putIfAbsent(task.getName(), task) == null, "A check named '%s' is already registered", task.getName());
+
+        if (metricRegistry != null) task.setMetricRegistry(metricRegistry);
+    }
+
+    /**
+     * Remove the task with the given name from the registry.
+     * @param name Name of the task.
+     */
+    public void unregister(String name) {
+
+        tasks.remove(name);
+    }
+
+    /**
+     * Find a task by name.
+     * @param name Name of the task.
+     * @return The task, if registered.
+     */
+    public Optional<NagiosCheckTask> get(String name) {
+
+        return Optional.fromNullable(tasks.get(name));
+    }
+
+    /**
+     * All registered tasks, ordered by name.
+     * @return Registered tasks.
+     */
+    public ImmutableList<NagiosCheckTask> getTasks() {
+
+        return ImmutableList.copyOf(tasks.values());
+    }
+
+    /**
+     * Registered tasks carrying the given tag, ordered by name.
+     * @param tag Tag to select.
+     * @return Tagged tasks.
+     */
+    public ImmutableList<NagiosCheckTask> getTasksTagged(String tag) {
+
+        ImmutableList.Builder<NagiosCheckTask> tagged = ImmutableList.builder();
+
+        for (NagiosCheckTask task : tasks.values()) {
+
+            if (task.getTags().contains(tag)) tagged.add(task);
+        }
+
+        return tagged.build();
+    }
+}
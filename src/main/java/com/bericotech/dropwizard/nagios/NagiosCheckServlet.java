@@ -0,0 +1,277 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Serves the checks of a {@link NagiosCheckRegistry} over GET (and POST, for {@code check_url.py}),
+ * without going through Dropwizard's task servlet:
+ *
+ * <pre>
+ * environment.admin().addServlet("nagios", new NagiosCheckServlet(checks)).addMapping("/nagios/*");
+ *
+ * GET /nagios/disk?min=10          plugin output, like the task
+ * GET /nagios/disk?o=json          JSON, like the task
+ * </pre>
+ *
+ * Responses are written to the output stream as encoded bytes.  As long as the task returns the
+ * same result (from a {@link CheckResultCache} or {@link CheckScheduler}), the bytes encoded for it
+ * are reused.  Every response carries a weak {@code ETag} derived from the level, message and perf
+ * data, so pollers sending {@code If-None-Match} get a {@code 304 Not Modified} without a body while
+ * the result is unchanged.  Unknown checks are answered with 404 and an UNKNOWN result.
+ *
+ * If the servlet is registered with async support ({@code setAsyncSupported(true)}), an
+ * {@link AsyncNagiosCheckTask} is served asynchronously:  no container thread is held while its
+ * probe is in flight.  The request doesn't time out on its own, so give such tasks a timeout.
+ */
+public class NagiosCheckServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(NagiosCheckServlet.class);
+
+    private static final String TEXT_CONTENT_TYPE = "text/plain;charset=UTF-8";
+
+    private static final String JSON_CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private static final Splitter ETAG_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private final transient NagiosCheckRegistry registry;
+
+    // Latest encoding per check and parameters, reused while the task returns the same result.
+    private final transient Cache<CheckKey, Encoded> textResponses;
+
+    private final transient Cache<CheckKey, Encoded> jsonResponses;
+
+    /**
+     * Serve the checks of the registry, keeping the encodings of up to
+     * {@link CheckResultCache#DEFAULT_MAXIMUM_SIZE} results per format.
+     * @param registry Registry to serve checks from.
+     */
+    public NagiosCheckServlet(NagiosCheckRegistry registry) {
+
+        this.registry = registry;
+        this.textResponses = CacheBuilder.newBuilder().maximumSize(CheckResultCache.DEFAULT_MAXIMUM_SIZE).build();
+        this.jsonResponses = CacheBuilder.newBuilder().maximumSize(CheckResultCache.DEFAULT_MAXIMUM_SIZE).build();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        String name = request.getPathInfo() == null ? "" : request.getPathInfo().substring(1);
+
+        Optional<NagiosCheckTask> task = registry.get(name);
+
+        if (!task.isPresent()) {
+
+            byte[] body = String.format("UNKNOWN - No check named %s\n", name).getBytes(Charsets.UTF_8);
+
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setContentType(TEXT_CONTENT_TYPE);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+
+            return;
+        }
+
+        ImmutableMultimap<String, String> parameters = parameters(request);
+
+        Optional<String> output = NagiosCheckTask.getParameter(parameters, "o");
+
+        boolean json = output.isPresent() && output.get().equalsIgnoreCase("json");
+
+        if (task.get() instanceof AsyncNagiosCheckTask && request.isAsyncSupported()) {
+
+            respondAsync(request, (AsyncNagiosCheckTask) task.get(), parameters, json);
+
+            return;
+        }
+
+        respond(request, response, encode(task.get(), parameters, json, task.get().check(parameters)));
+    }
+
+    private void respondAsync(HttpServletRequest request, final AsyncNagiosCheckTask task,
+                              final ImmutableMultimap<String, String> parameters, final boolean json) {
+
+        final AsyncContext async = request.startAsync();
+
+        async.setTimeout(0);
+
+        final ListenableFuture<CheckResult> result = task.checkAsync(parameters);
+
+        result.addListener(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    respond((HttpServletRequest) async.getRequest(), (HttpServletResponse) async.getResponse(),
+                            encode(task, parameters, json, Futures.getUnchecked(result)));
+
+                } catch (IOException | RuntimeException e) {
+
+                    LOG.debug("Could not respond with the result of {}", task.getName(), e);
+
+                } finally {
+
+                    async.complete();
+                }
+            }
+
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static void respond(HttpServletRequest request, HttpServletResponse response, Encoded encoded)
+            throws IOException {
+
+        response.setHeader("ETag", encoded.etag);
+        response.setHeader("Cache-Control", "no-cache");
+
+        if (matches(request.getHeader("If-None-Match"), encoded.etag)) {
+
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            return;
+        }
+
+        byte[] body = encoded.body();
+
+        response.setContentType(encoded.json ? JSON_CONTENT_TYPE : TEXT_CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        doGet(request, response);
+    }
+
+    private Encoded encode(NagiosCheckTask task, ImmutableMultimap<String, String> parameters, boolean json,
+                           CheckResult result) throws IOException {
+
+        CheckKey key = CheckKey.of(task.getName(), parameters);
+
+        Cache<CheckKey, Encoded> responses = json ? jsonResponses : textResponses;
+
+        Encoded encoded = responses.getIfPresent(key);
+
+        if (encoded != null && encoded.result == result) return encoded;
+
+        // Like the task, JSON of stored results carries their age.
+        encoded = new Encoded(result, json, task.getResultStore() != null);
+
+        responses.put(key, encoded);
+
+        return encoded;
+    }
+
+    private static ImmutableMultimap<String, String> parameters(HttpServletRequest request) {
+
+        Map<String, String[]> parameterMap = request.getParameterMap();
+
+        if (parameterMap.isEmpty()) return ImmutableMultimap.of();
+
+        ImmutableMultimap.Builder<String, String> parameters = ImmutableMultimap.builder();
+
+        for (Map.Entry<String, String[]> parameter : parameterMap.entrySet()) {
+
+            parameters.putAll(parameter.getKey(), parameter.getValue());
+        }
+
+        return parameters.build();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+
+        if (ifNoneMatch == null) return false;
+
+        for (String candidate : ETAG_SPLITTER.split(ifNoneMatch)) {
+
+            // Weak comparison, as the ETags are weak.
+            if (candidate.equals("*") || candidate.equals(etag) || ("W/" + candidate).equals(etag)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * A result encoded in one format.
+     */
+    private static final class Encoded {
+
+        final CheckResult result;
+
+        final boolean json;
+
+        final String etag;
+
+        // Null for JSON of stored results, whose age changes with every request.
+        private final byte[] body;
+
+        Encoded(CheckResult result, boolean json, boolean withAge) throws IOException {
+
+            byte[] text = encodeText(result);
+
+            this.result = result;
+            this.json = json;
+
+            // The text covers level, message, perf data and staleness, but not the age.
+            this.etag = "W/\"" + Hashing.murmur3_128().hashBytes(text) + (json ? "-json" : "") + "\"";
+
+            this.body = !json ? text : withAge ? null : encodeJson(result, false);
+        }
+
+        byte[] body() throws IOException {
+
+            return body != null ? body : encodeJson(result, true);
+        }
+
+        private static byte[] encodeText(CheckResult result) throws IOException {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+
+            Writer out = new OutputStreamWriter(bytes, Charsets.UTF_8);
+
+            PluginOutput.write(result, out);
+
+            out.flush();
+
+            return bytes.toByteArray();
+        }
+
+        private static byte[] encodeJson(CheckResult result, boolean withAge) throws IOException {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+            Writer out = new OutputStreamWriter(bytes, Charsets.UTF_8);
+
+            if (withAge) JsonOutput.write(result, out); else JsonOutput.write(result.getPayload(), out);
+
+            out.flush();
+
+            return bytes.toByteArray();
+        }
+    }
+}
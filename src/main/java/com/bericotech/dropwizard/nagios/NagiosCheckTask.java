@@ -1,10 +1,21 @@
 package com.bericotech.dropwizard.nagios;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import io.dropwizard.servlets.tasks.Task;
 import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Represents a HealthCheck that will be periodically called via HTTP by Nagios/Icinga.
@@ -13,9 +24,6 @@ import java.io.PrintWriter;
  */
 public abstract class NagiosCheckTask extends Task {
 
-    // Jackson ObjectMapper that comes with Dropwizard.
-    private static ObjectMapper om = new ObjectMapper();
-
     /**
      * If an error occurs during the execution of a task, this is the assumed
      * outcome of the check (by default, it's assumed to be an error, and therefore
@@ -23,6 +31,59 @@ public abstract class NagiosCheckTask extends Task {
      */
     public static Level DEFAULT_LEVEL_FOR_TASK_ERROR = Level.CRITICAL;
 
+    /**
+     * If a task does not complete within its timeout, this is the assumed
+     * outcome of the check (by default, a CRITICAL outcome).
+     */
+    public static Level DEFAULT_LEVEL_FOR_TASK_TIMEOUT = Level.CRITICAL;
+
+    /**
+     * If a {@link CheckBulkhead} rejects the execution of a task, this is the assumed
+     * outcome of the check (by default, an UNKNOWN outcome).
+     */
+    public static Level DEFAULT_LEVEL_FOR_TASK_REJECTION = Level.UNKNOWN;
+
+    /**
+     * If a task is skipped because a check it depends on is CRITICAL, this is the
+     * assumed outcome of the check (by default, an UNKNOWN outcome).
+     */
+    public static Level DEFAULT_LEVEL_FOR_SKIPPED_TASK = Level.UNKNOWN;
+
+    /**
+     * Request parameter overriding the timeout of the task, in seconds.
+     */
+    public static final String TIMEOUT_PARAMETER = "timeout";
+
+    // Optional source of stored results; null if every poll should execute the check.
+    private volatile CheckResultStore resultStore;
+
+    // Executions of this task currently in flight, by key.
+    private final SingleFlight<CheckKey, CheckResult> inFlight = new SingleFlight<CheckKey, CheckResult>();
+
+    private volatile boolean coalescingConcurrentChecks = true;
+
+    private volatile ImmutableSet<String> tags = ImmutableSet.of();
+
+    private volatile ImmutableList<NagiosCheckTask> dependencies = ImmutableList.of();
+
+    // Deadline for performCheck; zero to execute it on the polling thread without a deadline.
+    private volatile long timeoutNanos = 0;
+
+    private volatile ExecutorService executor = CheckExecutors.defaultExecutor();
+
+    // Null unless a metric registry was supplied.
+    private volatile CheckMetrics metrics;
+
+    // Null if executions are not limited.
+    private volatile CheckBulkhead bulkhead;
+
+    private volatile CheckBulkhead.Priority priority = CheckBulkhead.Priority.NORMAL;
+
+    private volatile CheckCircuitBreaker circuitBreaker;
+
+    // Set while a CheckWarmup warms the task up; polls meanwhile report that instead of executing the check.
+    private volatile CheckWarmup warmup;
+
     /**
      * Instantiate with the desired name for the task.
      * @param name Name of the task.
@@ -41,7 +102,8 @@ public abstract class NagiosCheckTask extends Task {
 
     /**
      * This is called by the Dropwizard runtime; basically, it executes the performCheck method, catching any exceptions
-     * that may arise, and printing the results to the output buffer.
+     * that may arise, and printing the results to the output buffer (as Nagios plugin output, see {@link PluginOutput},
+     * or as JSON if the "o" parameter is "json").
      * @param requestParameters Request parameters.
      * @param pw Output buffer.
      * @throws Exception Should not be thrown unless the Dropwizard supplied PrintWriter errors.
@@ -50,33 +112,670 @@ public abstract class NagiosCheckTask extends Task {
     public void execute(
             ImmutableMultimap<String, String> requestParameters, PrintWriter pw) throws Exception {
 
-        MessagePayload mp = null;
+        CheckResult result = check(requestParameters);
+
+        MessagePayload mp = result.getPayload();
+
+        Optional<String> output = getParameter(requestParameters, "o");
+
+        // If the requestor desires JSON...
+        if (output.isPresent() && output.get().equalsIgnoreCase("json")){
+
+            // Stored results may be older than this request; if so, tell the poller how old.
+            if (resultStore == null) JsonOutput.write(mp, pw); else JsonOutput.write(result, pw);
+
+        } else {
+
+            PluginOutput.write(result, pw);
+        }
+    }
+
+    /**
+     * Obtain the result of the check for the supplied parameters, either from the result store
+     * (if one is configured) or by executing the check.  If a check the task depends on (directly or
+     * transitively) is CRITICAL, the check is skipped instead (see {@link #setDependencies}).
+     * @param requestParameters Query or Form parameters submitted to the HTTP servlet.
+     * @return Result of the check; errors are reported as a {@link #DEFAULT_LEVEL_FOR_TASK_ERROR} payload.
+     */
+    public CheckResult check(final ImmutableMultimap<String, String> requestParameters) {
+
+        if (dependencies.isEmpty()) return checkIgnoringDependencies(requestParameters);
+
+        return check(requestParameters, new ConcurrentHashMap<NagiosCheckTask, CheckResult>());
+    }
+
+    /**
+     * Obtain the result of the check, reusing results of dependencies that are already known.
+     * @param requestParameters Request parameters.
+     * @param dependencyResults Known results of checks by task; results of dependencies that have
+     *                          to be obtained are added.
+     * @return Result of the check, or a {@link #DEFAULT_LEVEL_FOR_SKIPPED_TASK} result if it was skipped.
+     */
+    CheckResult check(final ImmutableMultimap<String, String> requestParameters,
+                      Map<NagiosCheckTask, CheckResult> dependencyResults) {
+
+        Optional<String> failing = getFailingDependency(dependencyResults);
+
+        if (failing.isPresent()) return skippedResult(failing.get());
+
+        return checkIgnoringDependencies(requestParameters);
+    }
+
+    private CheckResult checkIgnoringDependencies(final ImmutableMultimap<String, String> requestParameters) {
+
+        CheckWarmup warmup = this.warmup;
+
+        if (warmup != null) return warmup.warmingUpResult(this);
+
+        CheckResultStore store = resultStore;
+
+        final CheckKey key = CheckKey.of(getName(), requestParameters);
+
+        if (store == null) return runCheck(key, requestParameters);
+
+        return store.get(key, new Callable<CheckResult>() {
+
+            @Override
+            public CheckResult call() {
+
+                return runCheck(key, requestParameters);
+            }
+        });
+    }
+
+    /**
+     * Find the first dependency that is CRITICAL, walking the dependencies of dependencies first,
+     * so that the failure furthest upstream is reported.  Dependencies are checked without parameters.
+     * @param dependencyResults Known results of checks by task; results obtained here are added.
+     * @return Name and level of the failing dependency, e.g. "db-primary CRITICAL", if any.
+     */
+    Optional<String> getFailingDependency(Map<NagiosCheckTask, CheckResult> dependencyResults) {
+
+        for (NagiosCheckTask dependency : dependencies) {
+
+            Optional<String> upstream = dependency.getFailingDependency(dependencyResults);
+
+            if (upstream.isPresent()) return upstream;
+
+            CheckResult result = dependencyResults.get(dependency);
+
+            if (result == null) {
+
+                result = dependency.checkIgnoringDependencies(ImmutableMultimap.<String, String>of());
+
+                dependencyResults.put(dependency, result);
+            }
+
+            Level level = result.getPayload().getLevel();
+
+            if (level == Level.CRITICAL) return Optional.of(dependency.getName() + " " + level.name());
+        }
+
+        return Optional.absent();
+    }
+
+    /**
+     * Result of the check when it is skipped because of a failing dependency.
+     * @param failingDependency Name and level of the failing dependency.
+     * @return Skipped result.
+     */
+    CheckResult skippedResult(String failingDependency) {
+
+        return new CheckResult(new MessagePayloadBuilder()
+                .withLevel(DEFAULT_LEVEL_FOR_SKIPPED_TASK)
+                .withMessage("skipped: depends on " + failingDependency)
+                .build());
+    }
+
+    /**
+     * Execute the check, joining an execution with equivalent parameters that is already in flight
+     * (unless coalescing is disabled).  A poll joining an execution waits for it no longer than its
+     * own timeout, and reports {@link #DEFAULT_LEVEL_FOR_TASK_TIMEOUT} (without storing it) if the
+     * execution doesn't complete in time.
+     * @param key Key of the check.
+     * @param requestParameters Request parameters.
+     * @return Fresh result of the check.
+     */
+    CheckResult runCheck(CheckKey key, final ImmutableMultimap<String, String> requestParameters) {
+
+        if (!coalescingConcurrentChecks) return executeCheck(requestParameters);
+
+        long timeout;
 
         try {
 
-            mp = performCheck(requestParameters);
+            timeout = getTimeoutNanos(requestParameters);
 
-        } catch (Throwable t){
+        } catch (NumberFormatException e) {
 
-            mp = new MessagePayloadBuilder()
-                    .withLevel(DEFAULT_LEVEL_FOR_TASK_ERROR).withMessage(t.getMessage()).build();
+            // Reported by executeCheck, if this poll executes the check.
+            timeout = 0;
         }
-        finally {
 
-            Optional<String> output = getParameter(requestParameters, "o");
+        long start = System.nanoTime();
 
-            // If the requestor desires JSON...
-            if (output.isPresent() && output.get().equalsIgnoreCase("json")){
+        try {
+
+            return inFlight.execute(key, new Callable<CheckResult>() {
+
+                @Override
+                public CheckResult call() {
+
+                    return executeCheck(requestParameters);
+                }
+
+            }, timeout);
+
+        } catch (TimeoutException e) {
+
+            return CheckResult.unstorable(timeoutPayload(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Execute the check, converting any error into a payload.  If a bulkhead is set, the check first
+     * waits for a slot, and is reported as {@link #DEFAULT_LEVEL_FOR_TASK_REJECTION} if it doesn't get
+     * one (a result that is not stored).  If a circuit breaker is set and open, the last failure is
+     * reported without executing the check.  If a timeout applies, the check is executed on the task's
+     * executor and interrupted once the deadline passes.
+     * @param requestParameters Request parameters.
+     * @return Fresh result of the check.
+     */
+    CheckResult executeCheck(final ImmutableMultimap<String, String> requestParameters) {
+
+        CheckBulkhead bulkhead = this.bulkhead;
+
+        if (bulkhead == null) return executeGuardedCheck(requestParameters);
+
+        boolean admitted;
+
+        try {
+
+            admitted = bulkhead.acquire(getName(), priority);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            return CheckResult.unstorable(errorPayload(e));
+        }
+
+        // A rejection describes the load at the time of the poll, so it isn't kept by a result store.
+        if (!admitted) {
+
+            CheckMetrics metrics = this.metrics;
+
+            if (metrics != null) metrics.recordRejection();
+
+            return CheckResult.unstorable(rejectionPayload());
+        }
+
+        try {
+
+            return executeGuardedCheck(requestParameters);
+
+        } finally {
+
+            bulkhead.release(getName());
+        }
+    }
+
+    private CheckResult executeGuardedCheck(final ImmutableMultimap<String, String> requestParameters) {
+
+        CheckCircuitBreaker circuitBreaker = this.circuitBreaker;
+
+        if (circuitBreaker == null) return executeMeasuredCheck(requestParameters);
+
+        if (!circuitBreaker.allowExecution()) return new CheckResult(openCircuitPayload(circuitBreaker));
+
+        MessagePayload payload = executeMeasuredCheck(requestParameters).getPayload();
+
+        circuitBreaker.record(payload);
+
+        return new CheckResult(new MessagePayloadBuilder()
+                .withLevel(payload.getLevel())
+                .withMessage(payload.getBaseMessage())
+                .withPerfData(payload.getPerfData())
+                .withPerfData(circuitBreaker.getPerfData())
+                .build());
+    }
+
+    private CheckResult executeMeasuredCheck(final ImmutableMultimap<String, String> requestParameters) {
 
-                om.writeValue(pw, mp);
+        CheckMetrics metrics = this.metrics;
 
-            } else {
+        if (metrics == null) return executeCheckWithTimeout(requestParameters);
 
-                pw.println(mp.getLevel() + " - " + mp.getMessage());
+        long start = System.nanoTime();
+
+        CheckResult result = executeCheckWithTimeout(requestParameters);
+
+        metrics.recordExecution(System.nanoTime() - start, result.getPayload().getLevel());
+
+        return result;
+    }
+
+    private CheckResult executeCheckWithTimeout(final ImmutableMultimap<String, String> requestParameters) {
+
+        return executeWithTimeout(requestParameters, new Callable<MessagePayload>() {
+
+            @Override
+            public MessagePayload call() {
+
+                return performCheckSafely(requestParameters);
+            }
+        });
+    }
+
+    /**
+     * Execute the check once for a {@link CheckWarmup}, without parameters.  The probe is executed
+     * directly, bypassing the bulkhead, circuit breaker, metrics and polls joining an execution, so
+     * that a cold execution doesn't count against the check anywhere; the timeout of the task applies.
+     * @param cold Whether this is the first (cold) execution of the warm-up.
+     * @return Result of the execution, or an error or timeout result.
+     */
+    CheckResult warmUp(final boolean cold) {
+
+        final ImmutableMultimap<String, String> requestParameters = ImmutableMultimap.of();
+
+        return executeWithTimeout(requestParameters, new Callable<MessagePayload>() {
+
+            @Override
+            public MessagePayload call() {
+
+                try {
+
+                    return performWarmUpCheck(requestParameters, cold);
+
+                } catch (Throwable t) {
+
+                    return errorPayload(t);
+                }
             }
+        });
+    }
+
+    /**
+     * Execute the check for a {@link CheckWarmup}.  Tasks recording their executions (e.g. the latency
+     * histogram of a {@link TimedCheckTask}) don't record a cold one.
+     * @param requestParameters Request parameters.
+     * @param cold Whether this is the first (cold) execution of the warm-up.
+     * @return Result of the check.
+     * @throws Throwable Thrown if an error occurred during the execution of the check.
+     */
+    MessagePayload performWarmUpCheck(ImmutableMultimap<String, String> requestParameters, boolean cold) throws Throwable {
+
+        return performCheck(requestParameters);
+    }
+
+    // The probe must not throw; it is executed on the task's executor if a timeout applies.
+    private CheckResult executeWithTimeout(ImmutableMultimap<String, String> requestParameters,
+                                           Callable<MessagePayload> probe) {
+
+        long timeout;
+
+        try {
+
+            timeout = getTimeoutNanos(requestParameters);
+
+        } catch (NumberFormatException e) {
+
+            return new CheckResult(errorPayload(e));
+        }
+
+        if (timeout <= 0) {
+
+            try {
+
+                return new CheckResult(probe.call());
+
+            } catch (Exception e) {
+
+                return new CheckResult(errorPayload(e));
+            }
+        }
+
+        long start = System.nanoTime();
+
+        Future<MessagePayload> future;
+
+        try {
+
+            future = executor.submit(probe);
+
+        } catch (RuntimeException e) {
+
+            return new CheckResult(errorPayload(e));
+        }
+
+        try {
+
+            return new CheckResult(future.get(timeout, TimeUnit.NANOSECONDS));
+
+        } catch (TimeoutException e) {
+
+            future.cancel(true);
+
+            return new CheckResult(timeoutPayload(System.nanoTime() - start));
+
+        } catch (InterruptedException e) {
+
+            future.cancel(true);
+
+            Thread.currentThread().interrupt();
+
+            return new CheckResult(errorPayload(e));
+
+        } catch (ExecutionException e) {
+
+            return new CheckResult(errorPayload(e.getCause()));
+        }
+    }
+
+    private MessagePayload performCheckSafely(ImmutableMultimap<String, String> requestParameters) {
+
+        try {
+
+            return performCheck(requestParameters);
+
+        } catch (Throwable t){
+
+            CheckMetrics metrics = this.metrics;
+
+            if (metrics != null) metrics.recordError();
+
+            return errorPayload(t);
         }
     }
 
+    static MessagePayload errorPayload(Throwable t) {
+
+        return new MessagePayloadBuilder()
+                .withLevel(DEFAULT_LEVEL_FOR_TASK_ERROR).withMessage(t.getMessage()).build();
+    }
+
+    private MessagePayload rejectionPayload() {
+
+        return new MessagePayloadBuilder()
+                .withLevel(DEFAULT_LEVEL_FOR_TASK_REJECTION)
+                .withMessage(String.format("%s rejected: saturated", getName()))
+                .build();
+    }
+
+    private static MessagePayload openCircuitPayload(CheckCircuitBreaker circuitBreaker) {
+
+        MessagePayload lastFailure = circuitBreaker.getLastFailure();
+
+        return new MessagePayloadBuilder()
+                .withLevel(lastFailure.getLevel())
+                .withMessage(lastFailure.getBaseMessage() + " (circuit open)")
+                .withPerfData(lastFailure.getPerfData())
+                .withPerfData(circuitBreaker.getPerfData())
+                .build();
+    }
+
+    MessagePayload timeoutPayload(long elapsedNanos) {
+
+        double timeInSeconds = Conversion.nsToS(elapsedNanos);
+
+        return new MessagePayloadBuilder()
+                .withLevel(DEFAULT_LEVEL_FOR_TASK_TIMEOUT)
+                .withMessage(String.format("%s timed out after %ss;", getName(), timeInSeconds))
+                .withPerfData(PerfDatum.builder("tte", timeInSeconds).build())
+                .build();
+    }
+
+    long getTimeoutNanos(ImmutableMultimap<String, String> requestParameters) {
+
+        Optional<String> timeout = getParameter(requestParameters, TIMEOUT_PARAMETER);
+
+        if (timeout.isPresent()) return Conversion.sToNs(Double.parseDouble(timeout.get()));
+
+        return timeoutNanos;
+    }
+
+    /**
+     * Record executions of the check in the registry (see {@link CheckMetrics} for the metrics).
+     * Results served from a result store are not executions, and are not recorded.
+     * @param registry Registry to record in, or null to stop recording.
+     */
+    public void setMetricRegistry(MetricRegistry registry) {
+
+        this.metrics = registry == null ? null : new CheckMetrics(registry, getName());
+    }
+
+    /**
+     * Metrics of the check, if a registry was supplied.
+     * @return Metrics of the check, or null.
+     */
+    public CheckMetrics getMetrics() {
+
+        return metrics;
+    }
+
+    /**
+     * Interrupt the check and report {@link #DEFAULT_LEVEL_FOR_TASK_TIMEOUT} if it does not complete in time.
+     * Polls may override the timeout with the {@code timeout} parameter (in seconds), e.g. to stay below
+     * the check_timeout of Nagios.  A timeout of zero (the default) disables the deadline.
+     * @param timeout Deadline for the check.
+     * @param unit Unit of the timeout.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Deadline for the check, unless overridden by the poll.
+     * @param unit Unit of the returned timeout.
+     * @return Timeout, or zero if there is none.
+     */
+    public long getTimeout(TimeUnit unit) {
+
+        return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Executor the check runs on when a timeout applies; {@link CheckExecutors#defaultExecutor()} by default.
+     * @param executor Executor for the check.
+     */
+    public void setExecutor(ExecutorService executor) {
+
+        this.executor = executor;
+    }
+
+    /**
+     * Executor the check runs on when a timeout applies.
+     * @return Executor for the check.
+     */
+    public ExecutorService getExecutor() {
+
+        return executor;
+    }
+
+    /**
+     * Limit concurrent executions of the check with a bulkhead, usually shared with other tasks.
+     * Pass null to execute the check without limit (the default).
+     * @param bulkhead Bulkhead, or null.
+     */
+    public void setBulkhead(CheckBulkhead bulkhead) {
+
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * The bulkhead limiting executions of the check, if any.
+     * @return Bulkhead, or null.
+     */
+    public CheckBulkhead getBulkhead() {
+
+        return bulkhead;
+    }
+
+    /**
+     * Lane of the check in the queue of its bulkhead; {@link CheckBulkhead.Priority#NORMAL} by default.
+     * @param priority Priority of the check.
+     */
+    public void setPriority(CheckBulkhead.Priority priority) {
+
+        this.priority = priority;
+    }
+
+    /**
+     * Lane of the check in the queue of its bulkhead.
+     * @return Priority of the check.
+     */
+    public CheckBulkhead.Priority getPriority() {
+
+        return priority;
+    }
+
+    /**
+     * Whether concurrent polls with equivalent parameters share a single execution of the check
+     * (the default), instead of each executing the check.
+     * @param coalescingConcurrentChecks true to share executions.
+     */
+    public void setCoalescingConcurrentChecks(boolean coalescingConcurrentChecks) {
+
+        this.coalescingConcurrentChecks = coalescingConcurrentChecks;
+    }
+
+    /**
+     * Whether concurrent polls with equivalent parameters share a single execution of the check.
+     * @return true if executions are shared.
+     */
+    public boolean isCoalescingConcurrentChecks() {
+
+        return coalescingConcurrentChecks;
+    }
+
+    /**
+     * Number of polls that joined an execution already in flight instead of executing the check.
+     * @return Count of coalesced polls.
+     */
+    public long getCoalescedCheckCount() {
+
+        return inFlight.getCoalescedCount();
+    }
+
+    /**
+     * Serve results from the supplied store (e.g. a {@link CheckResultCache} or a {@link CheckScheduler})
+     * instead of executing the check on every poll.  Pass null to execute the check on every poll (the default).
+     * @param resultStore Store of results.
+     */
+    public void setResultStore(CheckResultStore resultStore) {
+
+        this.resultStore = resultStore;
+    }
+
+    /**
+     * The store results are served from, if any.
+     * @return Result store, or null if every poll executes the check.
+     */
+    public CheckResultStore getResultStore() {
+
+        return resultStore;
+    }
+
+    /**
+     * Mark the task as being warmed up, or as warm.
+     * @param warmup Warm-up in progress, or null.
+     */
+    void setWarmup(CheckWarmup warmup) {
+
+        this.warmup = warmup;
+    }
+
+    /**
+     * The warm-up in progress, if the task is being warmed up.
+     * @return Warm-up, or null once the task is warm.
+     */
+    CheckWarmup getWarmup() {
+
+        return warmup;
+    }
+
+    /**
+     * Report the last failure without executing the check while its downstream is clearly broken
+     * (see {@link CheckCircuitBreaker}).  Each check needs a breaker of its own.
+     * @param circuitBreaker Circuit breaker, or null.
+     */
+    public void setCircuitBreaker(CheckCircuitBreaker circuitBreaker) {
+
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * The circuit breaker of the check, if any.
+     * @return Circuit breaker, or null.
+     */
+    public CheckCircuitBreaker getCircuitBreaker() {
+
+        return circuitBreaker;
+    }
+
+    /**
+     * Declare the checks this check depends on, e.g. the database a repository check reads from.
+     * While one of them (or one of their own dependencies) is CRITICAL, this check is skipped:  its
+     * probe is not executed, and it reports {@link #DEFAULT_LEVEL_FOR_SKIPPED_TASK} with
+     * "skipped: depends on &lt;check&gt; CRITICAL".  Dependencies are checked without parameters, so give
+     * them a result store if they are expensive.
+     * @param dependencies Checks this check depends on.
+     * @throws IllegalArgumentException if the dependencies would form a cycle.
+     */
+    public void setDependencies(NagiosCheckTask... dependencies) {
+
+        for (NagiosCheckTask dependency : dependencies) {
+
+            Preconditions.checkArgument(dependency != this && !dependency.dependsOn(this),
+                    "%s can't depend on %s, which depends on it", getName(), dependency.getName());
+        }
+
+        this.dependencies = ImmutableList.copyOf(dependencies);
+    }
+
+    /**
+     * Checks this check depends on directly.
+     * @return Dependencies of the check.
+     */
+    public ImmutableList<NagiosCheckTask> getDependencies() {
+
+        return dependencies;
+    }
+
+    /**
+     * Whether this check depends on the other, directly or transitively.
+     * @param other Another check.
+     * @return true if a path of dependencies leads from this check to the other.
+     */
+    public boolean dependsOn(NagiosCheckTask other) {
+
+        for (NagiosCheckTask dependency : dependencies) {
+
+            if (dependency == other || dependency.dependsOn(other)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Label the task, so it can be selected together with related tasks (e.g. by {@link NagiosBatchTask}).
+     * @param tags Tags of the task.
+     */
+    public void setTags(String... tags) {
+
+        this.tags = ImmutableSet.copyOf(tags);
+    }
+
+    /**
+     * Labels of the task.
+     * @return Tags of the task.
+     */
+    public ImmutableSet<String> getTags() {
+
+        return tags;
+    }
+
     /**
      * Helper function to extract a single-valued parameter value by key name from the
      * request context.
@@ -1,21 +1,17 @@
 package com.bericotech.dropwizard.nagios;
 
-import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Lists;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-
 /**
  * Higher-level implementation of the NagiosCheckTask that will record
  * the 'tte' (time-to-execute) of the wrapped task and provide the 'tte'
  * as PerfDatum.
  *
+ * The 'tte' is evaluated against the "greater than" thresholds in nanoseconds returned by
+ * {@link #getWarningThresholdInNs()} and {@link #getCriticalThresholdNs()}.  For thresholds in
+ * the Nagios range syntax, extend {@link ThresholdTimedCheckTask} instead.
+ *
  * @author Richard Clayton (Berico Technologies)
  */
-public abstract class NagiosTimedCheckTask extends NagiosCheckTask {
+public abstract class NagiosTimedCheckTask extends TimedCheckTask {
 
     /**
      * Provide the name of the task.
@@ -39,73 +35,15 @@ public abstract class NagiosTimedCheckTask extends NagiosCheckTask {
      */
     public abstract long getWarningThresholdInNs();
 
-    /**
-     * Execute the task that should be timed.
-     * @param requestParameters Request parameters.
-     * @return Optionally, any extra performance data you would like to provide.
-     * @throws Throwable Thrown if an error occurred during the execution of the health check.
-     */
-    public abstract Optional<Collection<PerfDatum>>
-        doTimedCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable;
-
-    /**
-     * Executes the timed check.
-     * @param requestParameters Query or Form parameters submitted to the HTTP servlet.
-     * @return MessagePayload representing the timed check.
-     * @throws Throwable Thrown if an error occurred during the execution of the health check.
-     */
     @Override
-    public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
-
-        long start = System.nanoTime();
-
-        Optional<Collection<PerfDatum>> extraPerfData = doTimedCheck(requestParameters);
-
-        long total = System.nanoTime() - start;
-
-        double timeInSeconds = Conversion.nsToS(total);
-
-        ArrayList<PerfDatum> perfData = Lists.newArrayList();
+    Level evaluate(long nanos) {
 
-        perfData.add(
-                PerfDatum
-                    .builder("tte", timeInSeconds)
-                        .criteria(
-                            Conversion.nsToS(getWarningThresholdInNs()),
-                            Conversion.nsToS(getCriticalThresholdNs()))
-                        .build());
-
-
-        if (extraPerfData.isPresent()){
-
-            perfData.addAll(extraPerfData.get());
-        }
-
-        return new MessagePayloadBuilder()
-                .withLevel(Level.evaluate(total, getWarningThresholdInNs(), getCriticalThresholdNs()))
-                .withMessage(String.format("%s took %ss;", this.getName(), Conversion.nsToS(total)))
-                .withPerfData(perfData)
-                .build();
+        return Level.evaluate(nanos, getWarningThresholdInNs(), getCriticalThresholdNs());
     }
 
-    /**
-     * Helper for constructing the Optional Collection of PerfData.
-     * @param perfData Variable set of performance data.
-     * @return Collection of PerfData wrapped in an Optional.
-     */
-    public static Optional<Collection<PerfDatum>> withPerfData(PerfDatum... perfData){
-
-        Collection<PerfDatum> perfDataList = Arrays.asList(perfData);
-
-        return Optional.of(perfDataList);
-    }
-
-    /**
-     * Helper for constructing an absent collection of PerfData.
-     * @return Absent collection of PerfData.
-     */
-    public static Optional<Collection<PerfDatum>> noPerfData(){
+    @Override
+    PerfDatum.PerfDatumBuilder withCriteria(PerfDatum.PerfDatumBuilder builder) {
 
-        return Optional.absent();
+        return builder.warn(Conversion.nsToS(getWarningThresholdInNs())).critical(Conversion.nsToS(getCriticalThresholdNs()));
     }
 }
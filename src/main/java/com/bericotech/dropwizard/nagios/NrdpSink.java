@@ -0,0 +1,204 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Delivers passive check results to an NRDP server (Nagios Remote Data Processor), posting each
+ * batch as one {@code submitcheck} command in NRDP's XML or JSON format.  Every result carries the
+ * time the check was executed.
+ */
+public class NrdpSink implements PassiveCheckSink {
+
+    /**
+     * Format of the check results posted to NRDP.
+     */
+    public enum Format { XML, JSON }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // NRDP reports errors in a 200 response, e.g. <status>-1</status> for a bad token.
+    private static final Pattern STATUS = Pattern.compile("<status>\\s*(-?\\d+)\\s*</status>|\"status\"\\s*:\\s*\"?(-?\\d+)");
+
+    private final URL url;
+
+    private final String token;
+
+    private final Format format;
+
+    private volatile int timeoutMillis = 10000;
+
+    /**
+     * Post results to the NRDP server.
+     * @param url URL of NRDP, e.g. {@code https://nagios.example.com/nrdp/}.
+     * @param token Token NRDP is configured to accept.
+     * @param format Format of the results.
+     */
+    public NrdpSink(URL url, String token, Format format) {
+
+        this.url = url;
+        this.token = token;
+        this.format = format;
+    }
+
+    /**
+     * Limit the time to connect to NRDP, and to wait for its response.
+     * @param timeout Timeout for each.
+     * @param unit Unit of the timeout.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+
+        this.timeoutMillis = (int) unit.toMillis(timeout);
+    }
+
+    @Override
+    public void submit(List<PassiveCheckResult> results) throws IOException {
+
+        String data = format == Format.XML ? toXml(results) : toJson(results);
+
+        byte[] body = ("token=" + URLEncoder.encode(token, "UTF-8")
+                + "&cmd=submitcheck"
+                + (format == Format.XML ? "&XMLDATA=" : "&JSONDATA=") + URLEncoder.encode(data, "UTF-8"))
+                .getBytes(Charsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        try {
+
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+
+            OutputStream out = connection.getOutputStream();
+
+            try {
+
+                out.write(body);
+
+            } finally {
+
+                out.close();
+            }
+
+            int code = connection.getResponseCode();
+
+            if (code / 100 != 2) throw new IOException("NRDP responded with HTTP status " + code);
+
+            String response = read(connection.getInputStream());
+
+            Matcher status = STATUS.matcher(response);
+
+            if (status.find()) {
+
+                String value = status.group(1) != null ? status.group(1) : status.group(2);
+
+                if (!value.equals("0")) throw new IOException("NRDP rejected the check results: " + response.trim());
+            }
+
+        } finally {
+
+            connection.disconnect();
+        }
+    }
+
+    static String toXml(List<PassiveCheckResult> results) {
+
+        StringBuilder xml = new StringBuilder(results.size() * 256);
+
+        xml.append("<?xml version='1.0'?>\n<checkresults>\n");
+
+        for (PassiveCheckResult result : results) {
+
+            xml.append("  <checkresult type='service' checktype='1'>");
+            xml.append("<hostname>").append(escapeXml(result.getHostName())).append("</hostname>");
+            xml.append("<servicename>").append(escapeXml(result.getServiceName())).append("</servicename>");
+            xml.append("<state>").append(result.getReturnCode()).append("</state>");
+            xml.append("<output>").append(escapeXml(result.getOutput())).append("</output>");
+            xml.append("<time>").append(TimeUnit.MILLISECONDS.toSeconds(result.getCheckTimeMillis())).append("</time>");
+            xml.append("</checkresult>\n");
+        }
+
+        return xml.append("</checkresults>\n").toString();
+    }
+
+    static String toJson(List<PassiveCheckResult> results) throws IOException {
+
+        StringWriter json = new StringWriter(results.size() * 256);
+
+        JsonGenerator gen = JSON_FACTORY.createGenerator(json);
+
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("checkresults");
+
+        for (PassiveCheckResult result : results) {
+
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("checkresult");
+            gen.writeStringField("type", "service");
+            gen.writeStringField("checktype", "1");
+            gen.writeEndObject();
+            gen.writeStringField("hostname", result.getHostName());
+            gen.writeStringField("servicename", result.getServiceName());
+            gen.writeStringField("state", Integer.toString(result.getReturnCode()));
+            gen.writeStringField("output", result.getOutput());
+            gen.writeStringField("time", Long.toString(TimeUnit.MILLISECONDS.toSeconds(result.getCheckTimeMillis())));
+            gen.writeEndObject();
+        }
+
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.close();
+
+        return json.toString();
+    }
+
+    private static String escapeXml(String text) {
+
+        StringBuilder escaped = new StringBuilder(text.length());
+
+        for (int i = 0; i < text.length(); i++) {
+
+            char c = text.charAt(i);
+
+            switch (c) {
+                case '&': escaped.append("&amp;"); break;
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '\'': escaped.append("&apos;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    private static String read(InputStream in) throws IOException {
+
+        try {
+
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+
+        } finally {
+
+            in.close();
+        }
+    }
+}
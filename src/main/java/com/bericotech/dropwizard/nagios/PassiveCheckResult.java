@@ -0,0 +1,121 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a check, addressed to a Nagios host and service, for passive submission (see
+ * {@link PassiveCheckSubmitter}).  It carries the wall-clock time the check was executed, so Nagios
+ * judges the freshness of results that were buffered and submitted late by their actual age.
+ */
+public final class PassiveCheckResult {
+
+    private final String hostName;
+
+    private final String serviceName;
+
+    private final Level level;
+
+    private final String output;
+
+    private final long checkTimeMillis;
+
+    /**
+     * Address a check result.
+     * @param hostName Host the service is defined on in Nagios.
+     * @param serviceName Description of the service in Nagios.
+     * @param level Level of the result.
+     * @param output Plugin output (message and perf data), see {@link PluginOutput}.
+     * @param checkTimeMillis Time the check was executed, in milliseconds since the epoch.
+     */
+    public PassiveCheckResult(String hostName, String serviceName, Level level, String output, long checkTimeMillis) {
+
+        this.hostName = Preconditions.checkNotNull(hostName);
+        this.serviceName = Preconditions.checkNotNull(serviceName);
+        this.level = Preconditions.checkNotNull(level);
+        this.output = Preconditions.checkNotNull(output);
+        this.checkTimeMillis = checkTimeMillis;
+    }
+
+    /**
+     * Address the result of a check, rendering its payload as plugin output.
+     * @param hostName Host the service is defined on in Nagios.
+     * @param serviceName Description of the service in Nagios.
+     * @param result Result of the check; its age determines the check time.
+     * @return Addressed result.
+     */
+    public static PassiveCheckResult of(String hostName, String serviceName, CheckResult result) {
+
+        StringBuilder output = new StringBuilder();
+
+        try {
+
+            PluginOutput.write(result.getPayload(), output);
+
+        } catch (IOException e) {
+
+            throw new AssertionError(e);
+        }
+
+        // Same output as an active check, without the final line break.
+        output.setLength(output.length() - 1);
+
+        return new PassiveCheckResult(hostName, serviceName, result.getPayload().getLevel(),
+                output.toString(), System.currentTimeMillis() - result.getAge(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Host the service is defined on in Nagios.
+     * @return Host name.
+     */
+    public String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * Description of the service in Nagios.
+     * @return Service description.
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Level of the result.
+     * @return Level.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Plugin return code of the level (0 OK, 1 WARNING, 2 CRITICAL, 3 UNKNOWN).
+     * @return Return code.
+     */
+    public int getReturnCode() {
+        return level.ordinal();
+    }
+
+    /**
+     * Plugin output; the first line holds the message and perf data, further lines the long output.
+     * @return Plugin output.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Time the check was executed.
+     * @return Milliseconds since the epoch.
+     */
+    public long getCheckTimeMillis() {
+        return checkTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return hostName + ";" + serviceName + ";" + level + ";" + output;
+    }
+}
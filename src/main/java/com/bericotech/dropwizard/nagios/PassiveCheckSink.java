@@ -0,0 +1,20 @@
+package com.bericotech.dropwizard.nagios;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of passive check results, e.g. an NRDP server ({@link NrdpSink}) or the external
+ * command file of a local Nagios ({@link CommandFileSink}).
+ */
+public interface PassiveCheckSink {
+
+    /**
+     * Deliver a batch of results.  Either all results are delivered, or an exception is thrown and
+     * the batch is retried later, unless the exception is a {@link DeliveryInFlightException}.
+     * @param results Results to deliver, oldest first.
+     * @throws IOException if the results could not be delivered.
+     * @throws DeliveryInFlightException if the results may still be delivered later.
+     */
+    void submit(List<PassiveCheckResult> results) throws IOException;
+}
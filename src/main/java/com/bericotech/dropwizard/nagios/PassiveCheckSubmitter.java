@@ -0,0 +1,329 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes checks at a fixed interval and pushes their results to Nagios as passive check results,
+ * in one batch per interval, instead of waiting for Nagios to poll each of them.
+ *
+ * Results that can't be delivered (NRDP down, Nagios not reading its command file) are buffered and
+ * delivered with the next batch; once more than the buffer limit are pending, the oldest are dropped.
+ * Every result carries the time its check was executed, so configure the services in Nagios as passive
+ * with {@code check_freshness} and a {@code freshness_threshold} of a few intervals, to be alerted
+ * when results stop arriving.
+ *
+ * <pre>
+ * PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+ *         new NrdpSink(new URL("https://nagios.example.com/nrdp/"), token, NrdpSink.Format.XML),
+ *         "web-01", 60, TimeUnit.SECONDS);
+ * submitter.add(task);
+ * environment.lifecycle().manage(submitter);
+ * </pre>
+ */
+public class PassiveCheckSubmitter implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PassiveCheckSubmitter.class);
+
+    /**
+     * Number of undelivered results kept for retrying, if no other limit is supplied.
+     */
+    public static final int DEFAULT_MAX_PENDING = 1000;
+
+    private final PassiveCheckSink sink;
+
+    private final String hostName;
+
+    private final long intervalNanos;
+
+    private final int maxPending;
+
+    private final List<Submission> submissions = new CopyOnWriteArrayList<Submission>();
+
+    // Results not delivered yet, oldest first.  Guarded by this.
+    private final Deque<PassiveCheckResult> pending = new ArrayDeque<PassiveCheckResult>();
+
+    // Results taken from pending by deliveries in progress.  Guarded by this.
+    private int delivering;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile ExecutorService executor = CheckExecutors.defaultExecutor();
+
+    /**
+     * Submit results for the given Nagios host, keeping up to {@link #DEFAULT_MAX_PENDING} undelivered results.
+     * @param sink Destination of the results.
+     * @param hostName Host the services are defined on in Nagios.
+     * @param interval Time between two batches.
+     * @param unit Unit of the interval.
+     */
+    public PassiveCheckSubmitter(PassiveCheckSink sink, String hostName, long interval, TimeUnit unit) {
+
+        this(sink, hostName, interval, unit, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Submit results for the given Nagios host.
+     * @param sink Destination of the results.
+     * @param hostName Host the services are defined on in Nagios.
+     * @param interval Time between two batches.
+     * @param unit Unit of the interval.
+     * @param maxPending Number of undelivered results kept for retrying.
+     */
+    public PassiveCheckSubmitter(PassiveCheckSink sink, String hostName, long interval, TimeUnit unit, int maxPending) {
+
+        Preconditions.checkArgument(interval > 0, "interval must be positive");
+        Preconditions.checkArgument(maxPending > 0, "maxPending must be positive");
+
+        this.sink = sink;
+        this.hostName = hostName;
+        this.intervalNanos = unit.toNanos(interval);
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Submit the results of the task without parameters, as the service named like the task.
+     * @param task Task to execute.
+     */
+    public void add(NagiosCheckTask task) {
+
+        add(task, ImmutableMultimap.<String, String>of(), task.getName());
+    }
+
+    /**
+     * Submit the results of the task with the given parameters, as the given service.
+     * @param task Task to execute.
+     * @param requestParameters Parameters supplied to the task.
+     * @param serviceName Description of the service in Nagios.
+     */
+    public void add(NagiosCheckTask task, ImmutableMultimap<String, String> requestParameters, String serviceName) {
+
+        submissions.add(new Submission(task, requestParameters, serviceName));
+    }
+
+    /**
+     * Execute the checks on the given executor, in parallel, instead of the shared check executor.
+     * @param executor Executor for the checks.
+     */
+    public void setExecutor(ExecutorService executor) {
+
+        this.executor = executor;
+    }
+
+    /**
+     * Begin submitting results every interval.
+     */
+    @Override
+    public synchronized void start() {
+
+        if (scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nagios-passive-%d").build());
+
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    submitNow();
+
+                } catch (RuntimeException e) {
+
+                    LOG.warn("Passive check submission failed", e);
+                }
+            }
+        }, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop submitting results, and make a last attempt to deliver pending ones.
+     * @throws Exception if interrupted while waiting for the last batch.
+     */
+    @Override
+    public void stop() throws Exception {
+
+        ScheduledExecutorService scheduler;
+
+        synchronized (this) {
+
+            scheduler = this.scheduler;
+
+            this.scheduler = null;
+        }
+
+        if (scheduler == null) return;
+
+        scheduler.shutdown();
+
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+
+        deliver(new ArrayList<PassiveCheckResult>());
+    }
+
+    /**
+     * Execute all checks and deliver their results along with any pending ones.
+     * @return Whether the batch was delivered; if not, its results are pending, unless the sink
+     *         reported their delivery as still in flight.
+     */
+    public boolean submitNow() {
+
+        List<Submission> batch = new ArrayList<Submission>(submissions);
+
+        List<Future<CheckResult>> futures = new ArrayList<Future<CheckResult>>(batch.size());
+
+        for (final Submission submission : batch) {
+
+            futures.add(executor.submit(new Callable<CheckResult>() {
+
+                @Override
+                public CheckResult call() {
+
+                    return submission.task.check(submission.requestParameters);
+                }
+            }));
+        }
+
+        List<PassiveCheckResult> results = new ArrayList<PassiveCheckResult>(futures.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+
+            results.add(PassiveCheckResult.of(hostName, batch.get(i).serviceName, await(futures.get(i))));
+        }
+
+        return deliver(results);
+    }
+
+    /**
+     * Number of results waiting for delivery, including those of a delivery in progress.
+     * @return Number of pending results.
+     */
+    public synchronized int getPendingCount() {
+
+        return pending.size() + delivering;
+    }
+
+    // The sink is called without holding the lock, so a stalled sink doesn't block polls of the
+    // pending count or stop().  Results of a failed delivery are pending again, ahead of newer ones;
+    // those of a delivery still in flight are not, so that they aren't delivered twice.
+    private boolean deliver(List<PassiveCheckResult> results) {
+
+        List<PassiveCheckResult> batch;
+
+        synchronized (this) {
+
+            pending.addAll(results);
+
+            dropExcess();
+
+            if (pending.isEmpty()) return true;
+
+            batch = new ArrayList<PassiveCheckResult>(pending);
+
+            pending.clear();
+
+            delivering += batch.size();
+        }
+
+        boolean delivered = false;
+
+        // Whether the batch may still be delivered, and must not be retried.
+        boolean inFlight = false;
+
+        try {
+
+            sink.submit(batch);
+
+            delivered = true;
+
+        } catch (DeliveryInFlightException e) {
+
+            inFlight = true;
+
+            LOG.warn("Gave up waiting for the delivery of {} passive check results, which are not retried", batch.size(), e);
+
+        } catch (IOException e) {
+
+            LOG.warn("Could not deliver {} passive check results, retrying with the next batch", batch.size(), e);
+
+        } finally {
+
+            synchronized (this) {
+
+                delivering -= batch.size();
+
+                if (!delivered && !inFlight) {
+
+                    for (int i = batch.size() - 1; i >= 0; i--) pending.addFirst(batch.get(i));
+
+                    dropExcess();
+                }
+            }
+        }
+
+        return delivered;
+    }
+
+    // Must hold the lock.
+    private void dropExcess() {
+
+        while (pending.size() > maxPending) {
+
+            PassiveCheckResult dropped = pending.removeFirst();
+
+            LOG.warn("Dropping undelivered passive check result {}", dropped);
+        }
+    }
+
+    private static CheckResult await(Future<CheckResult> future) {
+
+        try {
+
+            return Uninterruptibles.getUninterruptibly(future);
+
+        } catch (ExecutionException e) {
+
+            return new CheckResult(new MessagePayloadBuilder()
+                    .withLevel(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_ERROR)
+                    .withMessage(e.getCause().getMessage())
+                    .build());
+        }
+    }
+
+    private static final class Submission {
+
+        final NagiosCheckTask task;
+
+        final ImmutableMultimap<String, String> requestParameters;
+
+        final String serviceName;
+
+        Submission(NagiosCheckTask task, ImmutableMultimap<String, String> requestParameters, String serviceName) {
+
+            this.task = task;
+            this.requestParameters = requestParameters;
+            this.serviceName = serviceName;
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.bericotech.dropwizard.nagios;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Preconditions;
 
+import java.io.IOException;
+
 /**
  * Represents a metric recorded during a Nagios check.
  *
+ * Numeric values supplied as primitives are stored unboxed, so creating and rendering perf data
+ * (see {@link #appendTo(Appendable)}) does not allocate wrapper objects.  Values supplied as
+ * objects are stored unboxed too if they are Integer, Long, Float or Double, and as the object
+ * itself otherwise.  To supply the criteria and bounds without boxing them, use the single-value
+ * setters of the builder ({@code warn}, {@code critical}, {@code min} and {@code max}); each keeps
+ * the type of its argument, e.g. {@code warn(1).critical(2.5)} renders the warning criteria as 1.
+ *
  * @author Richard Clayton (Berico Technologies)
  */
+@JsonPropertyOrder({ "label", "value", "warn", "critical", "min", "max", "unitOfMeasurement" })
 public class PerfDatum {
 
     /**
@@ -36,6 +48,15 @@ public class PerfDatum {
         }
     }
 
+    // Kind of value held by each field (value, warn, critical, min and max).  Numeric kinds keep
+    // their value in the corresponding bits field (doubles and floats as raw IEEE 754 bits).
+    static final byte ABSENT = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte FLOAT = 3;
+    static final byte DOUBLE = 4;
+    static final byte OBJECT = 5;
+
     /**
      * Oh no!  You better provide parameters!
      */
@@ -57,25 +78,37 @@ public class PerfDatum {
      */
     public PerfDatum(String label, Object value, UOM unitOfMeasurement, Object warn, Object critical, Object min, Object max) {
         this.label = label;
-        this.value = value;
         this.unitOfMeasurement = unitOfMeasurement;
-        this.warn = warn;
-        this.critical = critical;
-        this.min = min;
-        this.max = max;
+
+        valueKind = kindOf(value);
+        valueBits = bitsOf(valueKind, value);
+        valueObject = objectOf(valueKind, value);
+
+        setCriteria(warn, critical);
+        setMinMax(min, max);
     }
 
     private String label;
 
-    private Object value;
+    private byte valueKind;
+    private long valueBits;
+    private Object valueObject;
 
-    private Object warn;
+    private byte warnKind;
+    private long warnBits;
+    private Object warnObject;
 
-    private Object critical;
+    private byte criticalKind;
+    private long criticalBits;
+    private Object criticalObject;
 
-    private Object min;
+    private byte minKind;
+    private long minBits;
+    private Object minObject;
 
-    private Object max;
+    private byte maxKind;
+    private long maxBits;
+    private Object maxObject;
 
     private UOM unitOfMeasurement = UOM.Unspecified;
 
@@ -92,7 +125,7 @@ public class PerfDatum {
      * @return value of the metric.
      */
     public Object getValue() {
-        return value;
+        return box(valueKind, valueBits, valueObject);
     }
 
     /**
@@ -100,7 +133,7 @@ public class PerfDatum {
      * @return warning criteria value.
      */
     public Object getWarn() {
-        return warn;
+        return box(warnKind, warnBits, warnObject);
     }
 
     /**
@@ -108,7 +141,7 @@ public class PerfDatum {
      * @return critical criteria value.
      */
     public Object getCritical() {
-        return critical;
+        return box(criticalKind, criticalBits, criticalObject);
     }
 
     /**
@@ -116,7 +149,7 @@ public class PerfDatum {
      * @return min observed value.
      */
     public Object getMin() {
-        return min;
+        return box(minKind, minBits, minObject);
     }
 
     /**
@@ -124,7 +157,7 @@ public class PerfDatum {
      * @return max observed value.
      */
     public Object getMax() {
-        return max;
+        return box(maxKind, maxBits, maxObject);
     }
 
     /**
@@ -135,6 +168,41 @@ public class PerfDatum {
         return unitOfMeasurement;
     }
 
+    /**
+     * Copy of this datum under another label, e.g. prefixed with the name of the check it came from.
+     * @param label Name of the metric.
+     * @return Relabeled copy.
+     */
+    PerfDatum withLabel(String label) {
+
+        PerfDatum copy = new PerfDatum();
+
+        copy.label = label;
+        copy.unitOfMeasurement = unitOfMeasurement;
+
+        copy.valueKind = valueKind;
+        copy.valueBits = valueBits;
+        copy.valueObject = valueObject;
+
+        copy.warnKind = warnKind;
+        copy.warnBits = warnBits;
+        copy.warnObject = warnObject;
+
+        copy.criticalKind = criticalKind;
+        copy.criticalBits = criticalBits;
+        copy.criticalObject = criticalObject;
+
+        copy.minKind = minKind;
+        copy.minBits = minBits;
+        copy.minObject = minObject;
+
+        copy.maxKind = maxKind;
+        copy.maxBits = maxBits;
+        copy.maxObject = maxObject;
+
+        return copy;
+    }
+
     /**
      * Get a builder for the PerfDatum object, supplying the two mandatory parameters for
      * PerfDatum (label and value).
@@ -148,7 +216,53 @@ public class PerfDatum {
     }
 
     /**
-     * Prints a properly formatted Nagios PerfDatum string.
+     * Get a builder for the PerfDatum object with an integer value.
+     * @param label Name of the metric.
+     * @param value Value of the metric.
+     * @return Builder.
+     */
+    public static PerfDatumBuilder builder(String label, int value){
+
+        return new PerfDatumBuilder(label, value);
+    }
+
+    /**
+     * Get a builder for the PerfDatum object with a long value.
+     * @param label Name of the metric.
+     * @param value Value of the metric.
+     * @return Builder.
+     */
+    public static PerfDatumBuilder builder(String label, long value){
+
+        return new PerfDatumBuilder(label, value);
+    }
+
+    /**
+     * Get a builder for the PerfDatum object with a float value.
+     * @param label Name of the metric.
+     * @param value Value of the metric.
+     * @return Builder.
+     */
+    public static PerfDatumBuilder builder(String label, float value){
+
+        return new PerfDatumBuilder(label, value);
+    }
+
+    /**
+     * Get a builder for the PerfDatum object with a double value.
+     * @param label Name of the metric.
+     * @param value Value of the metric.
+     * @return Builder.
+     */
+    public static PerfDatumBuilder builder(String label, double value){
+
+        return new PerfDatumBuilder(label, value);
+    }
+
+    /**
+     * Prints the PerfDatum in the format of {@link MessagePayload#getMessage()}:  values as
+     * {@link String#valueOf}, and the criteria only if both are present (followed by min and max if
+     * all four are).  Plugin output is written with {@link #appendTo(Appendable)} instead.
      * @return Formatted PerfDatum string.
      */
     @Override
@@ -156,18 +270,180 @@ public class PerfDatum {
 
         StringBuilder sb = new StringBuilder();
 
-        sb.append(label).append("=").append(value).append(unitOfMeasurement.symbol());
+        sb.append(label).append('=');
 
-        if (warn != null && critical != null && min != null && max != null) {
-            sb.append(";").append(warn).append(";").append(critical).append(";").append(min).append(";").append(max);
-        }
-        else if (warn != null && critical != null && min == null && max == null){
-            sb.append(";").append(warn).append(";").append(critical);
+        appendLegacy(sb, valueKind, valueBits, valueObject);
+
+        sb.append(unitOfMeasurement.symbol());
+
+        if (warnKind != ABSENT && criticalKind != ABSENT) {
+
+            sb.append(';');
+            appendLegacy(sb, warnKind, warnBits, warnObject);
+            sb.append(';');
+            appendLegacy(sb, criticalKind, criticalBits, criticalObject);
+
+            if (minKind != ABSENT && maxKind != ABSENT) {
+
+                sb.append(';');
+                appendLegacy(sb, minKind, minBits, minObject);
+                sb.append(';');
+                appendLegacy(sb, maxKind, maxBits, maxObject);
+            }
         }
 
         return sb.toString();
     }
 
+    /**
+     * Writes a properly formatted Nagios PerfDatum string ({@code label=value[UOM];[warn];[crit];[min];[max]})
+     * without allocating intermediate strings.  Trailing fields that are absent are omitted.
+     * @param out Output to write to.
+     * @throws IOException if the output does.
+     */
+    public void appendTo(Appendable out) throws IOException {
+
+        PluginOutput.appendLabel(out, label);
+
+        out.append('=');
+
+        append(out, valueKind, valueBits, valueObject);
+
+        out.append(unitOfMeasurement.symbol());
+
+        int fields = maxKind != ABSENT ? 4
+                : minKind != ABSENT ? 3
+                : criticalKind != ABSENT ? 2
+                : warnKind != ABSENT ? 1
+                : 0;
+
+        if (fields >= 1) { out.append(';'); append(out, warnKind, warnBits, warnObject); }
+        if (fields >= 2) { out.append(';'); append(out, criticalKind, criticalBits, criticalObject); }
+        if (fields >= 3) { out.append(';'); append(out, minKind, minBits, minObject); }
+        if (fields >= 4) { out.append(';'); append(out, maxKind, maxBits, maxObject); }
+    }
+
+    /**
+     * Writes the datum as a JSON object, with the same fields as its bean serialization.
+     * @param gen Generator to write to.
+     * @throws IOException if the generator does.
+     */
+    void writeTo(JsonGenerator gen) throws IOException {
+
+        gen.writeStartObject();
+
+        gen.writeStringField("label", label);
+        gen.writeFieldName("value");
+        write(gen, valueKind, valueBits, valueObject);
+        gen.writeFieldName("warn");
+        write(gen, warnKind, warnBits, warnObject);
+        gen.writeFieldName("critical");
+        write(gen, criticalKind, criticalBits, criticalObject);
+        gen.writeFieldName("min");
+        write(gen, minKind, minBits, minObject);
+        gen.writeFieldName("max");
+        write(gen, maxKind, maxBits, maxObject);
+        gen.writeStringField("unitOfMeasurement", unitOfMeasurement == null ? null : unitOfMeasurement.name());
+
+        gen.writeEndObject();
+    }
+
+    private void setCriteria(Object warn, Object critical) {
+
+        warnKind = kindOf(warn);
+        warnBits = bitsOf(warnKind, warn);
+        warnObject = objectOf(warnKind, warn);
+
+        criticalKind = kindOf(critical);
+        criticalBits = bitsOf(criticalKind, critical);
+        criticalObject = objectOf(criticalKind, critical);
+    }
+
+    private void setMinMax(Object min, Object max) {
+
+        minKind = kindOf(min);
+        minBits = bitsOf(minKind, min);
+        minObject = objectOf(minKind, min);
+
+        maxKind = kindOf(max);
+        maxBits = bitsOf(maxKind, max);
+        maxObject = objectOf(maxKind, max);
+    }
+
+    private static byte kindOf(Object object) {
+
+        if (object == null) return ABSENT;
+        if (object instanceof Integer) return INT;
+        if (object instanceof Long) return LONG;
+        if (object instanceof Double) return DOUBLE;
+        if (object instanceof Float) return FLOAT;
+
+        return OBJECT;
+    }
+
+    private static long bitsOf(byte kind, Object object) {
+
+        switch (kind) {
+            case INT: return (Integer) object;
+            case LONG: return (Long) object;
+            case FLOAT: return Float.floatToRawIntBits((Float) object);
+            case DOUBLE: return Double.doubleToRawLongBits((Double) object);
+            default: return 0;
+        }
+    }
+
+    private static Object objectOf(byte kind, Object object) {
+
+        return kind == OBJECT ? object : null;
+    }
+
+    private static Object box(byte kind, long bits, Object object) {
+
+        switch (kind) {
+            case INT: return (int) bits;
+            case LONG: return bits;
+            case FLOAT: return Float.intBitsToFloat((int) bits);
+            case DOUBLE: return Double.longBitsToDouble(bits);
+            default: return object;
+        }
+    }
+
+    private static void append(Appendable out, byte kind, long bits, Object object) throws IOException {
+
+        switch (kind) {
+            case ABSENT: break;
+            case INT:
+            case LONG: PluginOutput.appendLong(out, bits); break;
+            case FLOAT: PluginOutput.appendFloat(out, Float.intBitsToFloat((int) bits)); break;
+            case DOUBLE: PluginOutput.appendDouble(out, Double.longBitsToDouble(bits)); break;
+            default: out.append(String.valueOf(object));
+        }
+    }
+
+    // Same text as String.valueOf of the boxed value, without boxing it.
+    private static void appendLegacy(StringBuilder sb, byte kind, long bits, Object object) {
+
+        switch (kind) {
+            case INT:
+            case LONG: sb.append(bits); break;
+            case FLOAT: sb.append(Float.intBitsToFloat((int) bits)); break;
+            case DOUBLE: sb.append(Double.longBitsToDouble(bits)); break;
+            default: sb.append(object);
+        }
+    }
+
+    private static void write(JsonGenerator gen, byte kind, long bits, Object object) throws IOException {
+
+        switch (kind) {
+            case ABSENT: gen.writeNull(); break;
+            case INT: gen.writeNumber((int) bits); break;
+            case LONG: gen.writeNumber(bits); break;
+            case FLOAT: gen.writeNumber(Float.intBitsToFloat((int) bits)); break;
+            case DOUBLE: gen.writeNumber(Double.longBitsToDouble(bits)); break;
+            default: gen.writeObject(object);
+        }
+    }
+
     /**
      * Helper for the ridiculous amount of fields on PerfDatum.
      *
@@ -188,7 +464,58 @@ public class PerfDatum {
             Preconditions.checkNotNull(value);
 
             pd.label = label;
-            pd.value = value;
+            pd.valueKind = kindOf(value);
+            pd.valueBits = bitsOf(pd.valueKind, value);
+            pd.valueObject = objectOf(pd.valueKind, value);
+        }
+
+        /**
+         * Initialize the builder with a label and an integer value.
+         * @param label Name of the metric.
+         * @param value Value of the metric.
+         */
+        public PerfDatumBuilder(String label, int value){
+
+            this(label, INT, value);
+        }
+
+        /**
+         * Initialize the builder with a label and a long value.
+         * @param label Name of the metric.
+         * @param value Value of the metric.
+         */
+        public PerfDatumBuilder(String label, long value){
+
+            this(label, LONG, value);
+        }
+
+        /**
+         * Initialize the builder with a label and a float value.
+         * @param label Name of the metric.
+         * @param value Value of the metric.
+         */
+        public PerfDatumBuilder(String label, float value){
+
+            this(label, FLOAT, Float.floatToRawIntBits(value));
+        }
+
+        /**
+         * Initialize the builder with a label and a double value.
+         * @param label Name of the metric.
+         * @param value Value of the metric.
+         */
+        public PerfDatumBuilder(String label, double value){
+
+            this(label, DOUBLE, Double.doubleToRawLongBits(value));
+        }
+
+        private PerfDatumBuilder(String label, byte kind, long bits){
+
+            Preconditions.checkNotNull(label);
+
+            pd.label = label;
+            pd.valueKind = kind;
+            pd.valueBits = bits;
         }
 
         /**
@@ -210,13 +537,22 @@ public class PerfDatum {
          */
         public PerfDatumBuilder criteria(Object warnValue, Object criticalValue){
 
-            pd.warn = warnValue;
-
-            pd.critical = criticalValue;
+            pd.setCriteria(warnValue, criticalValue);
 
             return this;
         }
 
+        /**
+         * Warning and Critical thresholds for the metric, written in the Nagios range syntax.
+         * @param warnThreshold Warning threshold, or null for none.
+         * @param criticalThreshold Critical threshold, or null for none.
+         * @return this.
+         */
+        public PerfDatumBuilder criteria(Threshold warnThreshold, Threshold criticalThreshold){
+
+            return criteria((Object) warnThreshold, (Object) criticalThreshold);
+        }
+
         /**
          * Minimum and maximum observed value before/during the check.
          * @param minValue min observed value.
@@ -224,9 +560,231 @@ public class PerfDatum {
          */
         public PerfDatumBuilder minMax(Object minValue, Object maxValue){
 
-            pd.min = minValue;
+            pd.setMinMax(minValue, maxValue);
+
+            return this;
+        }
+
+        /**
+         * Integer Warning criteria of the metric, stored unboxed.
+         * @param warnValue Warning criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder warn(int warnValue){
+
+            pd.warnKind = INT;
+            pd.warnBits = warnValue;
+            pd.warnObject = null;
+
+            return this;
+        }
+
+        /**
+         * Long Warning criteria of the metric, stored unboxed.
+         * @param warnValue Warning criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder warn(long warnValue){
+
+            pd.warnKind = LONG;
+            pd.warnBits = warnValue;
+            pd.warnObject = null;
+
+            return this;
+        }
+
+        /**
+         * Float Warning criteria of the metric, stored unboxed.
+         * @param warnValue Warning criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder warn(float warnValue){
+
+            pd.warnKind = FLOAT;
+            pd.warnBits = Float.floatToRawIntBits(warnValue);
+            pd.warnObject = null;
+
+            return this;
+        }
+
+        /**
+         * Double Warning criteria of the metric, stored unboxed.
+         * @param warnValue Warning criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder warn(double warnValue){
+
+            pd.warnKind = DOUBLE;
+            pd.warnBits = Double.doubleToRawLongBits(warnValue);
+            pd.warnObject = null;
+
+            return this;
+        }
+
+        /**
+         * Integer Critical criteria of the metric, stored unboxed.
+         * @param criticalValue Critical criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder critical(int criticalValue){
+
+            pd.criticalKind = INT;
+            pd.criticalBits = criticalValue;
+            pd.criticalObject = null;
+
+            return this;
+        }
+
+        /**
+         * Long Critical criteria of the metric, stored unboxed.
+         * @param criticalValue Critical criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder critical(long criticalValue){
+
+            pd.criticalKind = LONG;
+            pd.criticalBits = criticalValue;
+            pd.criticalObject = null;
+
+            return this;
+        }
+
+        /**
+         * Float Critical criteria of the metric, stored unboxed.
+         * @param criticalValue Critical criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder critical(float criticalValue){
+
+            pd.criticalKind = FLOAT;
+            pd.criticalBits = Float.floatToRawIntBits(criticalValue);
+            pd.criticalObject = null;
+
+            return this;
+        }
+
+        /**
+         * Double Critical criteria of the metric, stored unboxed.
+         * @param criticalValue Critical criteria.
+         * @return this.
+         */
+        public PerfDatumBuilder critical(double criticalValue){
+
+            pd.criticalKind = DOUBLE;
+            pd.criticalBits = Double.doubleToRawLongBits(criticalValue);
+            pd.criticalObject = null;
+
+            return this;
+        }
+
+        /**
+         * Integer Minimum observed value of the metric, stored unboxed.
+         * @param minValue Minimum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder min(int minValue){
+
+            pd.minKind = INT;
+            pd.minBits = minValue;
+            pd.minObject = null;
+
+            return this;
+        }
+
+        /**
+         * Long Minimum observed value of the metric, stored unboxed.
+         * @param minValue Minimum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder min(long minValue){
+
+            pd.minKind = LONG;
+            pd.minBits = minValue;
+            pd.minObject = null;
+
+            return this;
+        }
+
+        /**
+         * Float Minimum observed value of the metric, stored unboxed.
+         * @param minValue Minimum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder min(float minValue){
+
+            pd.minKind = FLOAT;
+            pd.minBits = Float.floatToRawIntBits(minValue);
+            pd.minObject = null;
+
+            return this;
+        }
+
+        /**
+         * Double Minimum observed value of the metric, stored unboxed.
+         * @param minValue Minimum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder min(double minValue){
+
+            pd.minKind = DOUBLE;
+            pd.minBits = Double.doubleToRawLongBits(minValue);
+            pd.minObject = null;
+
+            return this;
+        }
+
+        /**
+         * Integer Maximum observed value of the metric, stored unboxed.
+         * @param maxValue Maximum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder max(int maxValue){
+
+            pd.maxKind = INT;
+            pd.maxBits = maxValue;
+            pd.maxObject = null;
+
+            return this;
+        }
+
+        /**
+         * Long Maximum observed value of the metric, stored unboxed.
+         * @param maxValue Maximum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder max(long maxValue){
+
+            pd.maxKind = LONG;
+            pd.maxBits = maxValue;
+            pd.maxObject = null;
+
+            return this;
+        }
+
+        /**
+         * Float Maximum observed value of the metric, stored unboxed.
+         * @param maxValue Maximum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder max(float maxValue){
+
+            pd.maxKind = FLOAT;
+            pd.maxBits = Float.floatToRawIntBits(maxValue);
+            pd.maxObject = null;
+
+            return this;
+        }
+
+        /**
+         * Double Maximum observed value of the metric, stored unboxed.
+         * @param maxValue Maximum observed value.
+         * @return this.
+         */
+        public PerfDatumBuilder max(double maxValue){
 
-            pd.max = maxValue;
+            pd.maxKind = DOUBLE;
+            pd.maxBits = Double.doubleToRawLongBits(maxValue);
+            pd.maxObject = null;
 
             return this;
         }
@@ -240,4 +798,4 @@ public class PerfDatum {
             return pd;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Preconditions;
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables the pinning diagnostics of {@link CheckExecutors#virtualThreadExecutor()} while the
+ * application runs, and disables them when it stops, so that the thread they run on doesn't keep
+ * the JVM from exiting:
+ *
+ * <pre>
+ * environment.lifecycle().manage(new PinningDiagnostics(20, TimeUnit.MILLISECONDS));
+ * </pre>
+ *
+ * @see CheckExecutors#enablePinningDiagnostics(long, TimeUnit)
+ */
+public class PinningDiagnostics implements Managed {
+
+    private final long threshold;
+
+    private final TimeUnit unit;
+
+    /**
+     * Report checks pinned for longer than the threshold.
+     * @param threshold Shortest pinning reported, e.g. 20 milliseconds.
+     * @param unit Unit of the threshold.
+     */
+    public PinningDiagnostics(long threshold, TimeUnit unit) {
+
+        Preconditions.checkArgument(threshold >= 0, "threshold must not be negative");
+
+        this.threshold = threshold;
+        this.unit = Preconditions.checkNotNull(unit);
+    }
+
+    @Override
+    public void start() {
+
+        CheckExecutors.enablePinningDiagnostics(threshold, unit);
+    }
+
+    @Override
+    public void stop() {
+
+        CheckExecutors.disablePinningDiagnostics();
+    }
+}
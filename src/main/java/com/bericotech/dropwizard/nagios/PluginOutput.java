@@ -0,0 +1,261 @@
+package com.bericotech.dropwizard.nagios;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Writes check results as Nagios plugin output, directly to an {@link Appendable} (like the
+ * servlet's PrintWriter) without building intermediate strings:
+ *
+ * <pre>
+ * LEVEL - first line of the message | label=value[UOM];[warn];[crit];[min];[max] ...
+ * remaining lines of the message (long output)
+ * </pre>
+ *
+ * All perf data follow a single '|' on the first line, separated by spaces.  Numbers are written
+ * in plain decimal notation (never with an exponent), independent of the default locale.
+ */
+public final class PluginOutput {
+
+    private PluginOutput() {}
+
+    // Powers of ten that are exactly representable as doubles (and longs).
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    // Integers up to this magnitude are exactly representable as doubles.
+    private static final double MAX_EXACT_INTEGER = 9007199254740992d;
+
+    /**
+     * Write the result of a check as Nagios plugin output, marking stale results.
+     * @param result Result of the check.
+     * @param out Output to write to.
+     * @throws IOException if the output does.
+     */
+    public static void write(CheckResult result, Appendable out) throws IOException {
+
+        write(result.getPayload(), result.isStale(), out);
+    }
+
+    /**
+     * Write a payload as Nagios plugin output.
+     * @param mp Payload to write.
+     * @param out Output to write to.
+     * @throws IOException if the output does.
+     */
+    public static void write(MessagePayload mp, Appendable out) throws IOException {
+
+        write(mp, false, out);
+    }
+
+    private static void write(MessagePayload mp, boolean stale, Appendable out) throws IOException {
+
+        String message = String.valueOf(mp.getBaseMessage());
+
+        int firstLineEnd = message.indexOf('\n');
+
+        if (firstLineEnd < 0) firstLineEnd = message.length();
+
+        out.append(mp.getLevel().name()).append(" - ");
+
+        if (stale) out.append("[stale] ");
+
+        appendText(out, message, 0, firstLineEnd);
+
+        List<PerfDatum> perfData = mp.getPerfData();
+
+        for (int i = 0; i < perfData.size(); i++) {
+
+            out.append(i == 0 ? " | " : " ");
+
+            perfData.get(i).appendTo(out);
+        }
+
+        out.append('\n');
+
+        if (firstLineEnd < message.length()) {
+
+            appendText(out, message, firstLineEnd + 1, message.length());
+
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Write message text, replacing the '|' Nagios reserves for perf data.
+     */
+    static void appendText(Appendable out, CharSequence text, int start, int end) throws IOException {
+
+        for (int i = start; i < end; i++) {
+
+            char c = text.charAt(i);
+
+            out.append(c == '|' ? '/' : c);
+        }
+    }
+
+    /**
+     * Write a perf data label, quoting it if it contains spaces or quotes.
+     */
+    static void appendLabel(Appendable out, String label) throws IOException {
+
+        if (label.indexOf(' ') < 0 && label.indexOf('\'') < 0) {
+
+            out.append(label);
+
+            return;
+        }
+
+        out.append('\'');
+
+        for (int i = 0; i < label.length(); i++) {
+
+            char c = label.charAt(i);
+
+            if (c == '\'') out.append('\'');
+
+            out.append(c);
+        }
+
+        out.append('\'');
+    }
+
+    /**
+     * Write a long in decimal notation.
+     */
+    static void appendLong(Appendable out, long value) throws IOException {
+
+        if (value == Long.MIN_VALUE) {
+
+            out.append("-9223372036854775808");
+
+            return;
+        }
+
+        if (value < 0) {
+
+            out.append('-');
+
+            value = -value;
+        }
+
+        long divisor = 1;
+
+        while (value / divisor >= 10) divisor *= 10;
+
+        for (; divisor > 0; divisor /= 10) {
+
+            out.append((char) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    /**
+     * Write a double in plain decimal notation, with the fewest fraction digits (at least one)
+     * that identify the value; NaN and infinities are written as "U" (undetermined).
+     */
+    static void appendDouble(Appendable out, double value) throws IOException {
+
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+
+            out.append('U');
+
+            return;
+        }
+
+        double abs = Math.abs(value);
+
+        if (value < 0) out.append('-');
+
+        if (abs < MAX_EXACT_INTEGER && abs == Math.rint(abs)) {
+
+            appendLong(out, (long) abs);
+            out.append(".0");
+
+            return;
+        }
+
+        for (int digits = 1; digits < POWERS_OF_TEN.length; digits++) {
+
+            double scaled = abs * POWERS_OF_TEN[digits];
+
+            if (scaled >= MAX_EXACT_INTEGER) break;
+
+            long mantissa = Math.round(scaled);
+
+            if (mantissa / POWERS_OF_TEN[digits] == abs) {
+
+                appendFixedPoint(out, mantissa, digits);
+
+                return;
+            }
+        }
+
+        // Rare:  too many significant digits for the fast path.
+        out.append(BigDecimal.valueOf(abs).toPlainString());
+    }
+
+    /**
+     * Write a float in plain decimal notation, with the fewest fraction digits (at least one)
+     * that identify the value; NaN and infinities are written as "U" (undetermined).
+     */
+    static void appendFloat(Appendable out, float value) throws IOException {
+
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+
+            out.append('U');
+
+            return;
+        }
+
+        float abs = Math.abs(value);
+
+        if (value < 0) out.append('-');
+
+        if (abs < MAX_EXACT_INTEGER && abs == Math.rint(abs)) {
+
+            appendLong(out, (long) abs);
+            out.append(".0");
+
+            return;
+        }
+
+        for (int digits = 1; digits < POWERS_OF_TEN.length; digits++) {
+
+            double scaled = abs * POWERS_OF_TEN[digits];
+
+            if (scaled >= MAX_EXACT_INTEGER) break;
+
+            long mantissa = Math.round(scaled);
+
+            if ((float) (mantissa / POWERS_OF_TEN[digits]) == abs) {
+
+                appendFixedPoint(out, mantissa, digits);
+
+                return;
+            }
+        }
+
+        out.append(new BigDecimal(Float.toString(abs)).toPlainString());
+    }
+
+    private static void appendFixedPoint(Appendable out, long mantissa, int fractionDigits) throws IOException {
+
+        long divisor = (long) POWERS_OF_TEN[fractionDigits];
+
+        appendLong(out, mantissa / divisor);
+
+        out.append('.');
+
+        long fraction = mantissa % divisor;
+
+        for (divisor /= 10; divisor > 0; divisor /= 10) {
+
+            out.append((char) ('0' + (fraction / divisor) % 10));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent executions for the same key:  the first caller executes the work, and
+ * callers arriving while it is in flight wait for and share its outcome.
+ *
+ * @param <K> Type of key.
+ * @param <V> Type of outcome.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Execute the work, or join an execution for the same key that is already in flight.  Callers
+     * joining an execution wait for it at most the given time; the caller executing the work is not
+     * limited by it.
+     * @param key Key of the work.
+     * @param work Work to execute.
+     * @param timeoutNanos Maximum time to wait for an execution in flight; zero to wait until it completes.
+     * @return Outcome of the work.
+     * @throws TimeoutException if the execution in flight did not complete in time.
+     */
+    V execute(K key, Callable<V> work, long timeoutNanos) throws TimeoutException {
+
+        FutureTask<V> task = new FutureTask<V>(work);
+
+        FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+
+        if (existing != null) {
+
+            coalesced.incrementAndGet();
+
+            return await(existing, timeoutNanos);
+        }
+
+        try {
+
+            task.run();
+
+            return await(task, 0);
+
+        } finally {
+
+            inFlight.remove(key, task);
+        }
+    }
+
+    /**
+     * Number of callers that joined an execution in flight instead of executing the work themselves.
+     * @return Count of coalesced calls.
+     */
+    long getCoalescedCount() {
+
+        return coalesced.get();
+    }
+
+    private static <V> V await(FutureTask<V> task, long timeoutNanos) throws TimeoutException {
+
+        try {
+
+            if (timeoutNanos <= 0) return Uninterruptibles.getUninterruptibly(task);
+
+            return Uninterruptibles.getUninterruptibly(task, timeoutNanos, TimeUnit.NANOSECONDS);
+
+        } catch (ExecutionException e) {
+
+            Throwables.throwIfUnchecked(e.getCause());
+
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
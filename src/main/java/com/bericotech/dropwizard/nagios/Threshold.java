@@ -0,0 +1,234 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+
+/**
+ * A warning or critical threshold in the Nagios range syntax, parsed once so that values can be
+ * evaluated against it on every poll without parsing, boxing or allocating:
+ *
+ * <pre>
+ * 10       alert if &lt; 0 or &gt; 10
+ * 10:      alert if &lt; 10
+ * ~:10     alert if &gt; 10
+ * 10:20    alert if &lt; 10 or &gt; 20
+ * &#64;10:20   alert if &ge; 10 and &le; 20
+ * </pre>
+ *
+ * A threshold renders itself in the same syntax, so it can be supplied as the warn and critical
+ * fields of a {@link PerfDatum} (see {@link PerfDatum.PerfDatumBuilder#criteria(Threshold, Threshold)}).
+ * Use {@link Level#evaluate(double, Threshold, Threshold)} to obtain the level of a value.
+ */
+public final class Threshold {
+
+    private final double start;
+
+    private final double end;
+
+    private final boolean inside;
+
+    private final String range;
+
+    private Threshold(double start, double end, boolean inside, String range) {
+
+        Preconditions.checkArgument(start <= end, "start of range %s is greater than its end", range);
+
+        this.start = start;
+        this.end = end;
+        this.inside = inside;
+        this.range = range;
+    }
+
+    /**
+     * Parse a threshold in the Nagios range syntax ({@code [@][start:]end}, where start may be
+     * "~" for negative infinity and an empty end means positive infinity).
+     * @param range Threshold to parse.
+     * @return Parsed threshold.
+     * @throws IllegalArgumentException if the range is malformed.
+     */
+    public static Threshold parse(String range) {
+
+        Preconditions.checkArgument(range != null, "range must not be null");
+
+        String trimmed = range.trim();
+
+        boolean inside = trimmed.startsWith("@");
+
+        String bounds = inside ? trimmed.substring(1) : trimmed;
+
+        int colon = bounds.indexOf(':');
+
+        double start = 0;
+        double end;
+
+        if (colon < 0) {
+
+            end = parseBound(bounds, range);
+
+        } else {
+
+            String startText = bounds.substring(0, colon);
+            String endText = bounds.substring(colon + 1);
+
+            if (startText.equals("~")) start = Double.NEGATIVE_INFINITY;
+            else if (!startText.isEmpty()) start = parseBound(startText, range);
+
+            end = endText.isEmpty() ? Double.POSITIVE_INFINITY : parseBound(endText, range);
+        }
+
+        return new Threshold(start, end, inside, trimmed);
+    }
+
+    /**
+     * Alert if the value is greater than the limit ({@code ~:limit}); the same comparison
+     * {@link Level#evaluate(Number, Number, Number)} makes.
+     * @param limit Greatest acceptable value.
+     * @return Threshold.
+     */
+    public static Threshold above(double limit) {
+
+        return new Threshold(Double.NEGATIVE_INFINITY, limit, false, "~:" + format(limit));
+    }
+
+    /**
+     * Alert if the value is less than the limit ({@code limit:}).
+     * @param limit Least acceptable value.
+     * @return Threshold.
+     */
+    public static Threshold below(double limit) {
+
+        return new Threshold(limit, Double.POSITIVE_INFINITY, false, format(limit) + ":");
+    }
+
+    /**
+     * Alert if the value is outside the range ({@code start:end}).
+     * @param start Least acceptable value.
+     * @param end Greatest acceptable value.
+     * @return Threshold.
+     */
+    public static Threshold outside(double start, double end) {
+
+        return new Threshold(start, end, false, format(start) + ":" + format(end));
+    }
+
+    /**
+     * Alert if the value is inside the range, inclusive ({@code @start:end}).
+     * @param start Least value to alert on.
+     * @param end Greatest value to alert on.
+     * @return Threshold.
+     */
+    public static Threshold inside(double start, double end) {
+
+        return new Threshold(start, end, true, "@" + format(start) + ":" + format(end));
+    }
+
+    /**
+     * Whether the value should raise an alert.
+     * @param value Value to evaluate.
+     * @return true if the value is outside the range (or inside it, for "@" ranges).
+     */
+    public boolean alerts(double value) {
+
+        boolean inRange = value >= start && value <= end;
+
+        return inside == inRange;
+    }
+
+    /**
+     * Whether the value should raise an alert.
+     * @param value Value to evaluate.
+     * @return true if the value is outside the range (or inside it, for "@" ranges).
+     */
+    public boolean alerts(long value) {
+
+        return alerts((double) value);
+    }
+
+    /**
+     * Start of the range; negative infinity for "~".
+     * @return Start of the range.
+     */
+    public double getStart() {
+        return start;
+    }
+
+    /**
+     * End of the range; positive infinity if omitted.
+     * @return End of the range.
+     */
+    public double getEnd() {
+        return end;
+    }
+
+    /**
+     * Whether values inside the range raise an alert ("@" ranges), rather than values outside it.
+     * @return true for "@" ranges.
+     */
+    public boolean isInside() {
+        return inside;
+    }
+
+    /**
+     * The threshold in the Nagios range syntax; also its JSON representation.
+     * @return Threshold in the range syntax.
+     */
+    @JsonValue
+    @Override
+    public String toString() {
+        return range;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) return true;
+
+        if (!(obj instanceof Threshold)) return false;
+
+        Threshold other = (Threshold) obj;
+
+        return Double.compare(start, other.start) == 0
+                && Double.compare(end, other.end) == 0
+                && inside == other.inside;
+    }
+
+    @Override
+    public int hashCode() {
+
+        long bits = Double.doubleToLongBits(start) * 31 + Double.doubleToLongBits(end);
+
+        return (int) (bits ^ (bits >>> 32)) * 31 + (inside ? 1 : 0);
+    }
+
+    private static double parseBound(String text, String range) {
+
+        try {
+
+            return Double.parseDouble(text);
+
+        } catch (NumberFormatException e) {
+
+            throw new IllegalArgumentException(String.format("[%s] is not a valid range", range), e);
+        }
+    }
+
+    // Integral bounds are written without a fraction ("10", not "10.0").
+    private static String format(double bound) {
+
+        StringBuilder sb = new StringBuilder();
+
+        try {
+
+            if (bound == Math.rint(bound) && Math.abs(bound) < 1e15) PluginOutput.appendLong(sb, (long) bound);
+            else PluginOutput.appendDouble(sb, bound);
+
+        } catch (IOException e) {
+
+            throw new AssertionError(e);
+        }
+
+        return sb.toString();
+    }
+}
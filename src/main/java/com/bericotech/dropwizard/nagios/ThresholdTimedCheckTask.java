@@ -0,0 +1,59 @@
+package com.bericotech.dropwizard.nagios;
+
+/**
+ * A {@link TimedCheckTask} evaluating the 'tte' (time-to-execute) against {@link Threshold}s in
+ * seconds, which are parsed once:
+ *
+ * <pre>
+ * new ThresholdTimedCheckTask("db", Threshold.parse("~:0.5"), Threshold.parse("~:2")) { ... }
+ * </pre>
+ *
+ * Either threshold may be null, for no warning or no critical level.
+ */
+public abstract class ThresholdTimedCheckTask extends TimedCheckTask {
+
+    private final Threshold warningThreshold;
+
+    private final Threshold criticalThreshold;
+
+    /**
+     * Provide the name of the task and its thresholds.
+     * @param name Name of the task.
+     * @param warningThreshold Time to execute in seconds considered "warning" (suboptimal), e.g. {@code ~:0.5}.
+     * @param criticalThreshold Time to execute in seconds considered "critical" (unacceptable).
+     */
+    public ThresholdTimedCheckTask(String name, Threshold warningThreshold, Threshold criticalThreshold) {
+        super(name);
+
+        this.warningThreshold = warningThreshold;
+        this.criticalThreshold = criticalThreshold;
+    }
+
+    /**
+     * Threshold of the time to execute, in seconds, considered "warning".
+     * @return Warning threshold, or null.
+     */
+    public Threshold getWarningThreshold() {
+        return warningThreshold;
+    }
+
+    /**
+     * Threshold of the time to execute, in seconds, considered "critical".
+     * @return Critical threshold, or null.
+     */
+    public Threshold getCriticalThreshold() {
+        return criticalThreshold;
+    }
+
+    @Override
+    Level evaluate(long nanos) {
+
+        return Level.evaluate(nanos * Conversion.NS_TO_SECONDS, warningThreshold, criticalThreshold);
+    }
+
+    @Override
+    PerfDatum.PerfDatumBuilder withCriteria(PerfDatum.PerfDatumBuilder builder) {
+
+        return builder.criteria(warningThreshold, criticalThreshold);
+    }
+}
@@ -0,0 +1,208 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the 'tte' (time-to-execute) of a check and provides it as PerfDatum, evaluated against
+ * thresholds.  Extend {@link NagiosTimedCheckTask} for "greater than" thresholds in nanoseconds, or
+ * {@link ThresholdTimedCheckTask} for {@link Threshold}s in seconds.
+ *
+ * With {@link #setLatencyWindow(long, TimeUnit, double)}, the task keeps a histogram of all its recent
+ * executions (polls as well as background and batch runs), reports tte_p50, tte_p99, tte_max and
+ * tte_count, and evaluates the chosen percentile instead of the single 'tte' sample.
+ */
+public abstract class TimedCheckTask extends NagiosCheckTask {
+
+    // Null unless a latency window was set.
+    private volatile LatencyHistogram latencies;
+
+    private volatile double evaluatedPercentile;
+
+    TimedCheckTask(String name) {
+        super(name);
+    }
+
+    /**
+     * Level of the time to execute.
+     * @param nanos Time to execute (or its percentile) in nanoseconds.
+     * @return Level.
+     */
+    abstract Level evaluate(long nanos);
+
+    /**
+     * Add the thresholds as warning and critical criteria of the evaluated time, in seconds.
+     * @param builder Builder of the datum.
+     * @return The builder.
+     */
+    abstract PerfDatum.PerfDatumBuilder withCriteria(PerfDatum.PerfDatumBuilder builder);
+
+    /**
+     * Keep a histogram of the executions within the window, report its percentiles as perf data,
+     * and evaluate the level against the given percentile rather than the latest execution.
+     * @param window Length of the window; the histogram covers one to two windows.
+     * @param unit Unit of the window.
+     * @param evaluatedPercentile Percentile the thresholds apply to, e.g. 99.
+     */
+    public void setLatencyWindow(long window, TimeUnit unit, double evaluatedPercentile) {
+
+        Preconditions.checkArgument(
+                evaluatedPercentile > 0 && evaluatedPercentile <= 100, "percentile must be between 0 and 100");
+
+        this.evaluatedPercentile = evaluatedPercentile;
+        this.latencies = new LatencyHistogram(window, unit);
+    }
+
+    /**
+     * Histogram of recent executions, if a latency window was set.
+     * @return Histogram, or null.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Execute the task that should be timed.
+     * @param requestParameters Request parameters.
+     * @return Optionally, any extra performance data you would like to provide.
+     * @throws Throwable Thrown if an error occurred during the execution of the health check.
+     */
+    public abstract Optional<Collection<PerfDatum>>
+        doTimedCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable;
+
+    /**
+     * Executes the timed check.
+     * @param requestParameters Query or Form parameters submitted to the HTTP servlet.
+     * @return MessagePayload representing the timed check.
+     * @throws Throwable Thrown if an error occurred during the execution of the health check.
+     */
+    @Override
+    public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+        return performTimedCheck(requestParameters, true);
+    }
+
+    // The cold execution of a warm-up would be an outlier of the histogram for a whole window.
+    @Override
+    MessagePayload performWarmUpCheck(ImmutableMultimap<String, String> requestParameters, boolean cold) throws Throwable {
+
+        return performTimedCheck(requestParameters, !cold);
+    }
+
+    private MessagePayload performTimedCheck(ImmutableMultimap<String, String> requestParameters,
+                                             boolean recorded) throws Throwable {
+
+        LatencyHistogram latencies = this.latencies;
+
+        long start = System.nanoTime();
+
+        Optional<Collection<PerfDatum>> extraPerfData;
+
+        try {
+
+            extraPerfData = doTimedCheck(requestParameters);
+
+        } finally {
+
+            if (latencies != null && recorded) latencies.record(System.nanoTime() - start);
+        }
+
+        long total = System.nanoTime() - start;
+
+        double timeInSeconds = Conversion.nsToS(total);
+
+        ArrayList<PerfDatum> perfData = Lists.newArrayList();
+
+        String message = String.format("%s took %ss;", this.getName(), timeInSeconds);
+
+        // The value the thresholds apply to, and the perf datum carrying them.
+        long evaluated = total;
+
+        String evaluatedLabel = "tte";
+
+        if (latencies != null) {
+
+            double percentile = evaluatedPercentile;
+
+            evaluated = latencies.getValueAtPercentile(percentile);
+
+            evaluatedLabel = "tte_p" + formatPercentile(percentile);
+
+            message += String.format(" p%s %ss over %d executions;",
+                    formatPercentile(percentile), Conversion.nsToS(evaluated), latencies.getCount());
+        }
+
+        Level level = evaluate(evaluated);
+
+        perfData.add(timeDatum("tte", timeInSeconds, evaluatedLabel));
+
+        if (latencies != null) {
+
+            if (!evaluatedLabel.equals("tte_p50") && !evaluatedLabel.equals("tte_p99")) {
+
+                perfData.add(timeDatum(evaluatedLabel, Conversion.nsToS(evaluated), evaluatedLabel));
+            }
+
+            perfData.add(timeDatum("tte_p50", Conversion.nsToS(latencies.getValueAtPercentile(50)), evaluatedLabel));
+            perfData.add(timeDatum("tte_p99", Conversion.nsToS(latencies.getValueAtPercentile(99)), evaluatedLabel));
+            perfData.add(timeDatum("tte_max", Conversion.nsToS(latencies.getMax()), evaluatedLabel));
+            perfData.add(PerfDatum.builder("tte_count", latencies.getCount()).uom(PerfDatum.UOM.Counter).build());
+        }
+
+        if (extraPerfData.isPresent()){
+
+            perfData.addAll(extraPerfData.get());
+        }
+
+        return new MessagePayloadBuilder()
+                .withLevel(level)
+                .withMessage(message)
+                .withPerfData(perfData)
+                .build();
+    }
+
+    // A time in seconds; the datum the thresholds are evaluated against carries them as criteria.
+    private PerfDatum timeDatum(String label, double seconds, String evaluatedLabel) {
+
+        PerfDatum.PerfDatumBuilder builder = PerfDatum.builder(label, seconds);
+
+        if (!label.equals("tte")) builder.uom(PerfDatum.UOM.Seconds);
+
+        if (!label.equals(evaluatedLabel)) return builder.build();
+
+        return withCriteria(builder).build();
+    }
+
+    private static String formatPercentile(double percentile) {
+
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    /**
+     * Helper for constructing the Optional Collection of PerfData.
+     * @param perfData Variable set of performance data.
+     * @return Collection of PerfData wrapped in an Optional.
+     */
+    public static Optional<Collection<PerfDatum>> withPerfData(PerfDatum... perfData){
+
+        Collection<PerfDatum> perfDataList = Arrays.asList(perfData);
+
+        return Optional.of(perfDataList);
+    }
+
+    /**
+     * Helper for constructing an absent collection of PerfData.
+     * @return Absent collection of PerfData.
+     */
+    public static Optional<Collection<PerfDatum>> noPerfData(){
+
+        return Optional.absent();
+    }
+}
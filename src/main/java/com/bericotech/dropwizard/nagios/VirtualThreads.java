@@ -0,0 +1,72 @@
+package com.bericotech.dropwizard.nagios;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, for {@link CheckExecutors}.  This version is used on runtimes older
+ * than JDK 21, which don't have virtual threads; the multi-release jar replaces it with the version
+ * in {@code src/main/java21} on JDK 21 and later.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * Whether the runtime supports virtual threads.
+     * @return false.
+     */
+    static boolean isSupported() {
+
+        return false;
+    }
+
+    /**
+     * An executor starting a virtual thread per task.
+     * @param namePrefix Prefix of the names of the threads, followed by a counter.
+     * @return Never returns.
+     * @throws UnsupportedOperationException always.
+     */
+    static ExecutorService newExecutor(String namePrefix) {
+
+        throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+    }
+
+    /**
+     * Whether the thread is a virtual thread.
+     * @param thread A thread.
+     * @return false.
+     */
+    static boolean isVirtual(Thread thread) {
+
+        return false;
+    }
+
+    /**
+     * Report virtual threads that are pinned to their carrier thread for longer than the threshold.
+     * @param thresholdNanos Shortest pinning reported.
+     * @param namePrefix Prefix of the names of the threads to report.
+     * @return false, as there is nothing to report.
+     */
+    static boolean startPinningDiagnostics(long thresholdNanos, String namePrefix) {
+
+        return false;
+    }
+
+    /**
+     * Stop reporting pinned virtual threads.
+     * @return false, as nothing is reported.
+     */
+    static boolean stopPinningDiagnostics() {
+
+        return false;
+    }
+
+    /**
+     * Number of times threads were reported as pinned.
+     * @return 0.
+     */
+    static long getPinnedCount() {
+
+        return 0;
+    }
+}
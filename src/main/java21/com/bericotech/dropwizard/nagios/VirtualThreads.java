@@ -0,0 +1,108 @@
+package com.bericotech.dropwizard.nagios;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Access to virtual threads, for {@link CheckExecutors}.  This is the version for JDK 21 and later,
+ * packaged in {@code META-INF/versions/21} of the multi-release jar.  Pinning is observed through
+ * the {@code jdk.VirtualThreadPinned} event of Flight Recorder, streamed in process.
+ */
+final class VirtualThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final AtomicLong pinned = new AtomicLong();
+
+    // Guarded by VirtualThreads.class.
+    private static RecordingStream diagnostics;
+
+    private VirtualThreads() {}
+
+    static boolean isSupported() {
+
+        return true;
+    }
+
+    static ExecutorService newExecutor(String namePrefix) {
+
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+
+    static boolean isVirtual(Thread thread) {
+
+        return thread.isVirtual();
+    }
+
+    static synchronized boolean startPinningDiagnostics(long thresholdNanos, String namePrefix) {
+
+        if (diagnostics != null) diagnostics.close();
+
+        RecordingStream stream = new RecordingStream();
+
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofNanos(thresholdNanos)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, event -> report(event, namePrefix));
+        stream.startAsync();
+
+        diagnostics = stream;
+
+        return true;
+    }
+
+    static synchronized boolean stopPinningDiagnostics() {
+
+        if (diagnostics == null) return false;
+
+        // Also ends the (non-daemon) thread the events are streamed on.
+        diagnostics.close();
+
+        diagnostics = null;
+
+        return true;
+    }
+
+    private static void report(RecordedEvent event, String namePrefix) {
+
+        RecordedThread thread = event.getThread();
+
+        String name = thread == null ? null : thread.getJavaName();
+
+        if (name == null || !name.startsWith(namePrefix)) return;
+
+        pinned.incrementAndGet();
+
+        StringBuilder frames = new StringBuilder();
+
+        RecordedStackTrace stackTrace = event.getStackTrace();
+
+        if (stackTrace != null) {
+
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+
+                frames.append("\n\tat ").append(frame.getMethod().getType().getName())
+                        .append('.').append(frame.getMethod().getName())
+                        .append(':').append(frame.getLineNumber());
+            }
+        }
+
+        LOG.warn("Check thread {} was pinned to its carrier for {}ms, blocking inside synchronized or native code;"
+                + " a ReentrantLock lets it unmount instead{}", name, event.getDuration().toMillis(), frames);
+    }
+
+    static long getPinnedCount() {
+
+        return pinned.get();
+    }
+}
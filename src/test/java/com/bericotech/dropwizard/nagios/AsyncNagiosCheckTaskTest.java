@@ -0,0 +1,200 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class AsyncNagiosCheckTaskTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    private final PendingTask task = new PendingTask();
+
+    @Test
+    public void results_complete_with_the_probe() throws Exception {
+
+        ListenableFuture<CheckResult> result = task.checkAsync(NO_PARAMETERS);
+
+        assertFalse(result.isDone());
+
+        task.pending.take().set(new MessagePayloadBuilder().withLevel(Level.OK).withMessage("pong").build());
+
+        assertEquals("pong", result.get(1, TimeUnit.SECONDS).getPayload().getMessage());
+    }
+
+    @Test
+    public void failures_are_reported_like_exceptions() throws Exception {
+
+        ListenableFuture<CheckResult> result = task.checkAsync(NO_PARAMETERS);
+
+        task.pending.take().setException(new IllegalStateException("connection reset"));
+
+        MessagePayload payload = result.get(1, TimeUnit.SECONDS).getPayload();
+
+        assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_ERROR, payload.getLevel());
+        assertEquals("connection reset", payload.getMessage());
+    }
+
+    @Test
+    public void probes_are_cancelled_after_the_timeout() throws Exception {
+
+        task.setTimeout(20, TimeUnit.MILLISECONDS);
+
+        MessagePayload payload = task.checkAsync(NO_PARAMETERS).get(1, TimeUnit.SECONDS).getPayload();
+
+        assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_TIMEOUT, payload.getLevel());
+        assertTrue(payload.getMessage().startsWith("pending timed out after "));
+        assertTrue(task.pending.take().isCancelled());
+    }
+
+    @Test
+    public void synchronous_polls_wait_for_the_probe() throws Exception {
+
+        ExecutorService poller = Executors.newSingleThreadExecutor();
+
+        try {
+
+            Future<CheckResult> result = poller.submit(new Callable<CheckResult>() {
+
+                @Override
+                public CheckResult call() {
+
+                    return task.check(NO_PARAMETERS);
+                }
+            });
+
+            task.pending.take().setException(new IllegalStateException("connection reset"));
+
+            assertEquals("connection reset", result.get(1, TimeUnit.SECONDS).getPayload().getMessage());
+
+        } finally {
+
+            poller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void servlet_requests_dont_hold_container_threads() throws Exception {
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        Server server = new Server(new QueuedThreadPool(8, 2));
+
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+
+        server.addConnector(connector);
+
+        ServletContextHandler context = new ServletContextHandler();
+
+        ServletHolder servlet = new ServletHolder(new NagiosCheckServlet(checks));
+
+        servlet.setAsyncSupported(true);
+
+        context.addServlet(servlet, "/nagios/*");
+
+        server.setHandler(context);
+        server.start();
+
+        int requests = 32;
+
+        ExecutorService pollers = Executors.newFixedThreadPool(requests);
+
+        try {
+
+            final URL url = new URL("http://localhost:" + connector.getLocalPort() + "/nagios/pending");
+
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+
+            for (int i = 0; i < requests; i++) {
+
+                responses.add(pollers.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+
+                        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+                        try (InputStream in = connection.getInputStream()) {
+
+                            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+                        }
+                    }
+                }));
+            }
+
+            // Far more probes are in flight than the container has threads.
+            List<SettableFuture<MessagePayload>> probes = new ArrayList<SettableFuture<MessagePayload>>();
+
+            for (int i = 0; i < requests; i++) {
+
+                SettableFuture<MessagePayload> probe = task.pending.poll(5, TimeUnit.SECONDS);
+
+                assertNotNull("Only " + i + " probes started", probe);
+
+                probes.add(probe);
+            }
+
+            for (SettableFuture<MessagePayload> probe : probes) {
+
+                probe.set(new MessagePayloadBuilder().withLevel(Level.OK).withMessage("pong").build());
+            }
+
+            for (Future<String> response : responses) {
+
+                assertEquals("OK - pong\n", response.get(5, TimeUnit.SECONDS));
+            }
+
+        } finally {
+
+            pollers.shutdownNow();
+
+            server.stop();
+        }
+    }
+
+    static class PendingTask extends AsyncNagiosCheckTask {
+
+        final BlockingQueue<SettableFuture<MessagePayload>> pending = new LinkedBlockingQueue<SettableFuture<MessagePayload>>();
+
+        PendingTask() {
+
+            super("pending");
+        }
+
+        @Override
+        public ListenableFuture<MessagePayload> performCheckAsync(ImmutableMultimap<String, String> requestParameters) {
+
+            SettableFuture<MessagePayload> probe = SettableFuture.create();
+
+            pending.add(probe);
+
+            return probe;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class CheckBulkheadTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    private final ExecutorService pollers = Executors.newCachedThreadPool();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void stopPollers() {
+
+        release.countDown();
+
+        pollers.shutdownNow();
+    }
+
+    @Test
+    public void checks_beyond_the_limit_are_rejected() throws Exception {
+
+        CheckBulkhead bulkhead = new CheckBulkhead(1, 0, 1, TimeUnit.SECONDS);
+
+        NagiosCheckTask slow = blockingTask("slow", bulkhead);
+        NagiosCheckTask other = blockingTask("other", bulkhead);
+
+        Future<CheckResult> running = poll(slow);
+
+        awaitRunning(bulkhead, 1);
+
+        MessagePayload rejected = other.check(NO_PARAMETERS).getPayload();
+
+        assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_REJECTION, rejected.getLevel());
+        assertEquals("other rejected: saturated", rejected.getMessage());
+        assertEquals(1, bulkhead.getRejectedCount());
+
+        release.countDown();
+
+        assertEquals(Level.OK, running.get(1, TimeUnit.SECONDS).getPayload().getLevel());
+        assertEquals(0, bulkhead.getRunningCount());
+    }
+
+    @Test
+    public void low_priority_checks_are_not_queued() throws Exception {
+
+        CheckBulkhead bulkhead = new CheckBulkhead(1, 10, 10, TimeUnit.SECONDS);
+
+        assertTrue(bulkhead.acquire("a", CheckBulkhead.Priority.NORMAL));
+
+        long start = System.nanoTime();
+
+        assertFalse(bulkhead.acquire("b", CheckBulkhead.Priority.LOW));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        bulkhead.release("a");
+
+        assertTrue(bulkhead.acquire("b", CheckBulkhead.Priority.LOW));
+    }
+
+    @Test
+    public void high_priority_checks_are_admitted_first() throws Exception {
+
+        final CheckBulkhead bulkhead = new CheckBulkhead(1, 10, 10, TimeUnit.SECONDS);
+
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+
+        assertTrue(bulkhead.acquire("busy", CheckBulkhead.Priority.NORMAL));
+
+        Future<?> normal = acquireAndRelease(bulkhead, "normal", CheckBulkhead.Priority.NORMAL, admitted);
+
+        awaitQueued(bulkhead, 1);
+
+        Future<?> high = acquireAndRelease(bulkhead, "high", CheckBulkhead.Priority.HIGH, admitted);
+
+        awaitQueued(bulkhead, 2);
+
+        bulkhead.release("busy");
+
+        normal.get(1, TimeUnit.SECONDS);
+        high.get(1, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("high", "normal"), admitted);
+    }
+
+    @Test
+    public void executions_of_one_check_are_limited() throws Exception {
+
+        CheckBulkhead bulkhead = new CheckBulkhead(4, 0, 1, TimeUnit.SECONDS);
+
+        bulkhead.setDefaultCheckLimit(1);
+        bulkhead.setCheckLimit("wide", 2);
+
+        assertTrue(bulkhead.acquire("narrow", CheckBulkhead.Priority.NORMAL));
+        assertFalse(bulkhead.acquire("narrow", CheckBulkhead.Priority.NORMAL));
+
+        assertTrue(bulkhead.acquire("wide", CheckBulkhead.Priority.NORMAL));
+        assertTrue(bulkhead.acquire("wide", CheckBulkhead.Priority.NORMAL));
+        assertFalse(bulkhead.acquire("wide", CheckBulkhead.Priority.NORMAL));
+
+        assertEquals(3, bulkhead.getRunningCount());
+    }
+
+    @Test
+    public void queued_checks_are_rejected_after_the_maximum_wait() throws Exception {
+
+        CheckBulkhead bulkhead = new CheckBulkhead(1, 1, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(bulkhead.acquire("a", CheckBulkhead.Priority.NORMAL));
+        assertFalse(bulkhead.acquire("b", CheckBulkhead.Priority.HIGH));
+
+        assertEquals(0, bulkhead.getQueuedCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void rejections_are_recorded_in_the_metrics() throws Exception {
+
+        MetricRegistry registry = new MetricRegistry();
+
+        CheckBulkhead bulkhead = new CheckBulkhead(1, 0, 1, TimeUnit.SECONDS);
+
+        NagiosCheckTask task = blockingTask("rejected", bulkhead);
+
+        task.setMetricRegistry(registry);
+
+        assertTrue(bulkhead.acquire("other", CheckBulkhead.Priority.HIGH));
+
+        task.check(NO_PARAMETERS);
+
+        assertEquals(1, registry.meter("nagios.rejected.rejections").getCount());
+        assertEquals(0, registry.timer("nagios.rejected.executions").getCount());
+    }
+
+    @Test
+    public void rejections_are_not_cached() throws Exception {
+
+        CheckBulkhead bulkhead = new CheckBulkhead(1, 0, 1, TimeUnit.SECONDS);
+
+        NagiosCheckTask task = blockingTask("cached", bulkhead);
+
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        assertTrue(bulkhead.acquire("other", CheckBulkhead.Priority.HIGH));
+
+        assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_REJECTION, task.check(NO_PARAMETERS).getPayload().getLevel());
+
+        bulkhead.release("other");
+
+        release.countDown();
+
+        assertEquals(Level.OK, task.check(NO_PARAMETERS).getPayload().getLevel());
+    }
+
+    private NagiosCheckTask blockingTask(String name, CheckBulkhead bulkhead) {
+
+        NagiosCheckTask task = new NagiosCheckTask(name) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                release.await();
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("done").build();
+            }
+        };
+
+        task.setBulkhead(bulkhead);
+
+        return task;
+    }
+
+    private Future<CheckResult> poll(final NagiosCheckTask task) {
+
+        return pollers.submit(new Callable<CheckResult>() {
+
+            @Override
+            public CheckResult call() {
+
+                return task.check(NO_PARAMETERS);
+            }
+        });
+    }
+
+    private Future<?> acquireAndRelease(final CheckBulkhead bulkhead, final String name,
+                                        final CheckBulkhead.Priority priority, final List<String> admitted) {
+
+        return pollers.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+
+                assertTrue(bulkhead.acquire(name, priority));
+
+                admitted.add(name);
+
+                bulkhead.release(name);
+
+                return null;
+            }
+        });
+    }
+
+    private static void awaitRunning(CheckBulkhead bulkhead, int count) throws InterruptedException {
+
+        while (bulkhead.getRunningCount() < count) Thread.sleep(1);
+    }
+
+    private static void awaitQueued(CheckBulkhead bulkhead, int count) throws InterruptedException {
+
+        while (bulkhead.getQueuedCount() < count) Thread.sleep(1);
+    }
+}
@@ -0,0 +1,150 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class CheckCircuitBreakerTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    @Test
+    public void opens_after_consecutive_failures_and_reports_the_last_one() {
+
+        FlakyTask task = new FlakyTask();
+
+        task.setCircuitBreaker(new CheckCircuitBreaker(2, 1, 1, TimeUnit.HOURS));
+
+        assertEquals("connection refused | breaker_state=0 | breaker_trips=0c",
+                task.check(NO_PARAMETERS).getPayload().getMessage());
+
+        task.check(NO_PARAMETERS);
+
+        MessagePayload open = task.check(NO_PARAMETERS).getPayload();
+
+        assertEquals(2, task.executions.get());
+        assertEquals(Level.CRITICAL, open.getLevel());
+        assertEquals("connection refused (circuit open) | breaker_state=1 | breaker_trips=1c", open.getMessage());
+        assertEquals(CheckCircuitBreaker.State.OPEN, task.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void successes_reset_the_count_of_failures() {
+
+        FlakyTask task = new FlakyTask();
+
+        task.setCircuitBreaker(new CheckCircuitBreaker(2, 1, 1, TimeUnit.HOURS));
+
+        task.check(NO_PARAMETERS);
+
+        task.failing = false;
+
+        assertEquals(Level.OK, task.check(NO_PARAMETERS).getPayload().getLevel());
+
+        task.failing = true;
+
+        task.check(NO_PARAMETERS);
+
+        assertEquals(CheckCircuitBreaker.State.CLOSED, task.getCircuitBreaker().getState());
+        assertEquals(3, task.executions.get());
+    }
+
+    @Test
+    public void timeouts_count_as_failures() {
+
+        FlakyTask task = new FlakyTask() {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                executions.incrementAndGet();
+
+                try {
+
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).build();
+            }
+        };
+
+        task.setTimeout(200, TimeUnit.MILLISECONDS);
+        task.setCircuitBreaker(new CheckCircuitBreaker(1, 1, 1, TimeUnit.HOURS));
+
+        task.check(NO_PARAMETERS);
+
+        long start = System.nanoTime();
+
+        MessagePayload open = task.check(NO_PARAMETERS).getPayload();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(open.getBaseMessage().endsWith("(circuit open)"));
+        assertEquals(1, task.executions.get());
+    }
+
+    @Test
+    public void a_single_trial_runs_after_the_backoff() throws Exception {
+
+        FlakyTask task = new FlakyTask();
+
+        CheckCircuitBreaker breaker = new CheckCircuitBreaker(1, 50, 1000, TimeUnit.MILLISECONDS);
+
+        task.setCircuitBreaker(breaker);
+
+        task.check(NO_PARAMETERS);
+
+        Thread.sleep(60);
+
+        // The first poll after the backoff takes the trial; polls meanwhile get the last failure.
+        assertTrue(breaker.allowExecution());
+        assertEquals(CheckCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(task.check(NO_PARAMETERS).getPayload().getBaseMessage().endsWith("(circuit open)"));
+        assertEquals(1, task.executions.get());
+
+        breaker.record(new MessagePayloadBuilder().withLevel(Level.CRITICAL).withMessage("still refused").build());
+
+        // The failed trial doubled the backoff.
+        Thread.sleep(50);
+
+        assertFalse(breaker.allowExecution());
+
+        Thread.sleep(60);
+
+        task.failing = false;
+
+        assertEquals(Level.OK, task.check(NO_PARAMETERS).getPayload().getLevel());
+        assertEquals(CheckCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getTripCount());
+    }
+
+    static class FlakyTask extends NagiosCheckTask {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        volatile boolean failing = true;
+
+        FlakyTask() {
+
+            super("flaky");
+        }
+
+        @Override
+        public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+            executions.incrementAndGet();
+
+            if (failing) throw new IllegalStateException("connection refused");
+
+            return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("connected").build();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class CheckDependencyTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    @Test
+    public void dependents_of_a_critical_check_are_skipped_without_probing() {
+
+        CountingTask db = new CountingTask("db-primary", Level.CRITICAL);
+        CountingTask repository = new CountingTask("repository", Level.OK);
+
+        repository.setDependencies(db);
+
+        MessagePayload payload = repository.check(NO_PARAMETERS).getPayload();
+
+        assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_SKIPPED_TASK, payload.getLevel());
+        assertEquals("skipped: depends on db-primary CRITICAL", payload.getMessage());
+        assertEquals(1, db.executions.get());
+        assertEquals(0, repository.executions.get());
+    }
+
+    @Test
+    public void dependents_of_a_warning_check_are_executed() {
+
+        CountingTask db = new CountingTask("db-primary", Level.WARNING);
+        CountingTask repository = new CountingTask("repository", Level.OK);
+
+        repository.setDependencies(db);
+
+        assertEquals(Level.OK, repository.check(NO_PARAMETERS).getPayload().getLevel());
+        assertEquals(1, repository.executions.get());
+    }
+
+    @Test
+    public void the_failure_furthest_upstream_is_reported() {
+
+        CountingTask network = new CountingTask("network", Level.CRITICAL);
+        CountingTask db = new CountingTask("db-primary", Level.CRITICAL);
+        CountingTask repository = new CountingTask("repository", Level.OK);
+
+        db.setDependencies(network);
+        repository.setDependencies(db);
+
+        assertEquals("skipped: depends on network CRITICAL", repository.check(NO_PARAMETERS).getPayload().getMessage());
+        assertEquals(0, db.executions.get());
+        assertTrue(repository.dependsOn(network));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cycles_are_rejected() {
+
+        CountingTask a = new CountingTask("a", Level.OK);
+        CountingTask b = new CountingTask("b", Level.OK);
+        CountingTask c = new CountingTask("c", Level.OK);
+
+        b.setDependencies(a);
+        c.setDependencies(b);
+        a.setDependencies(c);
+    }
+
+    @Test
+    public void batches_run_independent_checks_in_parallel_and_dependents_after_them() throws Exception {
+
+        // Both roots have to be running at once for either to complete.
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+
+        CountingTask db = new CountingTask("db-primary", Level.CRITICAL) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                awaitOther(bothRunning);
+
+                return super.performCheck(requestParameters);
+            }
+        };
+
+        CountingTask cache = new CountingTask("cache", Level.OK) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                awaitOther(bothRunning);
+
+                return super.performCheck(requestParameters);
+            }
+        };
+
+        CountingTask repository = new CountingTask("repository", Level.OK);
+        CountingTask sessions = new CountingTask("sessions", Level.OK);
+
+        repository.setDependencies(db);
+        sessions.setDependencies(cache);
+
+        NagiosCheckRegistry registry = new NagiosCheckRegistry();
+
+        registry.register(repository);
+        registry.register(sessions);
+        registry.register(db);
+        registry.register(cache);
+
+        Map<String, CheckResult> results = new NagiosBatchTask(registry).checkAll(NO_PARAMETERS);
+
+        assertEquals("[cache, db-primary, repository, sessions]", results.keySet().toString());
+        assertEquals("skipped: depends on db-primary CRITICAL", results.get("repository").getPayload().getMessage());
+        assertEquals(Level.OK, results.get("sessions").getPayload().getLevel());
+
+        // Dependencies run once per batch; their results are shared with dependents.
+        assertEquals(1, db.executions.get());
+        assertEquals(1, cache.executions.get());
+        assertEquals(0, repository.executions.get());
+        assertEquals(1, sessions.executions.get());
+    }
+
+    @Test
+    public void batches_with_parameters_check_dependencies_without_them() throws Exception {
+
+        // CRITICAL only for the batch's parameters, which dependencies are not checked with.
+        CountingTask db = new CountingTask("db-primary", Level.OK) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                if (requestParameters.isEmpty()) return super.performCheck(requestParameters);
+
+                return new MessagePayloadBuilder().withLevel(Level.CRITICAL).withMessage("replica lagging").build();
+            }
+        };
+
+        CountingTask repository = new CountingTask("repository", Level.OK);
+
+        repository.setDependencies(db);
+
+        NagiosCheckRegistry registry = new NagiosCheckRegistry();
+
+        registry.register(repository);
+        registry.register(db);
+
+        Map<String, CheckResult> results = new NagiosBatchTask(registry).checkAll(ImmutableMultimap.of("replica", "2"));
+
+        assertEquals(Level.CRITICAL, results.get("db-primary").getPayload().getLevel());
+        assertEquals(Level.OK, results.get("repository").getPayload().getLevel());
+        assertEquals(Level.OK, repository.check(ImmutableMultimap.of("replica", "2")).getPayload().getLevel());
+    }
+
+    @Test
+    public void scheduled_dependents_are_skipped() throws Exception {
+
+        CountingTask db = new CountingTask("db-primary", Level.CRITICAL);
+        CountingTask repository = new CountingTask("repository", Level.OK);
+
+        repository.setDependencies(db);
+
+        CheckScheduler scheduler = new CheckScheduler(1);
+
+        scheduler.schedule(repository, 10, 1000, TimeUnit.MILLISECONDS);
+        scheduler.start();
+
+        try {
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+            while (db.executions.get() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+
+            assertTrue(db.executions.get() >= 2);
+            assertEquals(0, repository.executions.get());
+
+        } finally {
+
+            scheduler.stop();
+        }
+    }
+
+    private static void awaitOther(CountDownLatch bothRunning) {
+
+        bothRunning.countDown();
+
+        try {
+
+            if (!bothRunning.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("Checks ran one after the other");
+
+        } catch (InterruptedException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class CountingTask extends NagiosCheckTask {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        private final Level level;
+
+        CountingTask(String name, Level level) {
+
+            super(name);
+
+            this.level = level;
+        }
+
+        @Override
+        public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+            executions.incrementAndGet();
+
+            return new MessagePayloadBuilder().withLevel(level).withMessage(getName() + " checked").build();
+        }
+    }
+}
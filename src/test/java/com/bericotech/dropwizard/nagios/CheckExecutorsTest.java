@@ -0,0 +1,141 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+
+public class CheckExecutorsTest {
+
+    @Test
+    public void virtual_thread_executor_falls_back_to_platform_threads() throws Exception {
+
+        Thread thread = CheckExecutors.virtualThreadExecutor().submit(new Callable<Thread>() {
+
+            @Override
+            public Thread call() {
+
+                return Thread.currentThread();
+            }
+
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(CheckExecutors.isVirtualThreadSupported(), VirtualThreads.isVirtual(thread));
+
+        if (!CheckExecutors.isVirtualThreadSupported()) {
+
+            assertSame(CheckExecutors.defaultExecutor(), CheckExecutors.virtualThreadExecutor());
+            assertFalse(CheckExecutors.enablePinningDiagnostics(20, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void checks_with_a_timeout_run_on_the_virtual_thread_executor() throws Exception {
+
+        NagiosCheckTask task = new NagiosCheckTask("thread") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                String name = Thread.currentThread().getName();
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage(name).build();
+            }
+        };
+
+        task.setExecutor(CheckExecutors.virtualThreadExecutor());
+        task.setTimeout(1, TimeUnit.SECONDS);
+
+        String thread = task.check(ImmutableMultimap.<String, String>of()).getPayload().getMessage();
+
+        assertTrue(thread, thread.startsWith(CheckExecutors.isVirtualThreadSupported()
+                ? CheckExecutors.VIRTUAL_THREAD_PREFIX
+                : "nagios-check-"));
+    }
+
+    @Test
+    public void pinning_diagnostics_report_pinned_checks_and_stop_with_the_application() throws Exception {
+
+        // Blocking inside synchronized pins a virtual thread up to JDK 23 (JEP 491).
+        String version = System.getProperty("java.specification.version");
+
+        assumeTrue(CheckExecutors.isVirtualThreadSupported() && Integer.parseInt(version) < 24);
+
+        Set<Thread> before = nonDaemonThreads();
+
+        PinningDiagnostics diagnostics = new PinningDiagnostics(10, TimeUnit.MILLISECONDS);
+
+        diagnostics.start();
+
+        try {
+
+            long pinned = CheckExecutors.getPinnedCount();
+
+            final Object lock = new Object();
+
+            CheckExecutors.virtualThreadExecutor().submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+
+                    synchronized (lock) {
+
+                        Thread.sleep(100);
+                    }
+
+                    return null;
+                }
+
+            }).get(1, TimeUnit.SECONDS);
+
+            // Events are streamed with a delay of up to a second or so.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (CheckExecutors.getPinnedCount() == pinned && System.nanoTime() < deadline) Thread.sleep(10);
+
+            assertTrue(CheckExecutors.getPinnedCount() > pinned);
+
+        } finally {
+
+            diagnostics.stop();
+        }
+
+        assertFalse(CheckExecutors.disablePinningDiagnostics());
+
+        // The thread streaming the events must not keep the JVM from exiting.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        Set<Thread> started = nonDaemonThreads();
+
+        started.removeAll(before);
+
+        while (!started.isEmpty() && System.nanoTime() < deadline) {
+
+            Thread.sleep(10);
+
+            started = nonDaemonThreads();
+            started.removeAll(before);
+        }
+
+        assertTrue(started.toString(), started.isEmpty());
+    }
+
+    private static Set<Thread> nonDaemonThreads() {
+
+        Set<Thread> threads = new HashSet<Thread>();
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+
+            if (!thread.isDaemon() && thread.isAlive()) threads.add(thread);
+        }
+
+        return threads;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class CheckMetricsTest {
+
+    @Test
+    public void executions_are_timed_and_counted_by_level(){
+
+        MetricRegistry registry = new MetricRegistry();
+
+        NagiosCheckTask task = new NagiosCheckTask("disk") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                if (requestParameters.containsKey("fail")) throw new IllegalStateException("disk gone");
+
+                return new MessagePayloadBuilder().withLevel(Level.WARNING).withMessage("almost full").build();
+            }
+        };
+
+        new NagiosCheckRegistry(registry).register(task);
+
+        task.check(ImmutableMultimap.<String, String>of());
+        task.check(ImmutableMultimap.<String, String>of());
+        task.check(ImmutableMultimap.of("fail", "true"));
+
+        assertEquals(3, registry.timer("nagios.disk.executions").getCount());
+        assertEquals(2, registry.counter("nagios.disk.level.warning").getCount());
+        assertEquals(1, registry.counter("nagios.disk.level.critical").getCount());
+        assertEquals(0, registry.counter("nagios.disk.level.ok").getCount());
+        assertEquals(1, registry.meter("nagios.disk.errors").getCount());
+    }
+
+    @Test
+    public void stored_results_are_not_recorded_as_executions(){
+
+        MetricRegistry registry = new MetricRegistry();
+
+        NagiosCheckTask task = new NagiosCheckTask("cached") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("fine").build();
+            }
+        };
+
+        task.setMetricRegistry(registry);
+        task.setResultStore(new CheckResultCache(1, TimeUnit.HOURS));
+
+        task.check(ImmutableMultimap.<String, String>of());
+        task.check(ImmutableMultimap.<String, String>of());
+
+        assertEquals(1, task.getMetrics().getExecutions().getCount());
+        assertEquals(1, task.getMetrics().getLevelCount(Level.OK).getCount());
+    }
+
+    @Test
+    public void health_check_wrapper_records_executions() throws Exception {
+
+        MetricRegistry registry = new MetricRegistry();
+
+        NagiosCheckTask task = new NagiosCheckTask("wrapped") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                throw new Exception("broken");
+            }
+        };
+
+        task.setMetricRegistry(registry);
+
+        assertFalse(new HealthCheckWrapper(task).execute().isHealthy());
+
+        assertEquals(1, registry.timer("nagios.wrapped.executions").getCount());
+        assertEquals(1, registry.meter("nagios.wrapped.errors").getCount());
+    }
+}
@@ -0,0 +1,130 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+
+public class CheckResultCacheTest {
+
+    @Test
+    public void keys_ignore_parameter_order_and_output_format(){
+
+        CheckKey k1 = CheckKey.of("test", ImmutableMultimap.of("a", "1", "b", "2", "o", "json"));
+        CheckKey k2 = CheckKey.of("test", ImmutableMultimap.of("b", "2", "a", "1"));
+
+        assertEquals(k1, k2);
+        assertEquals(k1.hashCode(), k2.hashCode());
+        assertEquals("test{a=[1], b=[2]}", k1.toString());
+    }
+
+    @Test
+    public void keys_differ_by_task_name_and_parameter_values(){
+
+        CheckKey k1 = CheckKey.of("test", ImmutableMultimap.of("a", "1"));
+
+        assertNotEquals(k1, CheckKey.of("other", ImmutableMultimap.of("a", "1")));
+        assertNotEquals(k1, CheckKey.of("test", ImmutableMultimap.of("a", "2")));
+    }
+
+    @Test
+    public void execute_serves_cached_result_until_it_expires() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final FakeTicker ticker = new FakeTicker();
+
+        NagiosCheckTask task = countingTask(executions);
+
+        task.setResultStore(new CheckResultCache(10, TimeUnit.SECONDS, 10, ticker));
+
+        ImmutableMultimap<String, String> params = ImmutableMultimap.of();
+
+        task.execute(params, new PrintWriter(new StringWriter()));
+        task.execute(ImmutableMultimap.of("o", "json"), new PrintWriter(new StringWriter()));
+
+        assertEquals(1, executions.get());
+
+        ticker.advance(11, TimeUnit.SECONDS);
+
+        task.execute(params, new PrintWriter(new StringWriter()));
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void cached_results_are_bounded_in_number(){
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        NagiosCheckTask task = countingTask(executions);
+
+        CheckResultCache cache = new CheckResultCache(1, TimeUnit.HOURS, 2);
+
+        task.setResultStore(cache);
+
+        for (int i = 0; i < 10; i++) {
+
+            task.check(ImmutableMultimap.of("p", Integer.toString(i)));
+        }
+
+        assertEquals(10, executions.get());
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    public void json_output_reports_age_of_cached_result() throws Exception {
+
+        NagiosCheckTask task = countingTask(new AtomicInteger());
+
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        StringWriter sw = new StringWriter();
+
+        task.execute(ImmutableMultimap.of("o", "json"), new PrintWriter(sw));
+
+        JsonNode json = new ObjectMapper().readTree(sw.toString());
+
+        assertEquals("OK", json.get("level").asText());
+        assertTrue(json.has("age"));
+        assertTrue(json.get("age").asDouble() >= 0);
+    }
+
+    private static NagiosCheckTask countingTask(final AtomicInteger executions) {
+
+        return new NagiosCheckTask("test") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                return new MessagePayloadBuilder()
+                        .withLevel(Level.OK)
+                        .withMessage("run " + executions.incrementAndGet())
+                        .build();
+            }
+        };
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class CheckSchedulerTest {
+
+    private final CheckScheduler scheduler = new CheckScheduler(2);
+
+    @After
+    public void teardown() throws Exception {
+
+        scheduler.stop();
+    }
+
+    @Test
+    public void polls_before_first_run_report_pending() throws Exception {
+
+        CountingTask task = new CountingTask();
+
+        scheduler.schedule(task, 1, 1, TimeUnit.HOURS);
+
+        StringWriter sw = new StringWriter();
+
+        task.execute(ImmutableMultimap.<String, String>of(), new PrintWriter(sw));
+
+        assertEquals(0, task.executions.get());
+        assertTrue(sw.toString().startsWith(CheckScheduler.DEFAULT_LEVEL_FOR_PENDING_TASK + " - "));
+    }
+
+    @Test
+    public void polls_read_snapshot_produced_in_background() throws Exception {
+
+        CountingTask task = new CountingTask();
+
+        scheduler.schedule(task, 10, 1000, TimeUnit.MILLISECONDS);
+        scheduler.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        CheckResult result = task.check(ImmutableMultimap.<String, String>of());
+
+        while (result.getPayload().getLevel() != Level.OK && System.nanoTime() < deadline) {
+
+            Thread.sleep(5);
+
+            result = task.check(ImmutableMultimap.<String, String>of());
+        }
+
+        assertEquals(Level.OK, result.getPayload().getLevel());
+        assertFalse(result.isStale());
+    }
+
+    @Test
+    public void stale_snapshot_is_served_while_a_single_refresh_runs() throws Exception {
+
+        CountingTask task = new CountingTask();
+
+        scheduler.schedule(task, 1, 1, TimeUnit.HOURS);
+
+        CheckKey key = CheckKey.of(task.getName(), ImmutableMultimap.<String, String>of());
+
+        MessagePayload old = new MessagePayload(Level.WARNING, "old");
+
+        scheduler.put(key, new CheckResult(old, System.nanoTime() - TimeUnit.HOURS.toNanos(2)));
+
+        task.blockRuns();
+
+        for (int i = 0; i < 10; i++) {
+
+            CheckResult result = task.check(ImmutableMultimap.<String, String>of());
+
+            assertTrue(result.isStale());
+            assertSame(old, result.getPayload());
+        }
+
+        task.firstRun.await(5, TimeUnit.SECONDS);
+        task.unblockRuns();
+
+        assertEquals(1, task.executions.get());
+    }
+
+    @Test
+    public void a_stopped_scheduler_can_be_started_again() throws Exception {
+
+        CountingTask task = new CountingTask();
+
+        scheduler.schedule(task, 10, 1000, TimeUnit.MILLISECONDS);
+        scheduler.start();
+
+        task.firstRun.await(5, TimeUnit.SECONDS);
+
+        scheduler.stop();
+
+        int executions = task.executions.get();
+
+        scheduler.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (task.executions.get() <= executions && System.nanoTime() < deadline) Thread.sleep(5);
+
+        assertTrue(task.executions.get() > executions);
+    }
+
+    @Test
+    public void refreshes_discarded_by_a_slow_stop_run_after_the_next_start() throws Exception {
+
+        CheckScheduler singleThread = new CheckScheduler(1);
+
+        singleThread.setStopTimeout(50, TimeUnit.MILLISECONDS);
+
+        final CountDownLatch stuck = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        NagiosCheckTask ignoring = new NagiosCheckTask("ignoring") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                stuck.countDown();
+
+                Uninterruptibles.awaitUninterruptibly(release);
+
+                return new MessagePayload(Level.OK, "late");
+            }
+        };
+
+        CountingTask queued = new CountingTask();
+
+        singleThread.schedule(ignoring, 1, 1, TimeUnit.HOURS);
+        singleThread.schedule(queued, 1, 1, TimeUnit.HOURS);
+
+        long old = System.nanoTime() - TimeUnit.HOURS.toNanos(2);
+
+        singleThread.put(CheckKey.of("ignoring", ImmutableMultimap.<String, String>of()), new CheckResult(new MessagePayload(Level.OK, "old"), old));
+        singleThread.put(CheckKey.of("counting", ImmutableMultimap.<String, String>of()), new CheckResult(new MessagePayload(Level.OK, "old"), old));
+
+        try {
+
+            // The only thread is busy, so the refresh of the second check is queued.
+            ignoring.check(ImmutableMultimap.<String, String>of());
+
+            assertTrue(stuck.await(5, TimeUnit.SECONDS));
+
+            queued.check(ImmutableMultimap.<String, String>of());
+
+            singleThread.stop();
+
+            release.countDown();
+
+            singleThread.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+            while (queued.executions.get() == 0 && System.nanoTime() < deadline) {
+
+                queued.check(ImmutableMultimap.<String, String>of());
+
+                Thread.sleep(5);
+            }
+
+            assertEquals(1, queued.executions.get());
+
+        } finally {
+
+            release.countDown();
+
+            singleThread.stop();
+        }
+    }
+
+    @Test
+    public void unscheduled_parameters_are_executed_inline() {
+
+        CountingTask task = new CountingTask();
+
+        scheduler.schedule(task, 1, 1, TimeUnit.HOURS);
+
+        CheckResult result = task.check(ImmutableMultimap.of("p", "1"));
+
+        assertEquals(Level.OK, result.getPayload().getLevel());
+        assertEquals(1, task.executions.get());
+    }
+
+    private static class CountingTask extends NagiosCheckTask {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        final CountDownLatch firstRun = new CountDownLatch(1);
+
+        volatile CountDownLatch block = new CountDownLatch(0);
+
+        CountingTask() {
+            super("counting");
+        }
+
+        void blockRuns() {
+            block = new CountDownLatch(1);
+        }
+
+        void unblockRuns() {
+            block.countDown();
+        }
+
+        @Override
+        public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+            executions.incrementAndGet();
+
+            firstRun.countDown();
+
+            block.await();
+
+            return new MessagePayload(Level.OK, "fine");
+        }
+    }
+}
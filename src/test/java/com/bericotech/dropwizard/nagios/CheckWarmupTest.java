@@ -0,0 +1,281 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class CheckWarmupTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    @Test
+    public void polls_report_warming_up_until_the_check_is_warm() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        NagiosCheckTask task = new NagiosCheckTask("db") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Exception {
+
+                executions.incrementAndGet();
+
+                release.await();
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("connected").build();
+            }
+        };
+
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        CheckWarmup warmup = new CheckWarmup(checks, 3);
+
+        warmup.start();
+
+        try {
+
+            MessagePayload warming = task.check(NO_PARAMETERS).getPayload();
+
+            assertEquals(CheckWarmup.DEFAULT_LEVEL_FOR_WARMING_UP_TASK, warming.getLevel());
+            assertEquals("db warming up (round 1 of 3)", warming.getBaseMessage());
+            assertEquals("warmup_round", warming.getPerfData().get(0).getLabel());
+            assertFalse(warmup.isComplete());
+
+            release.countDown();
+
+            assertTrue(warmup.awaitCompletion(5, TimeUnit.SECONDS));
+
+            // The last warm-up result was stored, so the first poll doesn't execute the check.
+            assertEquals("connected", task.check(NO_PARAMETERS).getPayload().getMessage());
+            assertEquals(3, executions.get());
+
+        } finally {
+
+            warmup.stop();
+        }
+    }
+
+    @Test
+    public void the_cold_execution_is_neither_recorded_nor_stored() throws Exception {
+
+        MetricRegistry registry = new MetricRegistry();
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        ThresholdTimedCheckTask task = new ThresholdTimedCheckTask("timed", null, Threshold.above(10)) {
+
+            @Override
+            public Optional<Collection<PerfDatum>> doTimedCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                executions.incrementAndGet();
+
+                return noPerfData();
+            }
+        };
+
+        task.setLatencyWindow(1, TimeUnit.MINUTES, 99);
+        task.setMetricRegistry(registry);
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        CheckWarmup warmup = new CheckWarmup(checks);
+
+        warmup.start();
+
+        assertTrue(warmup.awaitCompletion(5, TimeUnit.SECONDS));
+
+        // The stored result is the one of the second, warm execution.
+        MessagePayload payload = task.check(NO_PARAMETERS).getPayload();
+
+        assertEquals(CheckWarmup.DEFAULT_ROUNDS, executions.get());
+        assertEquals(CheckWarmup.DEFAULT_ROUNDS - 1, task.getLatencies().getCount());
+        assertTrue(payload.getMessage(), payload.getMessage().contains("over 1 executions"));
+        assertEquals(0, registry.timer("nagios.timed.executions").getCount());
+    }
+
+    @Test
+    public void a_single_round_only_warms_up() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        NagiosCheckTask task = new NagiosCheckTask("once") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return new MessagePayloadBuilder().withLevel(Level.OK)
+                        .withMessage("execution " + executions.incrementAndGet()).build();
+            }
+        };
+
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        CheckWarmup warmup = new CheckWarmup(checks, 1);
+
+        warmup.start();
+
+        assertTrue(warmup.awaitCompletion(5, TimeUnit.SECONDS));
+
+        assertEquals("execution 2", task.check(NO_PARAMETERS).getPayload().getMessage());
+    }
+
+    @Test
+    public void asynchronous_polls_report_warming_up() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        AsyncNagiosCheckTask task = new AsyncNagiosCheckTask("async") {
+
+            @Override
+            public ListenableFuture<MessagePayload> performCheckAsync(ImmutableMultimap<String, String> requestParameters) {
+
+                Uninterruptibles.awaitUninterruptibly(release);
+
+                return Futures.immediateFuture(new MessagePayloadBuilder().withLevel(Level.OK).build());
+            }
+        };
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        CheckWarmup warmup = new CheckWarmup(checks);
+
+        warmup.start();
+
+        try {
+
+            assertEquals(CheckWarmup.DEFAULT_LEVEL_FOR_WARMING_UP_TASK,
+                    task.checkAsync(NO_PARAMETERS).get(1, TimeUnit.SECONDS).getPayload().getLevel());
+
+        } finally {
+
+            release.countDown();
+
+            warmup.stop();
+        }
+    }
+
+    @Test
+    public void composites_are_warmed_up_after_their_children() throws Exception {
+
+        NagiosCheckTask primary = slowTask("db-primary");
+        NagiosCheckTask replica = slowTask("db-replica");
+
+        CompositeNagiosCheckTask cluster = new CompositeNagiosCheckTask("db-cluster",
+                CompositeNagiosCheckTask.quorum(2), Arrays.asList(primary, replica));
+
+        cluster.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(cluster);
+        checks.register(primary);
+        checks.register(replica);
+
+        CheckWarmup warmup = new CheckWarmup(checks);
+
+        warmup.start();
+
+        try {
+
+            assertTrue(warmup.awaitCompletion(5, TimeUnit.SECONDS));
+
+            // Children still warming up would have made the stored result CRITICAL.
+            assertEquals(Level.OK, cluster.check(NO_PARAMETERS).getPayload().getLevel());
+
+        } finally {
+
+            warmup.stop();
+        }
+    }
+
+    @Test
+    public void stopping_interrupts_the_warm_up() throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        NagiosCheckTask task = new NagiosCheckTask("slow") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                if (started.getCount() > 0) {
+
+                    started.countDown();
+
+                    try {
+
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+
+                    } catch (InterruptedException e) {
+
+                        interrupted.countDown();
+                    }
+                }
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("executed").build();
+            }
+        };
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        CheckWarmup warmup = new CheckWarmup(checks);
+
+        warmup.start();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        warmup.stop();
+
+        assertTrue(warmup.isComplete());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        // Polls execute the check again.
+        assertEquals("executed", task.check(NO_PARAMETERS).getPayload().getMessage());
+    }
+
+    private static NagiosCheckTask slowTask(String name) {
+
+        return new NagiosCheckTask(name) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Exception {
+
+                Thread.sleep(50);
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("connected").build();
+            }
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+
+public class CompositeNagiosCheckTaskTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    @Test
+    public void worst_of_reports_the_worst_child() {
+
+        CompositeNagiosCheckTask task = new CompositeNagiosCheckTask("queues", CompositeNagiosCheckTask.worstOf(),
+                Arrays.asList(child("p0", Level.OK), child("p1", Level.WARNING), child("p2", Level.UNKNOWN)));
+
+        MessagePayload payload = task.check(NO_PARAMETERS).getPayload();
+
+        assertEquals(Level.WARNING, payload.getLevel());
+        assertEquals("1 of 3 healthy: p1 WARNING, p2 UNKNOWN", payload.getBaseMessage());
+    }
+
+    @Test
+    public void quorum_levels_follow_the_number_of_healthy_children() {
+
+        List<NagiosCheckTask> nodes = new ArrayList<NagiosCheckTask>();
+
+        for (int i = 0; i < 4; i++) nodes.add(child("node-" + i, i < 3 ? Level.OK : Level.CRITICAL));
+
+        assertEquals(Level.OK, composite(CompositeNagiosCheckTask.quorum(3), nodes).getLevel());
+        assertEquals(Level.WARNING, composite(CompositeNagiosCheckTask.quorum(4, 3), nodes).getLevel());
+        assertEquals(Level.CRITICAL, composite(CompositeNagiosCheckTask.quorum(4), nodes).getLevel());
+        assertEquals(Level.OK, composite(CompositeNagiosCheckTask.percentage(75, 50), nodes).getLevel());
+        assertEquals(Level.WARNING, composite(CompositeNagiosCheckTask.percentage(80, 50), nodes).getLevel());
+    }
+
+    @Test
+    public void children_perf_data_are_prefixed() {
+
+        NagiosCheckTask node = new NagiosCheckTask("node-1") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return new MessagePayloadBuilder().withLevel(Level.OK)
+                        .withPerfData(PerfDatum.builder("latency", 3).uom(PerfDatum.UOM.Seconds).build()).build();
+            }
+        };
+
+        MessagePayload payload = composite(CompositeNagiosCheckTask.quorum(1), Arrays.asList(node));
+
+        assertEquals("[healthy=1, node-1.latency=3s]", payload.getPerfData().toString());
+    }
+
+    @Test
+    public void remaining_children_are_not_awaited_once_the_outcome_is_decided() throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(2);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        List<NagiosCheckTask> nodes = new ArrayList<NagiosCheckTask>();
+
+        for (int i = 0; i < 2; i++) {
+
+            // Fail once the slow nodes are executing, so that they are still running when the outcome is decided.
+            nodes.add(new NagiosCheckTask("node-" + i) {
+
+                @Override
+                public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Exception {
+
+                    started.await();
+
+                    return new MessagePayloadBuilder().withLevel(Level.CRITICAL).build();
+                }
+            });
+        }
+
+        for (int i = 2; i < 4; i++) {
+
+            NagiosCheckTask node = new NagiosCheckTask("node-" + i) {
+
+                @Override
+                public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Exception {
+
+                    started.countDown();
+
+                    try {
+
+                        release.await();
+
+                    } catch (InterruptedException e) {
+
+                        interrupted.set(true);
+
+                        throw e;
+                    }
+
+                    return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("up").build();
+                }
+            };
+
+            node.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+            nodes.add(node);
+        }
+
+        long start = System.nanoTime();
+
+        // Two of four nodes down:  three healthy are out of reach.
+        MessagePayload payload = composite(CompositeNagiosCheckTask.quorum(3), nodes);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(Level.CRITICAL, payload.getLevel());
+        assertEquals("0 of 4 healthy: node-0 CRITICAL, node-1 CRITICAL (2 not awaited)", payload.getBaseMessage());
+
+        release.countDown();
+
+        // A later poll of a child gets the outcome of its own execution, not an interruption.
+        MessagePayload node = nodes.get(2).check(NO_PARAMETERS).getPayload();
+
+        assertEquals(Level.OK, node.getLevel());
+        assertEquals("up", node.getBaseMessage());
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    public void policies_decide_as_soon_as_pending_children_cant_change_the_level() {
+
+        CompositeNagiosCheckTask.Policy quorum = CompositeNagiosCheckTask.quorum(3);
+
+        int[] counts = new int[Level.values().length];
+
+        counts[Level.OK.ordinal()] = 3;
+
+        assertEquals(Optional.of(Level.OK), quorum.decide(new CompositeNagiosCheckTask.Tally(counts, 2)));
+
+        counts[Level.OK.ordinal()] = 2;
+
+        assertEquals(Optional.<Level>absent(), quorum.decide(new CompositeNagiosCheckTask.Tally(counts, 2)));
+    }
+
+    private static MessagePayload composite(CompositeNagiosCheckTask.Policy policy, List<NagiosCheckTask> children) {
+
+        return new CompositeNagiosCheckTask("composite", policy, children).check(NO_PARAMETERS).getPayload();
+    }
+
+    private static NagiosCheckTask child(String name, final Level level) {
+
+        return new NagiosCheckTask(name) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return new MessagePayloadBuilder().withLevel(level).withMessage(getName()).build();
+            }
+        };
+    }
+}
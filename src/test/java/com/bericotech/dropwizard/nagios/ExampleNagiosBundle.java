@@ -18,6 +18,16 @@ public class ExampleNagiosBundle implements Bundle {
     @Override
     public void run(Environment environment) {
 
-        environment.admin().addTask(new ExampleNagiosCheckTask());
+        // Checks registered here report their executions to the application's metrics.
+        NagiosCheckRegistry checks = new NagiosCheckRegistry(environment.metrics());
+
+        ExampleNagiosCheckTask temperatureCheck = new ExampleNagiosCheckTask();
+
+        checks.register(temperatureCheck);
+
+        environment.admin().addTask(temperatureCheck);
+
+        // Serves all registered checks in one request: POST /tasks/nagios-batch
+        environment.admin().addTask(new NagiosBatchTask(checks));
     }
 }
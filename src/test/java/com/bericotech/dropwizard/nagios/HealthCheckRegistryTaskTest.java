@@ -0,0 +1,205 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class HealthCheckRegistryTaskTest {
+
+    private static final ImmutableMultimap<String, String> NO_PARAMETERS = ImmutableMultimap.of();
+
+    @Test
+    public void health_checks_are_reported_with_levels_and_perf_data() throws Exception {
+
+        HealthCheckRegistry registry = new HealthCheckRegistry();
+
+        registry.register("db", unhealthy("connection refused"));
+        registry.register("deadlocks", healthy());
+        registry.register("disk", new HealthCheckWrapper(task("disk", new MessagePayloadBuilder()
+                .withLevel(Level.WARNING)
+                .withMessage("low on space")
+                .withPerfData(PerfDatum.builder("free", 10).uom(PerfDatum.UOM.Percentage).build())
+                .build())));
+
+        HealthCheckRegistryTask task = new HealthCheckRegistryTask(registry);
+
+        StringWriter output = new StringWriter();
+
+        task.execute(NO_PARAMETERS, new PrintWriter(output));
+
+        assertEquals("CRITICAL - 2 of 3 health checks unhealthy: db CRITICAL, disk WARNING"
+                + " | health_checks=3;;;0 unhealthy=2;;;0 disk.free=10%\n"
+                + "db CRITICAL - connection refused\n"
+                + "deadlocks OK\n"
+                + "disk WARNING - low on space\n", output.toString());
+    }
+
+    @Test
+    public void unhealthy_level_is_configurable() throws Exception {
+
+        HealthCheckRegistry registry = new HealthCheckRegistry();
+
+        registry.register("db", unhealthy("slow"));
+
+        HealthCheckRegistryTask task = new HealthCheckRegistryTask(registry);
+
+        task.setUnhealthyLevel(Level.WARNING);
+
+        assertEquals(Level.WARNING, task.check(NO_PARAMETERS).getPayload().getLevel());
+    }
+
+    @Test
+    public void results_are_cached() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        HealthCheckRegistry registry = new HealthCheckRegistry();
+
+        registry.register("counted", new HealthCheck() {
+
+            @Override
+            protected Result check() {
+
+                executions.incrementAndGet();
+
+                return Result.healthy();
+            }
+        });
+
+        HealthCheckRegistryTask task = new HealthCheckRegistryTask(registry);
+
+        assertEquals(Level.OK, task.check(NO_PARAMETERS).getPayload().getLevel());
+        assertEquals(Level.OK, task.check(NO_PARAMETERS).getPayload().getLevel());
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void health_checks_do_not_run_on_a_bounded_task_executor() throws Exception {
+
+        HealthCheckRegistry registry = new HealthCheckRegistry();
+
+        registry.register("db", unhealthy("slow"));
+        registry.register("disk", unhealthy("full"));
+
+        HealthCheckRegistryTask task = new HealthCheckRegistryTask(registry);
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+
+        try {
+
+            task.setExecutor(executor);
+            task.setTimeout(5, TimeUnit.SECONDS);
+
+            MessagePayload mp = task.check(NO_PARAMETERS).getPayload();
+
+            assertEquals(Level.CRITICAL, mp.getLevel());
+            assertTrue(mp.getMessage(), mp.getMessage().contains("2 of 2 health checks unhealthy"));
+
+        } finally {
+
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void no_health_checks_is_unknown() {
+
+        MessagePayload mp = new HealthCheckRegistryTask(new HealthCheckRegistry()).check(NO_PARAMETERS).getPayload();
+
+        assertEquals(Level.UNKNOWN, mp.getLevel());
+    }
+
+    @Test
+    public void wrapper_reuses_the_stored_result_of_the_task() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        NagiosCheckTask task = new NagiosCheckTask("counted") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                executions.incrementAndGet();
+
+                return new MessagePayloadBuilder().withLevel(Level.WARNING).withMessage("degraded").build();
+            }
+        };
+
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        task.check(NO_PARAMETERS);
+
+        HealthCheck.Result result = new HealthCheckWrapper(task).execute();
+
+        assertEquals(1, executions.get());
+        assertFalse(result.isHealthy());
+        assertEquals("degraded", result.getMessage());
+        assertEquals(Level.WARNING, result.getDetails().get(HealthCheckWrapper.LEVEL_DETAIL));
+    }
+
+    @Test
+    public void wrapped_tasks_keep_their_perf_data_in_the_message() throws Exception {
+
+        PerfDatum free = PerfDatum.builder("free", 10).uom(PerfDatum.UOM.Percentage).build();
+
+        HealthCheck.Result result = new HealthCheckWrapper(task("disk", new MessagePayloadBuilder()
+                .withLevel(Level.WARNING)
+                .withMessage("low on space")
+                .withPerfData(free)
+                .build())).execute();
+
+        assertEquals("low on space | free=10%", result.getMessage());
+        assertEquals(Level.WARNING, result.getDetails().get(HealthCheckWrapper.LEVEL_DETAIL));
+        assertEquals(Collections.singletonList(free), result.getDetails().get(HealthCheckWrapper.PERF_DATA_DETAIL));
+        assertEquals("low on space", result.getDetails().get(HealthCheckWrapper.BASE_MESSAGE_DETAIL));
+    }
+
+    private static NagiosCheckTask task(String name, final MessagePayload payload) {
+
+        return new NagiosCheckTask(name) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return payload;
+            }
+        };
+    }
+
+    private static HealthCheck healthy() {
+
+        return new HealthCheck() {
+
+            @Override
+            protected Result check() {
+
+                return Result.healthy();
+            }
+        };
+    }
+
+    private static HealthCheck unhealthy(final String message) {
+
+        return new HealthCheck() {
+
+            @Override
+            protected Result check() {
+
+                return Result.unhealthy(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class JsonOutputTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void payloads_are_written_like_the_object_mapper_writes_them() throws Exception {
+
+        assertSameOutput(new MessagePayloadBuilder().withLevel(Level.OK).withMessage("fine").build());
+
+        assertSameOutput(new MessagePayload(Level.CRITICAL, null));
+
+        assertSameOutput(new MessagePayloadBuilder()
+                .withLevel(Level.WARNING)
+                .withMessage("quotes \" and \\ and\nnewlines")
+                .withPerfData(
+                        PerfDatum.builder("count", 12).criteria(50, 100).minMax(1, 45).build(),
+                        PerfDatum.builder("bytes", 12L).uom(PerfDatum.UOM.Bytes).criteria(50L, 100L).build(),
+                        PerfDatum.builder("tte", 0.25).uom(PerfDatum.UOM.Seconds).criteria(1e-7, Double.NaN).build(),
+                        PerfDatum.builder("ratio", 0.1f).minMax(0f, 1f).build(),
+                        new PerfDatum("state", "U", PerfDatum.UOM.Unspecified, "~:10", null, new BigDecimal("0.5"), null))
+                .build());
+    }
+
+    @Test
+    public void results_are_written_with_age_and_stale_flag() throws Exception {
+
+        MessagePayload mp = new MessagePayloadBuilder()
+                .withLevel(Level.OK)
+                .withMessage("fine")
+                .withPerfData(PerfDatum.builder("count", 12).build(), PerfDatum.builder("ratio", 0.1f).build())
+                .build();
+
+        CheckResult result = new CheckResult(mp);
+
+        assertSameOutput(result);
+        assertSameOutput(result.asStale());
+    }
+
+    private void assertSameOutput(MessagePayload mp) throws Exception {
+
+        StringWriter sw = new StringWriter();
+
+        JsonOutput.write(mp, sw);
+
+        assertEquals(om.writeValueAsString(mp), sw.toString());
+    }
+
+    private void assertSameOutput(CheckResult result) throws Exception {
+
+        StringWriter sw = new StringWriter();
+
+        JsonOutput.write(result, sw);
+
+        // How the result was written with the ObjectMapper, before JsonOutput.
+        ObjectNode node = om.valueToTree(result.getPayload());
+
+        node.put("age", result.getAgeInSeconds());
+
+        if (result.isStale()) node.put("stale", true);
+
+        // The age differs between the two writes.
+        assertEquals(withoutAge(om.writeValueAsString(node)), withoutAge(sw.toString()));
+    }
+
+    private static String withoutAge(String json) {
+
+        return json.replaceFirst("\"age\":[0-9.E-]+", "\"age\":0");
+    }
+}
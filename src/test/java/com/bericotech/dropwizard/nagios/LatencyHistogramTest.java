@@ -0,0 +1,94 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_cover_values_within_precision(){
+
+        for (long value = 0; value < 1000000; value += 7) {
+
+            int bucket = LatencyHistogram.bucketOf(value);
+
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) - value <= value / 32);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void percentiles_and_max_reflect_recorded_values(){
+
+        LatencyHistogram histogram = new LatencyHistogram(1, TimeUnit.HOURS);
+
+        for (int i = 1; i <= 100; i++) histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMax());
+        assertEquals(50, TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(50)), 2);
+        assertEquals(99, TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(99)), 3);
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void empty_histogram_reports_zero(){
+
+        LatencyHistogram histogram = new LatencyHistogram(1, TimeUnit.MINUTES);
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void executions_older_than_two_windows_are_dropped() throws Exception {
+
+        LatencyHistogram histogram = new LatencyHistogram(10, TimeUnit.MILLISECONDS);
+
+        histogram.record(1000);
+
+        Thread.sleep(30);
+
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void timed_task_evaluates_percentile_of_recent_executions() throws Throwable {
+
+        ThresholdTimedCheckTask task = new ThresholdTimedCheckTask("timed", null, Threshold.above(10)) {
+
+            @Override
+            public Optional<Collection<PerfDatum>> doTimedCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return noPerfData();
+            }
+        };
+
+        task.setLatencyWindow(1, TimeUnit.HOURS, 99);
+
+        // A slow execution recorded by a background run.
+        task.getLatencies().record(TimeUnit.SECONDS.toNanos(20));
+
+        MessagePayload mp = task.performCheck(ImmutableMultimap.<String, String>of());
+
+        assertEquals(Level.CRITICAL, mp.getLevel());
+        assertEquals(2, task.getLatencies().getCount());
+
+        StringBuilder perfData = new StringBuilder();
+
+        PluginOutput.write(mp, perfData);
+
+        assertTrue(perfData.toString(), perfData.toString().contains("tte_p99=20.0s;;~:10"));
+        assertTrue(perfData.toString(), perfData.toString().contains("tte_max=20.0s"));
+        assertTrue(perfData.toString(), perfData.toString().contains("tte_count=2c"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class MetricsCheckTaskTest {
+
+    @Test
+    public void selected_metrics_are_evaluated_and_reported(){
+
+        MetricRegistry registry = new MetricRegistry();
+
+        registry.register("db.pool.active", new Gauge<Integer>() {
+
+            @Override
+            public Integer getValue() {
+                return 90;
+            }
+        });
+
+        registry.timer("db.query").update(3, TimeUnit.SECONDS);
+        registry.meter("http.errors");
+        registry.counter("unrelated").inc();
+
+        MetricsCheckTask task = new MetricsCheckTask("db", registry)
+                .addRule("db\\.pool\\..*", Threshold.above(80), Threshold.above(95))
+                .addRule("db\\.query", Threshold.above(0.5), Threshold.above(2))
+                .addRule("http\\..*", null, Threshold.above(1));
+
+        assertEquals(Arrays.asList("db.pool.active", "db.query", "http.errors"), task.getSelectedMetrics());
+
+        MessagePayload mp = task.performCheck(ImmutableMultimap.<String, String>of());
+
+        assertEquals(Level.CRITICAL, mp.getLevel());
+        assertEquals("2 of 3 metrics alerting: db.pool.active WARNING, db.query.p99 CRITICAL", mp.getBaseMessage());
+        assertEquals("db.pool.active=90;~:80;~:95", render(mp.getPerfData().get(0)));
+        assertEquals("db.query.p99=3.0s;~:0.5;~:2", render(mp.getPerfData().get(1)));
+        assertEquals("http.errors.m1_rate=0.0;;~:1", render(mp.getPerfData().get(2)));
+    }
+
+    @Test
+    public void metrics_registered_later_are_selected_and_removed_ones_dropped(){
+
+        MetricRegistry registry = new MetricRegistry();
+
+        MetricsCheckTask task = new MetricsCheckTask("queues", registry)
+                .addRule("queue\\..*", Threshold.above(100), Threshold.above(1000));
+
+        assertEquals(Level.UNKNOWN, task.performCheck(ImmutableMultimap.<String, String>of()).getLevel());
+
+        registry.counter("queue.depth").inc(5);
+
+        MessagePayload mp = task.performCheck(ImmutableMultimap.<String, String>of());
+
+        assertEquals(Level.OK, mp.getLevel());
+        assertEquals("1 metrics OK", mp.getBaseMessage());
+        assertEquals("queue.depth=5c;~:100;~:1000", render(mp.getPerfData().get(0)));
+
+        registry.remove("queue.depth");
+
+        assertTrue(task.getSelectedMetrics().isEmpty());
+    }
+
+    @Test
+    public void stopped_tasks_stop_listening_to_the_registry(){
+
+        MetricRegistry registry = new MetricRegistry();
+
+        MetricsCheckTask task = new MetricsCheckTask("queues", registry)
+                .addRule("queue\\..*", Threshold.above(100), Threshold.above(1000));
+
+        task.stop();
+
+        registry.counter("queue.depth");
+
+        assertTrue(task.getSelectedMetrics().isEmpty());
+
+        task.start();
+
+        assertEquals(Arrays.asList("queue.depth"), task.getSelectedMetrics());
+    }
+
+    @Test
+    public void non_numeric_gauges_are_unknown(){
+
+        MetricRegistry registry = new MetricRegistry();
+
+        registry.register("build.version", new Gauge<String>() {
+
+            @Override
+            public String getValue() {
+                return "1.2";
+            }
+        });
+
+        MetricsCheckTask task = new MetricsCheckTask("build", registry).addRule("build\\..*", null, null);
+
+        MessagePayload mp = task.performCheck(ImmutableMultimap.<String, String>of());
+
+        assertEquals(Level.UNKNOWN, mp.getLevel());
+        assertEquals("build.version=U", render(mp.getPerfData().get(0)));
+    }
+
+    // Plugin output of the datum.
+    private static String render(PerfDatum datum) {
+
+        StringBuilder out = new StringBuilder();
+
+        try {
+
+            datum.appendTo(out);
+
+        } catch (IOException e) {
+
+            throw new AssertionError(e);
+        }
+
+        return out.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class NagiosBatchTaskTest {
+
+    private final NagiosCheckRegistry registry = new NagiosCheckRegistry();
+
+    private final NagiosBatchTask batch = new NagiosBatchTask(registry);
+
+    @Before
+    public void setup(){
+
+        registry.register(fixedTask("db", Level.CRITICAL, "connection refused", "storage"));
+        registry.register(fixedTask("disk", Level.OK, "plenty of space", "storage"));
+        registry.register(fixedTask("queue", Level.WARNING, "backlog growing"));
+    }
+
+    @Test
+    public void selects_checks_by_name_and_tag(){
+
+        Map<String, CheckResult> byName = batch.checkAll(ImmutableMultimap.of("checks", "queue,db"));
+
+        assertEquals("[queue, db]", byName.keySet().toString());
+
+        Map<String, CheckResult> byTag = batch.checkAll(ImmutableMultimap.of("tag", "storage"));
+
+        assertEquals("[db, disk]", byTag.keySet().toString());
+
+        Map<String, CheckResult> all = batch.checkAll(ImmutableMultimap.<String, String>of());
+
+        assertEquals("[db, disk, queue]", all.keySet().toString());
+    }
+
+    @Test
+    public void unknown_checks_are_reported_as_UNKNOWN(){
+
+        Map<String, CheckResult> results = batch.checkAll(ImmutableMultimap.of("checks", "nope"));
+
+        assertEquals(Level.UNKNOWN, results.get("nope").getPayload().getLevel());
+    }
+
+    @Test
+    public void text_output_is_check_multi_style_with_worst_level() throws Exception {
+
+        StringWriter sw = new StringWriter();
+
+        batch.execute(ImmutableMultimap.of("checks", "disk", "checks", "queue"), new PrintWriter(sw));
+
+        String[] lines = sw.toString().split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals("WARNING - 2 checks, 0 critical, 1 warning, 0 unknown, 1 ok"
+                + " | check_multi::check_multi::plugins=2 disk::disk::free=10", lines[0]);
+        assertEquals("[ 1] disk OK - plenty of space", lines[1]);
+        assertEquals("[ 2] queue WARNING - backlog growing", lines[2]);
+    }
+
+    @Test
+    public void json_output_contains_every_result() throws Exception {
+
+        StringWriter sw = new StringWriter();
+
+        batch.execute(ImmutableMultimap.of("tag", "storage", "o", "json"), new PrintWriter(sw));
+
+        JsonNode json = new ObjectMapper().readTree(sw.toString());
+
+        assertEquals("CRITICAL", json.get("level").asText());
+        assertEquals("connection refused", json.get("checks").get("db").get("baseMessage").asText());
+        assertEquals("OK", json.get("checks").get("disk").get("level").asText());
+    }
+
+    @Test
+    public void worst_level_ranks_CRITICAL_over_WARNING_over_UNKNOWN_over_OK(){
+
+        assertEquals(Level.CRITICAL, Level.worst(Level.WARNING, Level.CRITICAL));
+        assertEquals(Level.WARNING, Level.worst(Level.WARNING, Level.UNKNOWN));
+        assertEquals(Level.UNKNOWN, Level.worst(Level.OK, Level.UNKNOWN));
+        assertEquals(Level.OK, Level.worst(Level.OK, Level.OK));
+    }
+
+    private static NagiosCheckTask fixedTask(String name, final Level level, final String message, String... tags) {
+
+        NagiosCheckTask task = new NagiosCheckTask(name) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                MessagePayloadBuilder builder = new MessagePayloadBuilder().withLevel(level).withMessage(message);
+
+                if (level == Level.OK) builder.withPerfData(PerfDatum.builder("free", 10).build());
+
+                return builder.build();
+            }
+        };
+
+        task.setTags(tags);
+
+        return task;
+    }
+}
@@ -0,0 +1,195 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class NagiosCheckServletTest {
+
+    private Server server;
+
+    private volatile Level level = Level.OK;
+
+    private final AtomicInteger cachedExecutions = new AtomicInteger();
+
+    @Before
+    public void startServer() throws Exception {
+
+        NagiosCheckTask task = new NagiosCheckTask("disk") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return new MessagePayloadBuilder()
+                        .withLevel(level)
+                        .withMessage("free space" + (requestParameters.containsKey("mount") ? " on " + requestParameters.get("mount").iterator().next() : ""))
+                        .withPerfData(PerfDatum.builder("free", 10).build())
+                        .build();
+            }
+        };
+
+        NagiosCheckRegistry checks = new NagiosCheckRegistry();
+
+        checks.register(task);
+
+        NagiosCheckTask cached = new NagiosCheckTask("cached") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                cachedExecutions.incrementAndGet();
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("cached").build();
+            }
+        };
+
+        cached.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        checks.register(cached);
+
+        server = new Server(0);
+
+        ServletContextHandler context = new ServletContextHandler();
+
+        context.addServlet(new ServletHolder(new NagiosCheckServlet(checks)), "/nagios/*");
+
+        server.setHandler(context);
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+
+        server.stop();
+    }
+
+    @Test
+    public void checks_are_served_over_get() throws Exception {
+
+        HttpURLConnection connection = request("GET", "/nagios/disk?mount=/var", null);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/plain;charset=utf-8", connection.getContentType().toLowerCase());
+        assertEquals("OK - free space on /var | free=10\n", body(connection));
+        assertTrue(connection.getHeaderField("ETag").startsWith("W/\""));
+    }
+
+    @Test
+    public void checks_are_served_over_post() throws Exception {
+
+        HttpURLConnection connection = request("POST", "/nagios/disk", null);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("OK - free space | free=10\n", body(connection));
+    }
+
+    @Test
+    public void json_is_served_on_request() throws Exception {
+
+        HttpURLConnection connection = request("GET", "/nagios/disk?o=json", null);
+
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("application/json"));
+        assertTrue(body(connection).startsWith("{\"level\":\"OK\",\"message\":\"free space | free=10\""));
+    }
+
+    @Test
+    public void unchanged_results_are_not_modified() throws Exception {
+
+        String etag = request("GET", "/nagios/disk", null).getHeaderField("ETag");
+
+        HttpURLConnection unchanged = request("GET", "/nagios/disk", etag);
+
+        assertEquals(304, unchanged.getResponseCode());
+        assertEquals(etag, unchanged.getHeaderField("ETag"));
+
+        level = Level.WARNING;
+
+        HttpURLConnection changed = request("GET", "/nagios/disk", etag);
+
+        assertEquals(200, changed.getResponseCode());
+        assertNotEquals(etag, changed.getHeaderField("ETag"));
+        assertEquals("WARNING - free space | free=10\n", body(changed));
+    }
+
+    @Test
+    public void etags_differ_per_format() throws Exception {
+
+        String text = request("GET", "/nagios/disk", null).getHeaderField("ETag");
+
+        HttpURLConnection json = request("GET", "/nagios/disk?o=json", text);
+
+        assertEquals(200, json.getResponseCode());
+        assertEquals(304, request("GET", "/nagios/disk?o=json", json.getHeaderField("ETag")).getResponseCode());
+    }
+
+    @Test
+    public void stored_results_are_encoded_once_and_served_with_their_age() throws Exception {
+
+        HttpURLConnection first = request("GET", "/nagios/cached", null);
+        HttpURLConnection second = request("GET", "/nagios/cached", null);
+
+        assertEquals("OK - cached\n", body(first));
+        assertEquals("OK - cached\n", body(second));
+        assertEquals(first.getHeaderField("ETag"), second.getHeaderField("ETag"));
+
+        assertTrue(body(request("GET", "/nagios/cached?o=json", null)).contains("\"age\":"));
+        assertFalse(body(request("GET", "/nagios/disk?o=json", null)).contains("\"age\":"));
+
+        assertEquals(1, cachedExecutions.get());
+    }
+
+    @Test
+    public void unknown_checks_are_not_found() throws Exception {
+
+        HttpURLConnection connection = request("GET", "/nagios/nothing", null);
+
+        assertEquals(404, connection.getResponseCode());
+        assertEquals("UNKNOWN - No check named nothing\n",
+                new String(ByteStreams.toByteArray(connection.getErrorStream()), Charsets.UTF_8));
+    }
+
+    private HttpURLConnection request(String method, String path, String ifNoneMatch) throws Exception {
+
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+
+        connection.setRequestMethod(method);
+        connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(10));
+
+        if (ifNoneMatch != null) connection.setRequestProperty("If-None-Match", ifNoneMatch);
+
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws Exception {
+
+        InputStream in = connection.getInputStream();
+
+        try {
+
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+
+        } finally {
+
+            in.close();
+        }
+    }
+}
@@ -3,13 +3,18 @@ package com.bericotech.dropwizard.nagios;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMultimap;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 
 
 public class NagiosCheckTaskTest {
@@ -31,15 +36,11 @@ public class NagiosCheckTaskTest {
 
         ImmutableMultimap<String, String> params = ImmutableMultimap.of();
 
-        PrintWriter pw = mock(PrintWriter.class);
+        StringWriter sw = new StringWriter();
 
-        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        task.execute(params, new PrintWriter(sw));
 
-        task.execute(params, pw);
-
-        verify(pw).println(payload.capture());
-
-        assertEquals(expectedLevel + " - " + expectedMessage, payload.getValue());
+        assertEquals(expectedLevel + " - " + expectedMessage + "\n", sw.toString());
     }
 
     @Test
@@ -58,17 +59,182 @@ public class NagiosCheckTaskTest {
 
         ImmutableMultimap<String, String> params = ImmutableMultimap.of();
 
-        PrintWriter pw = mock(PrintWriter.class);
+        StringWriter sw = new StringWriter();
+
+        task.execute(params, new PrintWriter(sw));
+
+        assertEquals(
+                NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_ERROR + " - " + expectedException.getMessage() + "\n",
+                sw.toString());
+    }
+
+    @Test
+    public void concurrent_checks_with_equivalent_parameters_share_one_execution() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final NagiosCheckTask task = new NagiosCheckTask("test") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                executions.incrementAndGet();
+
+                started.countDown();
+
+                release.await();
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("shared").build();
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+
+            Future<CheckResult> first = executor.submit(new Callable<CheckResult>() {
+                @Override
+                public CheckResult call() {
+                    return task.check(ImmutableMultimap.of("a", "1", "b", "2"));
+                }
+            });
+
+            started.await(5, TimeUnit.SECONDS);
+
+            Future<CheckResult> second = executor.submit(new Callable<CheckResult>() {
+                @Override
+                public CheckResult call() {
+                    return task.check(ImmutableMultimap.of("b", "2", "a", "1", "o", "json"));
+                }
+            });
+
+            while (task.getCoalescedCheckCount() == 0) Thread.sleep(1);
+
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, executions.get());
+            assertEquals(1, task.getCoalescedCheckCount());
+
+        } finally {
+
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void check_exceeding_timeout_is_interrupted_and_reported() throws Exception {
+
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        NagiosCheckTask task = new NagiosCheckTask("hung") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                try {
+
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+
+                } catch (InterruptedException e) {
+
+                    interrupted.countDown();
+                }
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("too late").build();
+            }
+        };
+
+        task.setTimeout(50, TimeUnit.MILLISECONDS);
 
-        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        MessagePayload mp = task.check(ImmutableMultimap.<String, String>of()).getPayload();
 
-        task.execute(params, pw);
+        assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_TIMEOUT, mp.getLevel());
+        assertTrue(mp.getBaseMessage().startsWith("hung timed out after "));
+        assertEquals("tte", mp.getPerfData().get(0).getLabel());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeout_parameter_overrides_timeout_of_task() throws Exception {
 
-        verify(pw).println(payload.capture());
+        NagiosCheckTask task = new NagiosCheckTask("slow") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                Thread.sleep(200);
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("done").build();
+            }
+        };
+
+        task.setTimeout(1, TimeUnit.MINUTES);
+
+        assertEquals(Level.OK, task.check(ImmutableMultimap.<String, String>of()).getPayload().getLevel());
 
         assertEquals(
-                NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_ERROR + " - " + expectedException.getMessage(),
-                payload.getValue());
+                NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_TIMEOUT,
+                task.check(ImmutableMultimap.of("timeout", "0.05")).getPayload().getLevel());
+    }
+
+    @Test
+    public void polls_joining_an_execution_wait_no_longer_than_their_timeout() throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final NagiosCheckTask task = new NagiosCheckTask("slow") {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) throws Throwable {
+
+                started.countDown();
+
+                release.await();
+
+                return new MessagePayloadBuilder().withLevel(Level.OK).withMessage("done").build();
+            }
+        };
+
+        task.setResultStore(new CheckResultCache(1, TimeUnit.MINUTES));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+
+            Future<CheckResult> leader = executor.submit(new Callable<CheckResult>() {
+                @Override
+                public CheckResult call() {
+                    return task.check(ImmutableMultimap.of("timeout", "10"));
+                }
+            });
+
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+
+            CheckResult joiner = task.check(ImmutableMultimap.of("timeout", "0.1"));
+
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(NagiosCheckTask.DEFAULT_LEVEL_FOR_TASK_TIMEOUT, joiner.getPayload().getLevel());
+            assertEquals(1, task.getCoalescedCheckCount());
+
+            release.countDown();
+
+            assertEquals(Level.OK, leader.get(5, TimeUnit.SECONDS).getPayload().getLevel());
+
+            // The joiner's timeout was not cached.
+            assertEquals(Level.OK, task.check(ImmutableMultimap.<String, String>of()).getPayload().getLevel());
+
+        } finally {
+
+            release.countDown();
+
+            executor.shutdownNow();
+        }
     }
 
     @Test
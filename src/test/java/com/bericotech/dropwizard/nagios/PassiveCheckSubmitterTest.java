@@ -0,0 +1,352 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+
+public class PassiveCheckSubmitterTest {
+
+    private HttpServer nrdp;
+
+    // Decoded request bodies received by the NRDP stub.
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+
+    // Status code of the next responses of the NRDP stub.
+    private final AtomicInteger responseStatus = new AtomicInteger(200);
+
+    @Before
+    public void startNrdpStub() throws IOException {
+
+        nrdp = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        nrdp.createContext("/nrdp/", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+
+                requests.add(URLDecoder.decode(
+                        new String(ByteStreams.toByteArray(exchange.getRequestBody()), Charsets.UTF_8), "UTF-8"));
+
+                byte[] response = "<result><status>0</status><message>OK</message></result>".getBytes(Charsets.UTF_8);
+
+                exchange.sendResponseHeaders(responseStatus.get(), response.length);
+
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+
+        nrdp.start();
+    }
+
+    @After
+    public void stopNrdpStub() {
+
+        nrdp.stop(0);
+    }
+
+    @Test
+    public void results_are_posted_to_nrdp_as_xml() throws Exception {
+
+        PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+                new NrdpSink(nrdpUrl(), "secret", NrdpSink.Format.XML), "web-01", 1, TimeUnit.MINUTES);
+
+        submitter.add(task("disk", Level.WARNING, "10% free <low>"));
+
+        assertTrue(submitter.submitNow());
+
+        assertEquals(1, requests.size());
+
+        String request = requests.get(0);
+
+        assertTrue(request, request.startsWith("token=secret&cmd=submitcheck&XMLDATA=<?xml"));
+        assertTrue(request, request.contains("<hostname>web-01</hostname><servicename>disk</servicename><state>1</state>"
+                + "<output>WARNING - 10% free &lt;low&gt;</output><time>"));
+    }
+
+    @Test
+    public void results_are_posted_to_nrdp_as_json() throws Exception {
+
+        PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+                new NrdpSink(nrdpUrl(), "secret", NrdpSink.Format.JSON), "web-01", 1, TimeUnit.MINUTES);
+
+        submitter.add(task("disk", Level.OK, "fine"));
+
+        assertTrue(submitter.submitNow());
+
+        assertTrue(requests.get(0), requests.get(0).contains("&JSONDATA={\"checkresults\":[{\"checkresult\":"
+                + "{\"type\":\"service\",\"checktype\":\"1\"},\"hostname\":\"web-01\",\"servicename\":\"disk\","
+                + "\"state\":\"0\",\"output\":\"OK - fine\",\"time\":\""));
+    }
+
+    @Test
+    public void undelivered_results_are_retried_with_the_next_batch() throws Exception {
+
+        PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+                new NrdpSink(nrdpUrl(), "secret", NrdpSink.Format.XML), "web-01", 1, TimeUnit.MINUTES, 3);
+
+        submitter.add(task("disk", Level.OK, "fine"));
+
+        responseStatus.set(503);
+
+        assertFalse(submitter.submitNow());
+        assertFalse(submitter.submitNow());
+
+        assertEquals(2, submitter.getPendingCount());
+
+        responseStatus.set(200);
+
+        assertTrue(submitter.submitNow());
+
+        assertEquals(0, submitter.getPendingCount());
+        assertEquals(3, count(requests.get(2), "<checkresult "));
+    }
+
+    @Test
+    public void pending_results_are_bounded() throws Exception {
+
+        PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+                new NrdpSink(nrdpUrl(), "secret", NrdpSink.Format.XML), "web-01", 1, TimeUnit.MINUTES, 2);
+
+        submitter.add(task("disk", Level.OK, "fine"));
+
+        responseStatus.set(500);
+
+        for (int i = 0; i < 5; i++) submitter.submitNow();
+
+        assertEquals(2, submitter.getPendingCount());
+    }
+
+    @Test
+    public void results_are_written_to_the_command_file() throws Exception {
+
+        File commandFile = File.createTempFile("nagios", ".cmd");
+
+        commandFile.deleteOnExit();
+
+        PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+                new CommandFileSink(commandFile), "web-01", 1, TimeUnit.MINUTES);
+
+        submitter.add(task("queue", Level.CRITICAL, "3 stuck\nqueue a\nqueue b"));
+
+        long before = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+        assertTrue(submitter.submitNow());
+
+        String command = Files.asCharSource(commandFile, Charsets.UTF_8).read();
+
+        assertTrue(command, command.matches("\\[\\d+\\] PROCESS_SERVICE_CHECK_RESULT;web-01;queue;2;"
+                + "CRITICAL - 3 stuck\\\\nqueue a\\\\nqueue b\n"));
+
+        long time = Long.parseLong(command.substring(1, command.indexOf(']')));
+
+        assertTrue(time >= before - 1 && time <= before + 1);
+    }
+
+    @Test
+    public void a_stalled_sink_does_not_block_the_submitter() throws Exception {
+
+        final CountDownLatch submitting = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(new PassiveCheckSink() {
+
+            @Override
+            public void submit(List<PassiveCheckResult> results) throws IOException {
+
+                submitting.countDown();
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException e) {
+
+                    throw new InterruptedIOException();
+                }
+            }
+        }, "web-01", 1, TimeUnit.HOURS);
+
+        submitter.add(task("disk", Level.OK, "fine"));
+
+        submitter.start();
+
+        try {
+
+            assertTrue(submitting.await(5, TimeUnit.SECONDS));
+
+            assertEquals(1, submitter.getPendingCount());
+
+            long start = System.nanoTime();
+
+            submitter.stop();
+
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(15));
+
+        } finally {
+
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void writes_to_a_fifo_nobody_reads_time_out() throws Exception {
+
+        File fifo = fifo();
+
+        CommandFileSink sink = new CommandFileSink(fifo, 100, TimeUnit.MILLISECONDS);
+
+        List<PassiveCheckResult> results = Collections.singletonList(
+                new PassiveCheckResult("web-01", "disk", Level.OK, "OK - fine", System.currentTimeMillis()));
+
+        try {
+
+            sink.submit(results);
+
+            fail("Opening the FIFO did not time out");
+
+        } catch (DeliveryInFlightException e) {
+
+            assertTrue(e.getMessage(), e.getMessage().contains("within 100ms"));
+        }
+
+        try {
+
+            sink.submit(results);
+
+            fail("The blocked write was not reported");
+
+        } catch (IOException e) {
+
+            assertTrue(e.getMessage(), e.getMessage().contains("still blocked"));
+            assertFalse(e instanceof DeliveryInFlightException);
+        }
+
+        // Read the FIFO, so that the blocked write completes.
+        read(fifo).get(5, TimeUnit.SECONDS);
+
+        fifo.delete();
+    }
+
+    @Test
+    public void a_timed_out_write_is_not_delivered_twice() throws Exception {
+
+        File fifo = fifo();
+
+        PassiveCheckSubmitter submitter = new PassiveCheckSubmitter(
+                new CommandFileSink(fifo, 100, TimeUnit.MILLISECONDS), "web-01", 1, TimeUnit.MINUTES);
+
+        submitter.add(task("disk", Level.OK, "fine"));
+
+        assertFalse(submitter.submitNow());
+
+        assertEquals(0, submitter.getPendingCount());
+
+        // Nagios reads the command file after the timeout:  the late write delivers the first batch.
+        assertEquals(1, count(read(fifo).get(5, TimeUnit.SECONDS), "PROCESS_SERVICE_CHECK_RESULT"));
+
+        Future<String> second = read(fifo);
+
+        assertTrue(submitter.submitNow());
+
+        assertEquals(1, count(second.get(5, TimeUnit.SECONDS), "PROCESS_SERVICE_CHECK_RESULT"));
+    }
+
+    private URL nrdpUrl() throws Exception {
+
+        return new URL("http://127.0.0.1:" + nrdp.getAddress().getPort() + "/nrdp/");
+    }
+
+    // A FIFO in a temporary directory; skips the test where mkfifo isn't available.
+    private static File fifo() throws Exception {
+
+        File fifo = new File(Files.createTempDir(), "nagios.cmd");
+
+        fifo.getParentFile().deleteOnExit();
+
+        fifo.deleteOnExit();
+
+        boolean created;
+
+        try {
+
+            created = new ProcessBuilder("mkfifo", fifo.getPath()).start().waitFor() == 0;
+
+        } catch (IOException e) {
+
+            created = false;
+        }
+
+        assumeTrue("mkfifo is not available", created);
+
+        return fifo;
+    }
+
+    // Open the FIFO for reading, like Nagios does, and read it until the writer closes it.
+    private static Future<String> read(final File fifo) {
+
+        FutureTask<String> reading = new FutureTask<String>(new Callable<String>() {
+
+            @Override
+            public String call() throws IOException {
+
+                return Files.asCharSource(fifo, Charsets.UTF_8).read();
+            }
+        });
+
+        Thread reader = new Thread(reading, "fifo-reader");
+
+        reader.setDaemon(true);
+
+        reader.start();
+
+        return reading;
+    }
+
+    private static int count(String text, String part) {
+
+        return text.split(part, -1).length - 1;
+    }
+
+    private static NagiosCheckTask task(String name, final Level level, final String message) {
+
+        return new NagiosCheckTask(name) {
+
+            @Override
+            public MessagePayload performCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return new MessagePayloadBuilder().withLevel(level).withMessage(message).build();
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class PerfDatumTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void primitive_values_render_like_boxed_values() throws Exception {
+
+        assertSameOutput(
+                PerfDatum.builder("count", (Object) 12).criteria((Object) 50, (Object) 100).minMax((Object) 1, (Object) 45).build(),
+                PerfDatum.builder("count", 12).warn(50).critical(100).min(1).max(45).build());
+
+        assertSameOutput(
+                PerfDatum.builder("bytes", (Object) 12L).criteria((Object) 50L, (Object) 100L).build(),
+                PerfDatum.builder("bytes", 12L).warn(50L).critical(100L).build());
+
+        assertSameOutput(
+                PerfDatum.builder("tte", (Object) 0.25).uom(PerfDatum.UOM.Seconds).criteria((Object) 1.0, (Object) 2.5).build(),
+                PerfDatum.builder("tte", 0.25).uom(PerfDatum.UOM.Seconds).warn(1.0).critical(2.5).build());
+
+        assertSameOutput(
+                PerfDatum.builder("ratio", (Object) 0.1f).minMax((Object) 0f, (Object) 1f).build(),
+                PerfDatum.builder("ratio", 0.1f).min(0f).max(1f).build());
+    }
+
+    @Test
+    public void mixed_primitive_arguments_render_like_boxed_values() throws Exception {
+
+        assertSameOutput(
+                PerfDatum.builder("load", 0.5).criteria((Object) 1, (Object) 2.5).minMax((Object) 0, (Object) 1.5f).build(),
+                PerfDatum.builder("load", 0.5).warn(1).critical(2.5).min(0).max(1.5f).build());
+
+        assertSameOutput(
+                PerfDatum.builder("bytes", 12L).criteria((Object) 2.5f, (Object) 100L).minMax((Object) 0L, (Object) 1).build(),
+                PerfDatum.builder("bytes", 12L).warn(2.5f).critical(100L).min(0L).max(1).build());
+
+        PerfDatum datum = PerfDatum.builder("load", 0.5).warn(1).critical(2.5).min(0).max(1.5f).build();
+
+        assertEquals("load=0.5;1;2.5;0;1.5", datum.toString());
+
+        JsonNode json = om.readTree(om.writeValueAsString(datum));
+
+        assertTrue(json.get("warn").isInt());
+        assertEquals(1, json.get("warn").intValue());
+        assertTrue(json.get("critical").isDouble());
+        assertTrue(json.get("min").isInt());
+        assertEquals(1.5, json.get("max").doubleValue(), 0);
+    }
+
+    // Calls that compiled against the (Object, Object) signatures must still compile, and keep the types.
+    @Test
+    public void mixed_boxed_and_primitive_arguments_still_compile() throws Exception {
+
+        Integer boxedInteger = 2;
+
+        Double boxedDouble = 1.5;
+
+        assertSameOutput(
+                PerfDatum.builder("a", 1).criteria((Object) 1, (Object) 2).minMax((Object) 0, (Object) 1.5).build(),
+                PerfDatum.builder("a", 1).criteria(1, boxedInteger).minMax(0, boxedDouble).build());
+
+        assertSameOutput(
+                PerfDatum.builder("a", 1.0).criteria((Object) 2, (Object) 1).minMax((Object) 1.5, (Object) 0L).build(),
+                PerfDatum.builder("a", 1.0).criteria(boxedInteger, 1).minMax(boxedDouble, 0L).build());
+
+        assertEquals("a=1;1;2;0;1.5", PerfDatum.builder("a", 1).criteria(1, boxedInteger).minMax(0, boxedDouble).build().toString());
+    }
+
+    @Test
+    public void getters_return_values_of_the_supplied_type(){
+
+        PerfDatum datum = PerfDatum.builder("count", 12).warn(50L).critical(100L).min(0.5f).max(1.5).build();
+
+        assertEquals(12, datum.getValue());
+        assertEquals(50L, datum.getWarn());
+        assertEquals(0.5f, datum.getMin());
+        assertEquals(1.5, datum.getMax());
+        assertEquals(null, new PerfDatum("x", "U", PerfDatum.UOM.Unspecified, null, null, null, null).getWarn());
+    }
+
+    @Test
+    public void non_numeric_values_are_kept_as_objects() throws Exception {
+
+        PerfDatum datum = new PerfDatum("state", "U", PerfDatum.UOM.Unspecified, "~:10", "~:20", null, null);
+
+        assertEquals("state=U;~:10;~:20", datum.toString());
+        assertEquals(
+                "{\"label\":\"state\",\"value\":\"U\",\"warn\":\"~:10\",\"critical\":\"~:20\","
+                        + "\"min\":null,\"max\":null,\"unitOfMeasurement\":\"Unspecified\"}",
+                om.writeValueAsString(datum));
+    }
+
+    private void assertSameOutput(PerfDatum boxed, PerfDatum primitive) throws Exception {
+
+        assertEquals(boxed.toString(), primitive.toString());
+        assertEquals(om.writeValueAsString(boxed), om.writeValueAsString(primitive));
+    }
+}
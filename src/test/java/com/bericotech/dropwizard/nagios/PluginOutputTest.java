@@ -0,0 +1,117 @@
+package com.bericotech.dropwizard.nagios;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class PluginOutputTest {
+
+    @Test
+    public void perf_data_follow_a_single_pipe_separated_by_spaces() throws Exception {
+
+        MessagePayload mp = new MessagePayloadBuilder()
+                .withLevel(Level.WARNING)
+                .withMessage("disk almost full")
+                .withPerfData(PerfDatum.builder("free", 10).uom(PerfDatum.UOM.Percentage).criteria(20, 10).build())
+                .withPerfData(PerfDatum.builder("used bytes", 900L).uom(PerfDatum.UOM.Bytes).build())
+                .build();
+
+        assertEquals("WARNING - disk almost full | free=10%;20;10 'used bytes'=900B\n", write(mp));
+    }
+
+    @Test
+    public void additional_message_lines_are_written_as_long_output() throws Exception {
+
+        MessagePayload mp = new MessagePayloadBuilder()
+                .withLevel(Level.CRITICAL)
+                .withMessage("2 queues backed up\nqueue a: 100\nqueue b: 200 | not perf data")
+                .withPerfData(PerfDatum.builder("depth", 300).build())
+                .build();
+
+        assertEquals("CRITICAL - 2 queues backed up | depth=300\nqueue a: 100\nqueue b: 200 / not perf data\n", write(mp));
+    }
+
+    @Test
+    public void stale_results_are_marked() throws Exception {
+
+        MessagePayload mp = new MessagePayloadBuilder().withLevel(Level.OK).withMessage("fine").build();
+
+        StringBuilder out = new StringBuilder();
+
+        PluginOutput.write(new CheckResult(mp).asStale(), out);
+
+        assertEquals("OK - [stale] fine\n", out.toString());
+    }
+
+    @Test
+    public void trailing_absent_thresholds_are_omitted() throws Exception {
+
+        assertEquals("a=1", render(PerfDatum.builder("a", 1).build()));
+        assertEquals("a=1;;;0;10", render(PerfDatum.builder("a", 1).minMax(0, 10).build()));
+        assertEquals("a=1;5", render(new PerfDatum("a", 1, PerfDatum.UOM.Unspecified, 5, null, null, null)));
+    }
+
+    @Test
+    public void get_message_keeps_the_legacy_format() {
+
+        MessagePayload mp = new MessagePayloadBuilder()
+                .withLevel(Level.OK)
+                .withMessage("fine")
+                .withPerfData(
+                        PerfDatum.builder("tte", 1.0E-5).criteria(1.0, Double.NaN).build(),
+                        PerfDatum.builder("a", 1).minMax(0, 10).build(),
+                        new PerfDatum("b", 2, PerfDatum.UOM.Unspecified, 5, null, null, null),
+                        PerfDatum.builder("c", 3L).criteria(4, 5).minMax(0.5f, 10).build())
+                .build();
+
+        assertEquals("fine | tte=1.0E-5;1.0;NaN | a=1 | b=2 | c=3;4;5;0.5;10", mp.getMessage());
+    }
+
+    @Test
+    public void numbers_are_written_in_plain_decimal_notation() throws Exception {
+
+        assertEquals("0.0000005", appendDouble(5.0E-7));
+        assertEquals("0.25", appendDouble(0.25));
+        assertEquals("100.0", appendDouble(100.0));
+        assertEquals("-1.5", appendDouble(-1.5));
+        assertEquals("12345678901234567000", appendDouble(1.2345678901234567E19));
+        assertEquals("U", appendDouble(Double.NaN));
+        assertEquals("U", appendDouble(Double.POSITIVE_INFINITY));
+
+        StringBuilder out = new StringBuilder();
+        PluginOutput.appendFloat(out, 0.1f);
+        assertEquals("0.1", out.toString());
+
+        out.setLength(0);
+        PluginOutput.appendLong(out, Long.MIN_VALUE);
+        assertEquals(Long.toString(Long.MIN_VALUE), out.toString());
+    }
+
+    private static String write(MessagePayload mp) throws Exception {
+
+        StringBuilder out = new StringBuilder();
+
+        PluginOutput.write(mp, out);
+
+        return out.toString();
+    }
+
+    private static String render(PerfDatum datum) throws Exception {
+
+        StringBuilder out = new StringBuilder();
+
+        datum.appendTo(out);
+
+        return out.toString();
+    }
+
+    private static String appendDouble(double value) throws Exception {
+
+        StringBuilder out = new StringBuilder();
+
+        PluginOutput.appendDouble(out, value);
+
+        return out.toString();
+    }
+}
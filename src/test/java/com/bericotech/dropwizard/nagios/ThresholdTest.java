@@ -0,0 +1,139 @@
+package com.bericotech.dropwizard.nagios;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+
+public class ThresholdTest {
+
+    @Test
+    public void end_only_alerts_outside_zero_to_end(){
+
+        Threshold t = Threshold.parse("10");
+
+        assertTrue(t.alerts(-1));
+        assertFalse(t.alerts(0));
+        assertFalse(t.alerts(10));
+        assertTrue(t.alerts(10.5));
+    }
+
+    @Test
+    public void open_end_alerts_below_start(){
+
+        Threshold t = Threshold.parse("10:");
+
+        assertTrue(t.alerts(9.99));
+        assertFalse(t.alerts(10));
+        assertFalse(t.alerts(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void negative_infinity_start_alerts_above_end(){
+
+        Threshold t = Threshold.parse("~:10");
+
+        assertFalse(t.alerts(-1000000));
+        assertFalse(t.alerts(10));
+        assertTrue(t.alerts(11));
+    }
+
+    @Test
+    public void range_alerts_outside(){
+
+        Threshold t = Threshold.parse("10:20");
+
+        assertTrue(t.alerts(9));
+        assertFalse(t.alerts(15));
+        assertTrue(t.alerts(21));
+    }
+
+    @Test
+    public void at_sign_inverts_range(){
+
+        Threshold t = Threshold.parse("@10:20");
+
+        assertFalse(t.alerts(9));
+        assertTrue(t.alerts(10));
+        assertTrue(t.alerts(20));
+        assertFalse(t.alerts(20.5));
+        assertTrue(t.isInside());
+    }
+
+    @Test
+    public void decimal_and_negative_bounds_are_parsed(){
+
+        Threshold t = Threshold.parse("-0.5:1.25");
+
+        assertEquals(-0.5, t.getStart(), 0);
+        assertEquals(1.25, t.getEnd(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformed_ranges_are_rejected(){
+
+        Threshold.parse("ten");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ranges_with_start_after_end_are_rejected(){
+
+        Threshold.parse("20:10");
+    }
+
+    @Test
+    public void factories_render_in_range_syntax(){
+
+        assertEquals("~:10", Threshold.above(10).toString());
+        assertEquals("0.5:", Threshold.below(0.5).toString());
+        assertEquals("1:2.5", Threshold.outside(1, 2.5).toString());
+        assertEquals("@1:2", Threshold.inside(1, 2).toString());
+        assertEquals(Threshold.parse("~:10"), Threshold.above(10));
+    }
+
+    @Test
+    public void evaluate_reports_most_severe_alerting_threshold(){
+
+        Threshold warning = Threshold.parse("~:50");
+        Threshold critical = Threshold.parse("~:100");
+
+        assertEquals(Level.OK, Level.evaluate(50L, warning, critical));
+        assertEquals(Level.WARNING, Level.evaluate(51L, warning, critical));
+        assertEquals(Level.CRITICAL, Level.evaluate(100.5, warning, critical));
+        assertEquals(Level.OK, Level.evaluate(1000.0, null, null));
+    }
+
+    @Test
+    public void thresholds_render_into_perf_data() throws Exception {
+
+        PerfDatum datum = PerfDatum.builder("free", 5)
+                .criteria(Threshold.parse("20:"), Threshold.parse("10:"))
+                .build();
+
+        assertEquals("free=5;20:;10:", datum.toString());
+        assertTrue(new ObjectMapper().writeValueAsString(datum).contains("\"warn\":\"20:\",\"critical\":\"10:\""));
+    }
+
+    @Test
+    public void timed_task_evaluates_supplied_thresholds() throws Throwable {
+
+        ThresholdTimedCheckTask task = new ThresholdTimedCheckTask("timed", Threshold.parse("@0:1000"), Threshold.above(1000)) {
+
+            @Override
+            public Optional<Collection<PerfDatum>> doTimedCheck(ImmutableMultimap<String, String> requestParameters) {
+
+                return noPerfData();
+            }
+        };
+
+        MessagePayload mp = task.performCheck(ImmutableMultimap.<String, String>of());
+
+        assertEquals(Level.WARNING, mp.getLevel());
+        assertTrue(mp.getPerfData().get(0).toString().endsWith(";@0:1000;~:1000"));
+    }
+}
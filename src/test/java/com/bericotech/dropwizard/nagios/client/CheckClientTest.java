@@ -0,0 +1,224 @@
+package com.bericotech.dropwizard.nagios.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+
+public class CheckClientTest {
+
+    private HttpServer application;
+
+    private final List<HttpExchange> exchanges = new CopyOnWriteArrayList<HttpExchange>();
+
+    private volatile int responseStatus = 200;
+
+    private volatile String responseBody = "OK - success";
+
+    @Before
+    public void startApplication() throws IOException {
+
+        application = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        application.createContext("/tasks/", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+
+                exchanges.add(exchange);
+
+                ByteStreams.toByteArray(exchange.getRequestBody());
+
+                byte[] response = responseBody.getBytes(Charsets.UTF_8);
+
+                exchange.getResponseHeaders().add("Content-Type", "text/plain;charset=UTF-8");
+                exchange.sendResponseHeaders(responseStatus, response.length);
+
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+
+        application.start();
+    }
+
+    @After
+    public void stopApplication() {
+
+        application.stop(0);
+    }
+
+    @Test
+    public void output_and_exit_code_match_check_url_py() {
+
+        assertResult(0, "OK - success", CheckClient.interpret(200, "OK - success\n"));
+        assertResult(1, "Warning - sprocket count ok | count=12", CheckClient.interpret(200, "WARNING - sprocket count ok | count=12"));
+        assertResult(2, "Critical - down | t=1s\nlong output", CheckClient.interpret(200, "CRITICAL - down | t=1s\nlong output\n"));
+        assertResult(3, "Unknown - no idea", CheckClient.interpret(200, "UNKNOWN - no idea"));
+        assertResult(3, "Unknown - Error making request; status code: 404", CheckClient.interpret(404, "not found"));
+        assertResult(0, "OK - redirected", CheckClient.interpret(300, "OK - redirected"));
+
+        // Without a dash, the whole text is the summary, like the script's str.find("-") == -1.
+        assertResult(3, "Unknown - garbage", CheckClient.interpret(200, "garbage"));
+        assertResult(0, "OK - OKAY", CheckClient.interpret(200, "OKAY"));
+        assertResult(3, "Unknown -", CheckClient.interpret(200, ""));
+    }
+
+    @Test
+    public void tasks_are_posted_with_basic_auth() {
+
+        responseBody = "WARNING - sprocket count ok | count=12\n";
+
+        PluginResult result = new CheckClient().check("-u", "admin", "-p", "secret",
+                "-H", "127.0.0.1", "-P" + port(), "-U", "/tasks/sprockets?min=3");
+
+        assertResult(1, "Warning - sprocket count ok | count=12", result);
+
+        HttpExchange exchange = exchanges.get(0);
+
+        assertEquals("POST", exchange.getRequestMethod());
+        assertEquals("/tasks/sprockets?min=3", exchange.getRequestURI().toString());
+        assertEquals("Basic " + Pem.encodeBase64("admin:secret".getBytes(Charsets.ISO_8859_1)),
+                exchange.getRequestHeaders().getFirst("Authorization"));
+        assertEquals("0", exchange.getRequestHeaders().getFirst("Content-Length"));
+    }
+
+    @Test
+    public void http_errors_are_unknown() {
+
+        responseStatus = 500;
+
+        assertResult(3, "Unknown - Error making request; status code: 500",
+                new CheckClient().check("-H", "127.0.0.1", "-P", port(), "-U", "tasks/failing"));
+    }
+
+    @Test
+    public void connections_are_kept_alive_between_checks() {
+
+        CheckClient client = new CheckClient();
+
+        for (int i = 0; i < 3; i++) {
+
+            assertResult(0, "OK - success", client.check("-H", "127.0.0.1", "-P", port(), "-m", "get", "-U", "tasks/a"));
+        }
+
+        assertEquals(3, exchanges.size());
+
+        for (HttpExchange exchange : exchanges) {
+
+            assertEquals(exchanges.get(0).getRemoteAddress(), exchange.getRemoteAddress());
+        }
+    }
+
+    @Test
+    public void invalid_options_exit_with_2() {
+
+        PluginResult result = new CheckClient().check("-X", "1");
+
+        assertEquals(2, result.getExitCode());
+        assertTrue(result.getOutput(), result.getOutput().endsWith("error: no such option: -X"));
+
+        assertEquals(0, new CheckClient().check("--help").getExitCode());
+    }
+
+    @Test
+    public void base64_round_trips() {
+
+        for (String text : new String[] { "", "a", "ab", "abc", "admin:secret" }) {
+
+            String encoded = Pem.encodeBase64(text.getBytes(Charsets.UTF_8));
+
+            assertEquals(BaseEncoding.base64().encode(text.getBytes(Charsets.UTF_8)), encoded);
+            assertEquals(text, new String(Pem.decodeBase64(encoded), Charsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void gateway_executes_checks_sent_over_the_socket() throws Exception {
+
+        responseBody = "CRITICAL - queue stuck";
+
+        final CheckGateway gateway = new CheckGateway(new CheckClient(), 0, 2);
+
+        Thread server = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                gateway.serve();
+            }
+        });
+
+        server.start();
+
+        try {
+
+            assertEquals("2\nCritical - queue stuck\n",
+                    callGateway(gateway.getPort(), "-H", "127.0.0.1", "-P", port(), "-U", "tasks/queue"));
+
+            assertEquals("3\nUnknown - Invalid request to the check gateway; java.io.IOException: expected the number of arguments\n",
+                    callGatewayRaw(gateway.getPort(), "x\0".getBytes(Charsets.UTF_8)));
+
+        } finally {
+
+            gateway.close();
+
+            server.join(1000);
+        }
+    }
+
+    private static String callGateway(int port, String... args) throws IOException {
+
+        StringBuilder request = new StringBuilder().append(args.length).append('\0');
+
+        for (String arg : args) request.append(arg).append('\0');
+
+        return callGatewayRaw(port, request.toString().getBytes(Charsets.UTF_8));
+    }
+
+    private static String callGatewayRaw(int port, byte[] request) throws IOException {
+
+        Socket socket = new Socket("127.0.0.1", port);
+
+        try {
+
+            socket.getOutputStream().write(request);
+
+            InputStream in = socket.getInputStream();
+
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+
+        } finally {
+
+            socket.close();
+        }
+    }
+
+    private String port() {
+
+        return Integer.toString(application.getAddress().getPort());
+    }
+
+    private static void assertResult(int exitCode, String output, PluginResult result) {
+
+        assertEquals(output, result.getOutput());
+        assertEquals(exitCode, result.getExitCode());
+    }
+}